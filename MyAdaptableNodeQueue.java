@@ -0,0 +1,80 @@
+package heap;
+
+import net.datastructures.*;
+
+/**
+ * Runs a shortest path search on any adaptable priority queue whose entries
+ * stay valid handles while they are stored, such as MyHeap, MyMinMaxHeap
+ * or MyPairingHeap. The entry of each queued node is kept in an array indexed
+ * by node, and lowering a node's key is a replaceKey on that entry, which
+ * is how these searches are usually written around a general heap.
+ */
+
+public class MyAdaptableNodeQueue implements MyNodeQueue {
+
+	private final AdaptablePriorityQueue<Long,Integer> _queue;
+	private final Entry<Long,Integer>[] _entries;
+
+	/**
+	 * Creates a node queue backed by the given priority queue.
+	 *
+	 * @param queue the empty priority queue to store nodes in, ordered by key
+	 * @param nodes the number of nodes that may be queued
+	 * @throws IllegalArgumentException if the queue is null or not empty, or the node count is negative
+	 */
+	@SuppressWarnings("unchecked")
+	public MyAdaptableNodeQueue(AdaptablePriorityQueue<Long,Integer> queue, int nodes)
+			throws IllegalArgumentException {
+		if (queue == null || !queue.isEmpty() || nodes < 0) {
+			throw new IllegalArgumentException("queue must be empty");
+		}
+		_queue = queue;
+		_entries = (Entry<Long,Integer>[]) new Entry<?,?>[nodes];
+	}
+
+	/**
+	 * @return true if no node is queued; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _queue.isEmpty();
+	}
+
+	/**
+	 * Queues a node with an insert, or lowers its key with a replaceKey.
+	 *
+	 * @param node to queue
+	 * @param key of the node
+	 */
+	public void push(int node, long key) {
+		Entry<Long,Integer> entry = _entries[node];
+		if (entry == null) {
+			_entries[node] = _queue.insert(key, node);
+		} else if (key < entry.getKey()) {
+			_queue.replaceKey(entry, key);
+		}
+	}
+
+	/**
+	 * Removes the node with the smallest key with a removeMin.
+	 *
+	 * @return the node removed
+	 * @throws IllegalStateException if the queue is empty
+	 */
+	public int pop() throws IllegalStateException {
+		if (_queue.isEmpty()) {
+			throw new IllegalStateException("The Queue is Empty");
+		}
+		int node = _queue.removeMin().getValue();
+		_entries[node] = null;
+		return node;
+	}
+
+	/**
+	 * Removes every queued node, one removeMin at a time
+	 */
+	public void clear() {
+		while (!_queue.isEmpty()) {
+			_entries[_queue.removeMin().getValue()] = null;
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package heap;
+
+import java.util.Comparator;
+
+import net.datastructures.*;
+
+/**
+ * A priority queue whose priorities decay exponentially as entries wait,
+ * so that older entries become more urgent without ever being touched.
+ * An entry inserted with priority p at time t0 has the effective priority
+ * p * e^(-rate * (t - t0)) at time t, and removeMin returns the entry with
+ * the smallest effective priority.
+ *
+ * Every entry decays by the same factor over the same time, so the order
+ * of two entries never changes. The heap therefore stores a log-domain key,
+ * ln p + rate * (t0 - epoch), which orders entries exactly as their
+ * effective priorities do at any time. Advancing the clock only moves a
+ * global offset, rate * (now - epoch), and costs O(1) instead of a sweep
+ * over every entry.
+ *
+ * Stored keys grow with the time they were inserted at, and a double loses
+ * precision as it grows. Once the offset passes 2^20, the heap is
+ * renormalized: the offset is subtracted from every stored key and the
+ * epoch moves to now. A uniform shift keeps the order, so no entry is
+ * sifted. This is O(n), but it only happens after the clock has advanced
+ * by 2^20 / rate, so it is O(1) amortized per tick.
+ *
+ * The key of an entry returned by this heap is its stored log-domain key,
+ * which changes when the heap is renormalized; effectivePriority gives the
+ * decayed priority itself.
+ */
+
+public class MyAgingHeap<V> {
+
+	private static final double RENORMALIZE_OFFSET = 1 << 20;
+
+	private final MyMinMaxHeap<Double,V> _heap;
+	private final double _decayRate;
+	private double _now;
+	private double _epoch;
+	private long _renormalizations;
+
+	/**
+	 * Creates an empty aging heap with its clock at time 0.
+	 *
+	 * @param decayRate the exponential decay rate of priorities per unit of time
+	 * @throws IllegalArgumentException if the decay rate is not positive and finite
+	 */
+	public MyAgingHeap(double decayRate) throws IllegalArgumentException {
+		if (!(decayRate > 0) || Double.isInfinite(decayRate)) {
+			throw new IllegalArgumentException("decayRate must be positive and finite");
+		}
+		_heap = new MyMinMaxHeap<Double,V>(new Comparator<Double>() {
+			public int compare(Double one, Double two) {
+				return Double.compare(one, two);
+			}
+		});
+		_decayRate = decayRate;
+		_now = 0;
+		_epoch = 0;
+	}
+
+	/**
+	 * @return the number of entries stored
+	 */
+	public int size() {
+		return _heap.size();
+	}
+
+	/**
+	 * @return true if the heap is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _heap.isEmpty();
+	}
+
+	/**
+	 * @return the current time of the heap's clock
+	 */
+	public double getTime() {
+		return _now;
+	}
+
+	/**
+	 * @return the number of times the stored keys have been renormalized
+	 */
+	public long getRenormalizations() {
+		return _renormalizations;
+	}
+
+	/**
+	 * Advances the clock, which ages every entry at once. This method runs
+	 * in O(1) amortized time.
+	 *
+	 * @param elapsed the time that has passed since the last advance
+	 * @throws IllegalArgumentException if elapsed is negative or not finite
+	 */
+	public void advanceTime(double elapsed) throws IllegalArgumentException {
+		if (!(elapsed >= 0) || Double.isInfinite(elapsed)) {
+			throw new IllegalArgumentException("elapsed must be non-negative and finite");
+		}
+		_now += elapsed;
+		if (this.offset() > RENORMALIZE_OFFSET) {
+			this.renormalize();
+		}
+	}
+
+	/**
+	 * Inserts a value with the given priority as of now.
+	 * This method runs in O(log n) time.
+	 *
+	 * @param priority the current priority of the value, which decays from now on
+	 * @param value to be stored
+	 * @return the entry created
+	 * @throws InvalidKeyException if the priority is not positive and finite
+	 */
+	public Entry<Double,V> insert(double priority, V value) throws InvalidKeyException {
+		return _heap.insert(this.storedKey(priority), value);
+	}
+
+	/**
+	 * Returns but does not remove the entry with the smallest effective priority.
+	 * This method runs in O(1) time.
+	 *
+	 * @return the most urgent entry
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<Double,V> min() throws EmptyPriorityQueueException {
+		return _heap.min();
+	}
+
+	/**
+	 * Removes and returns the entry with the smallest effective priority.
+	 * This method runs in O(log n) time.
+	 *
+	 * @return the most urgent entry, now removed
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<Double,V> removeMin() throws EmptyPriorityQueueException {
+		return _heap.removeMin();
+	}
+
+	/**
+	 * Removes the given entry. This method runs in O(log n) time.
+	 *
+	 * @param entry to be removed
+	 * @return the entry, now removed
+	 * @throws InvalidEntryException if the entry is not in this heap
+	 */
+	public Entry<Double,V> remove(Entry<Double,V> entry) throws InvalidEntryException {
+		return _heap.remove(entry);
+	}
+
+	/**
+	 * Gives an entry a new priority as of now, restarting its decay.
+	 * This method runs in O(log n) time.
+	 *
+	 * @param entry whose priority is replaced
+	 * @param priority the new current priority
+	 * @return the effective priority the entry had before
+	 * @throws InvalidEntryException if the entry is not in this heap
+	 * @throws InvalidKeyException if the priority is not positive and finite
+	 */
+	public double replacePriority(Entry<Double,V> entry, double priority)
+			throws InvalidEntryException, InvalidKeyException {
+		double oldPriority = this.effectivePriority(entry);
+		_heap.replaceKey(entry, this.storedKey(priority));
+		return oldPriority;
+	}
+
+	/**
+	 * Returns the decayed priority of an entry at the current time.
+	 * This method runs in O(1) time.
+	 *
+	 * @param entry whose priority is computed
+	 * @return the entry's effective priority, which may underflow to 0 for very old entries
+	 * @throws InvalidEntryException if the entry is not in this heap
+	 */
+	public double effectivePriority(Entry<Double,V> entry) throws InvalidEntryException {
+		MyHeapEntry<Double,V> checkedEntry = _heap.checkAndConvertEntry(entry);
+		return Math.exp(checkedEntry.getKey() - this.offset());
+	}
+
+	/**
+	 * @return the log-domain key for a priority given as of now
+	 * @throws InvalidKeyException if the priority is not positive and finite
+	 */
+	private double storedKey(double priority) throws InvalidKeyException {
+		if (!(priority > 0) || Double.isInfinite(priority)) {
+			throw new InvalidKeyException("priority must be positive and finite");
+		}
+		return Math.log(priority) + this.offset();
+	}
+
+	/**
+	 * @return how far all priorities have decayed since the epoch, in the log domain
+	 */
+	private double offset() {
+		return _decayRate * (_now - _epoch);
+	}
+
+	/**
+	 * Subtracts the current offset from every stored key and moves the epoch to now.
+	 * Subtracting the same amount never reorders two keys, so the entries stay where they are.
+	 */
+	private void renormalize() {
+		double offset = this.offset();
+		for (Entry<Double,V> entry : _heap.entries()) {
+			MyHeapEntry<Double,V> checkedEntry = _heap.checkAndConvertEntry(entry);
+			checkedEntry.setKey(checkedEntry.getKey() - offset);
+		}
+		_epoch = _now;
+		_renormalizations++;
+	}
+}
@@ -0,0 +1,104 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the MyAgingHeap implementation, in particular that entries age without being touched and
+ * that renormalizing the stored keys keeps both the order and the effective priorities.
+ */
+public class MyAgingHeapTest {
+
+	private static final double HALF_LIFE_RATE = Math.log(2);
+
+	/**
+	 * Tests that a waiting entry decays and overtakes a newer entry with a smaller priority
+	 */
+	@Test
+	public void agingOrderTest() {
+		MyAgingHeap<String> heap = new MyAgingHeap<String>(HALF_LIFE_RATE);
+		Entry<Double, String> old = heap.insert(8, "old");
+		heap.advanceTime(2);
+		Entry<Double, String> young = heap.insert(3, "young");
+
+		assertEquals(2, heap.effectivePriority(old), 1e-9);
+		assertEquals(3, heap.effectivePriority(young), 1e-9);
+		assertTrue(heap.removeMin() == old);
+		assertTrue(heap.removeMin() == young);
+		assertTrue(heap.isEmpty());
+	}
+
+	/**
+	 * Tests that replacing a priority restarts the entry's decay
+	 */
+	@Test
+	public void replacePriorityTest() {
+		MyAgingHeap<String> heap = new MyAgingHeap<String>(HALF_LIFE_RATE);
+		Entry<Double, String> one = heap.insert(4, "one");
+		heap.insert(3, "two");
+		heap.advanceTime(1);
+
+		assertEquals(2, heap.replacePriority(one, 5), 1e-9);
+		assertThat(heap.removeMin().getValue(), is("two"));
+		assertEquals(5, heap.effectivePriority(one), 1e-9);
+	}
+
+	/**
+	 * Tests that the heap is renormalized on a long-running clock, and that the order and effective priorities
+	 * stay correct through it
+	 */
+	@Test
+	public void renormalizeTest() {
+		MyAgingHeap<Integer> heap = new MyAgingHeap<Integer>(1);
+		Random random = new Random(36);
+		List<double[]> inserted = new ArrayList<double[]>();
+		Entry<Double, Integer> last = null;
+		for (int i = 0; i < 500; i++) {
+			double priority = 1 + random.nextInt(1000);
+			// rank by ln p + rate * t0, the order the effective priorities keep forever
+			inserted.add(new double[] {Math.log(priority) + heap.getTime(), i});
+			last = heap.insert(priority, i);
+			heap.advanceTime(random.nextInt(10000));
+		}
+		double priority = heap.effectivePriority(last);
+
+		assertTrue(heap.getRenormalizations() > 0);
+		heap.advanceTime(3);
+		assertEquals(priority * Math.exp(-3), heap.effectivePriority(last), priority * 1e-9);
+		Collections.sort(inserted, new Comparator<double[]>() {
+			public int compare(double[] one, double[] two) {
+				return Double.compare(one[0], two[0]);
+			}
+		});
+		for (double[] expected : inserted) {
+			assertThat(heap.removeMin().getValue(), is((int) expected[1]));
+		}
+	}
+
+	/**
+	 * Tests that an Invalid Key Exception is raised for a priority that is not positive
+	 */
+	@Test(expected = InvalidKeyException.class)
+	public void insertExceptionTest() {
+		MyAgingHeap<String> heap = new MyAgingHeap<String>(1);
+		heap.insert(0, "A");
+	}
+
+	/**
+	 * Tests that an Illegal Argument Exception is raised when the clock is moved backwards
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void advanceTimeExceptionTest() {
+		MyAgingHeap<String> heap = new MyAgingHeap<String>(1);
+		heap.advanceTime(-1);
+	}
+}
@@ -0,0 +1,393 @@
+package heap;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.datastructures.*;
+
+/**
+ * An unbounded BlockingQueue whose elements are kept in a MyMinMaxHeap and
+ * taken in comparator order. All waiting is done on a ReentrantLock
+ * Condition rather than on an object monitor, so a virtual thread blocked in
+ * take() or poll(timeout) unmounts from its carrier thread instead of
+ * pinning it.
+ *
+ * Waiting follows the leader/follower scheme of java.util.concurrent
+ * DelayQueue: only one thread (the leader) waits with a timeout for the head
+ * to become available, and every other taker waits without one until it is
+ * signalled. Each insert or removal wakes at most one waiter, so a large
+ * number of blocked consumers costs nothing until there is work for them.
+ *
+ * Subclasses can hold elements back until they are due by overriding
+ * delayNanos; see MyDelayHeap.
+ */
+
+public class MyBlockingHeap<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	private final ReentrantLock _lock;
+	private final Condition _available;
+	private final MyMinMaxHeap<E,E> _heap;
+	private Thread _leader;
+
+	/**
+	 * Creates an empty queue ordered by the given comparator.
+	 *
+	 * @param comparator to be used for ordering elements
+	 * @throws IllegalArgumentException if null comparator is passed in
+	 */
+	public MyBlockingHeap(Comparator<E> comparator) throws IllegalArgumentException {
+		_lock = new ReentrantLock();
+		_available = _lock.newCondition();
+		_heap = new MyMinMaxHeap<E,E>(comparator);
+	}
+
+	/**
+	 * Returns how long the given element must still wait before it can be
+	 * taken. Elements are always available in this class; MyDelayHeap
+	 * overrides this with the element's own delay.
+	 *
+	 * @param element at the head of the queue
+	 * @return the remaining delay in nanoseconds, zero or negative if available now
+	 */
+	protected long delayNanos(E element) {
+		return 0;
+	}
+
+	/**
+	 * Inserts the element. The queue is unbounded, so this never blocks.
+	 * This method runs in O(log n) time.
+	 *
+	 * @param element to add
+	 * @return true
+	 * @throws NullPointerException if the element is null
+	 */
+	public boolean offer(E element) {
+		if (element == null) {
+			throw new NullPointerException("element is null");
+		}
+		_lock.lock();
+		try {
+			Entry<E,E> entry = _heap.insert(element, element);
+			if (_heap.min() == entry) {
+				// a new head may be due sooner than the leader is waiting for
+				_leader = null;
+				_available.signal();
+			}
+			return true;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Inserts the element. The queue is unbounded, so this never blocks.
+	 */
+	public void put(E element) {
+		this.offer(element);
+	}
+
+	/**
+	 * Inserts the element. The queue is unbounded, so this never blocks.
+	 */
+	public boolean offer(E element, long timeout, TimeUnit unit) {
+		return this.offer(element);
+	}
+
+	/**
+	 * Removes and returns the head if it is available, without waiting.
+	 * This method runs in O(log n) time.
+	 *
+	 * @return the head of the queue, or null if the queue is empty or its head is not due yet
+	 */
+	public E poll() {
+		_lock.lock();
+		try {
+			if (_heap.isEmpty() || this.delayNanos(_heap.min().getKey()) > 0) {
+				return null;
+			}
+			return this.removeHead();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and returns the head, waiting until the queue is non-empty and
+	 * the head is available.
+	 *
+	 * @return the head of the queue
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public E take() throws InterruptedException {
+		_lock.lockInterruptibly();
+		try {
+			while (true) {
+				if (_heap.isEmpty()) {
+					_available.await();
+					continue;
+				}
+				long delay = this.delayNanos(_heap.min().getKey());
+				if (delay <= 0) {
+					return this.removeHead();
+				}
+				if (_leader != null) {
+					_available.await();
+				} else {
+					Thread thisThread = Thread.currentThread();
+					_leader = thisThread;
+					try {
+						_available.awaitNanos(delay);
+					} finally {
+						if (_leader == thisThread) {
+							_leader = null;
+						}
+					}
+				}
+			}
+		} finally {
+			this.signalNext();
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and returns the head, waiting up to the given time for the
+	 * queue to be non-empty and the head to be available.
+	 *
+	 * @param timeout how long to wait, in units of unit
+	 * @param unit the unit of the timeout
+	 * @return the head of the queue, or null if the time ran out first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		_lock.lockInterruptibly();
+		try {
+			while (true) {
+				if (_heap.isEmpty()) {
+					if (nanos <= 0) {
+						return null;
+					}
+					nanos = _available.awaitNanos(nanos);
+					continue;
+				}
+				long delay = this.delayNanos(_heap.min().getKey());
+				if (delay <= 0) {
+					return this.removeHead();
+				}
+				if (nanos <= 0) {
+					return null;
+				}
+				if (nanos < delay || _leader != null) {
+					nanos = _available.awaitNanos(nanos);
+				} else {
+					Thread thisThread = Thread.currentThread();
+					_leader = thisThread;
+					try {
+						nanos -= delay - _available.awaitNanos(delay);
+					} finally {
+						if (_leader == thisThread) {
+							_leader = null;
+						}
+					}
+				}
+			}
+		} finally {
+			this.signalNext();
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns but does not remove the head, whether or not it is available yet.
+	 * This method runs in O(1) time.
+	 *
+	 * @return the head of the queue, or null if the queue is empty
+	 */
+	public E peek() {
+		_lock.lock();
+		try {
+			return _heap.isEmpty() ? null : _heap.min().getKey();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of elements, including ones that are not available yet
+	 */
+	public int size() {
+		_lock.lock();
+		try {
+			return _heap.size();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Integer.MAX_VALUE, because the queue is unbounded
+	 */
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Moves every available element into the given collection.
+	 *
+	 * @return the number of elements moved
+	 */
+	public int drainTo(Collection<? super E> collection) {
+		return this.drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Moves up to maxElements available elements into the given collection,
+	 * in priority order and under a single lock acquisition.
+	 *
+	 * @return the number of elements moved
+	 * @throws IllegalArgumentException if the collection is this queue
+	 */
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		if (collection == null) {
+			throw new NullPointerException("collection is null");
+		}
+		if (collection == this) {
+			throw new IllegalArgumentException("cannot drain a queue into itself");
+		}
+		_lock.lock();
+		try {
+			int drained = 0;
+			while (drained < maxElements && !_heap.isEmpty()
+					&& this.delayNanos(_heap.min().getKey()) <= 0) {
+				collection.add(_heap.removeMin().getKey());
+				drained++;
+			}
+			return drained;
+		} finally {
+			this.signalNext();
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes one element equal to the given object, whether or not it is available yet.
+	 * This method runs in O(n) time.
+	 *
+	 * @return true if an element was removed
+	 */
+	public boolean remove(Object object) {
+		if (object == null) {
+			return false;
+		}
+		_lock.lock();
+		try {
+			for (Entry<E,E> entry : _heap.entries()) {
+				if (object.equals(entry.getKey())) {
+					_heap.remove(entry);
+					this.signalNext();
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes every element, including ones that are not available yet.
+	 */
+	public void clear() {
+		_lock.lock();
+		try {
+			while (!_heap.isEmpty()) {
+				_heap.removeMin();
+			}
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the elements, in no particular
+	 * order. Its remove method removes the element from the queue if it is
+	 * still there.
+	 *
+	 * @return an iterator over the elements present when it was created
+	 */
+	public Iterator<E> iterator() {
+		_lock.lock();
+		try {
+			return new SnapshotIterator(_heap.entries());
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the head; must be called with the lock held
+	 */
+	private E removeHead() {
+		return _heap.removeMin().getKey();
+	}
+
+	/**
+	 * Passes the wake-up on to the next waiter when the leader role is free and there is
+	 * still something at the head; must be called with the lock held
+	 */
+	private void signalNext() {
+		if (_leader == null && !_heap.isEmpty()) {
+			_available.signal();
+		}
+	}
+
+	/**
+	 * Iterates over a list of entries taken under the lock
+	 */
+	private class SnapshotIterator implements Iterator<E> {
+
+		private final List<Entry<E,E>> _entries;
+		private int _next;
+		private Entry<E,E> _last;
+
+		private SnapshotIterator(List<Entry<E,E>> entries) {
+			_entries = entries;
+		}
+
+		public boolean hasNext() {
+			return _next < _entries.size();
+		}
+
+		public E next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			_last = _entries.get(_next++);
+			return _last.getKey();
+		}
+
+		public void remove() {
+			if (_last == null) {
+				throw new IllegalStateException();
+			}
+			_lock.lock();
+			try {
+				_heap.remove(_last);
+			} catch (InvalidEntryException e) {
+				// already taken by someone else
+			} finally {
+				_lock.unlock();
+			}
+			_last = null;
+		}
+	}
+}
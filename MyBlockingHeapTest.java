@@ -0,0 +1,123 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * This class tests the functionality of the MyBlockingHeap and MyDelayHeap implementations.
+ */
+public class MyBlockingHeapTest {
+
+	/**
+	 * Tests that elements are taken in comparator order
+	 */
+	@Test
+	public void takeOrderTest() throws InterruptedException {
+		MyBlockingHeap<Integer> queue = new MyBlockingHeap<Integer>(new IntegerComparator());
+		queue.put(44);
+		queue.put(11);
+		queue.put(16);
+
+		assertThat(queue.size(), is(3));
+		assertThat(queue.peek(), is(11));
+		assertThat(queue.take(), is(11));
+		assertThat(queue.take(), is(16));
+		assertThat(queue.poll(), is(44));
+		assertTrue(queue.poll() == null);
+	}
+
+	/**
+	 * Tests that a timed poll on an empty queue gives up and returns null
+	 */
+	@Test
+	public void timedPollTimeoutTest() throws InterruptedException {
+		MyBlockingHeap<Integer> queue = new MyBlockingHeap<Integer>(new IntegerComparator());
+		assertTrue(queue.poll(10, TimeUnit.MILLISECONDS) == null);
+	}
+
+	/**
+	 * Tests that a blocked taker is woken up by a later put
+	 */
+	@Test
+	public void takeBlocksUntilPutTest() throws InterruptedException {
+		final MyBlockingHeap<Integer> queue = new MyBlockingHeap<Integer>(new IntegerComparator());
+		final List<Integer> taken = new ArrayList<Integer>();
+		Thread taker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					taken.add(queue.take());
+				} catch (InterruptedException e) {
+					// the test fails on the assertion below
+				}
+			}
+		});
+		taker.start();
+		Thread.sleep(20);
+		queue.put(7);
+		taker.join(2000);
+
+		assertThat(taken, is(Arrays.asList(7)));
+	}
+
+	/**
+	 * Tests that drainTo moves elements in order and respects the maximum
+	 */
+	@Test
+	public void drainToTest() {
+		MyBlockingHeap<Integer> queue = new MyBlockingHeap<Integer>(new IntegerComparator());
+		queue.addAll(Arrays.asList(5, 3, 9, 1));
+		List<Integer> drained = new ArrayList<Integer>();
+
+		assertThat(queue.drainTo(drained, 3), is(3));
+		assertThat(drained, is(Arrays.asList(1, 3, 5)));
+		assertThat(queue.size(), is(1));
+		assertTrue(queue.remove(9));
+		assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * Tests that a delayed element is held back until its delay runs out
+	 */
+	@Test
+	public void delayHeapTest() throws InterruptedException {
+		MyDelayHeap<Delay> queue = new MyDelayHeap<Delay>();
+		Delay later = new Delay(40);
+		Delay now = new Delay(0);
+		queue.put(later);
+		queue.put(now);
+
+		assertTrue(queue.poll() == now);
+		assertTrue(queue.poll() == null);
+		assertTrue(queue.peek() == later);
+		assertTrue(queue.take() == later);
+		assertTrue(System.nanoTime() >= later._due);
+	}
+
+	/**
+	 * A Delayed element that becomes due a number of milliseconds after it is created
+	 */
+	private static class Delay implements Delayed {
+
+		private final long _due;
+
+		private Delay(long millis) {
+			_due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(_due - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		public int compareTo(Delayed other) {
+			return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+}
@@ -0,0 +1,397 @@
+package heap;
+
+import net.datastructures.*;
+
+/**
+ * An adaptable priority queue for long keys, implemented as a calendar
+ * queue (Brown, 1988). Keys are sorted into an array of buckets like days
+ * in a calendar: a key k goes to bucket floor(k / width) mod bucketCount,
+ * and each bucket is a sorted doubly linked list. New keys usually belong
+ * at or near the end of their bucket, so inserts search back from its
+ * tail. removeMin scans forward from the bucket of the last minimum,
+ * taking the first head that falls in the bucket's current "year", so when
+ * keys are spread over the calendar with about one per bucket, every
+ * operation runs in O(1) expected time regardless of how many entries are
+ * stored.
+ *
+ * The calendar doubles its buckets when the size grows past twice their
+ * number and halves them when it drops below half, and each time the
+ * width is recomputed as Brown suggests: from the gaps between the few
+ * smallest keys, which are the next to be dequeued, leaving out gaps more
+ * than twice their average, so a handful of far-future keys cannot stretch
+ * the buckets. That rebuild is O(n) but amortized over the n/2 operations
+ * that caused it. Equal keys leave the queue in the order they were
+ * inserted.
+ *
+ * This suits event lists in simulations, whose keys mostly arrive a little
+ * after the current minimum. Keys far below the scan position are still
+ * handled correctly; they just move the scan position back.
+ */
+
+public class MyCalendarQueue<V> implements AdaptablePriorityQueue<Long,V> {
+
+	private static final int MIN_BUCKETS = 16;
+	private static final int WIDTH_SAMPLE = 25;
+
+	private Node<V>[] _buckets;
+	private Node<V>[] _tails;
+	private long _width;
+	private int _size;
+	private int _current;
+	private long _currentTop;
+
+	/**
+	 * Creates an empty calendar queue with a bucket width of 1.
+	 */
+	public MyCalendarQueue() {
+		this.resize(MIN_BUCKETS, 1);
+	}
+
+	/**
+	 * Returns the size of the queue. This method runs in O(1) time.
+	 *
+	 * @return an int representing the number of entries stored
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Returns whether the queue is empty. This method runs in O(1) time.
+	 *
+	 * @return true if the queue is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * Returns but does not remove the entry with minimum key.
+	 * This method runs in O(1) expected time.
+	 *
+	 * @return the entry with the minimum key
+	 * @throws EmptyPriorityQueueException if the queue is empty
+	 */
+	public Entry<Long,V> min() throws EmptyPriorityQueueException {
+		if (_size == 0) {
+			throw new EmptyPriorityQueueException("Empty Queue");
+		}
+		return this.locateMin();
+	}
+
+	/**
+	 * Inserts a key-value pair and returns the entry created.
+	 * This method runs in O(1) expected time.
+	 *
+	 * @param key to be used as the key the queue is sorting with
+	 * @param value stored with the associated key
+	 * @return the entry created using the key/value parameters
+	 * @throws InvalidKeyException if the key is null
+	 */
+	public Entry<Long,V> insert(Long key, V value) throws InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		Node<V> node = new Node<V>(this, key, value);
+		this.link(node);
+		_size++;
+		if (_size > 2 * _buckets.length) {
+			this.resize(2 * _buckets.length, this.estimateWidth());
+		}
+		return node;
+	}
+
+	/**
+	 * Removes and returns the entry with the minimum key.
+	 * This method runs in O(1) expected time.
+	 *
+	 * @return the entry with the minimum key, now removed
+	 * @throws EmptyPriorityQueueException if the queue is empty
+	 */
+	public Entry<Long,V> removeMin() throws EmptyPriorityQueueException {
+		if (_size == 0) {
+			throw new EmptyPriorityQueueException("The Queue is Empty");
+		}
+		return this.removeNode(this.locateMin());
+	}
+
+	/**
+	 * Removes and returns the given entry. This method runs in O(1) expected time.
+	 *
+	 * @param entry to be removed
+	 * @return the entry, now removed
+	 * @throws InvalidEntryException if the entry is not in this queue
+	 */
+	public Entry<Long,V> remove(Entry<Long,V> entry) throws InvalidEntryException {
+		return this.removeNode(this.checkAndConvertEntry(entry));
+	}
+
+	/**
+	 * Replaces the key of the given entry, moving it to the bucket of the new
+	 * key. This method runs in O(1) expected time.
+	 *
+	 * @param entry within which the key will be replaced
+	 * @param key to replace the existing key in the entry
+	 * @return the old key formerly associated with the entry
+	 * @throws InvalidEntryException if the entry is not in this queue
+	 * @throws InvalidKeyException if the key is null
+	 */
+	public Long replaceKey(Entry<Long,V> entry, Long key) throws InvalidEntryException, InvalidKeyException {
+		Node<V> node = this.checkAndConvertEntry(entry);
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		long oldKey = node._key;
+		this.unlink(node);
+		node._key = key;
+		this.link(node);
+		return oldKey;
+	}
+
+	/**
+	 * Replaces the value of the given entry. This method runs in O(1) time.
+	 *
+	 * @param entry within which the value will be replaced
+	 * @param value to replace the existing value in the entry
+	 * @return the old value formerly associated with the entry
+	 * @throws InvalidEntryException if the entry is not in this queue
+	 */
+	public V replaceValue(Entry<Long,V> entry, V value) throws InvalidEntryException {
+		Node<V> node = this.checkAndConvertEntry(entry);
+		V oldValue = node._value;
+		node._value = value;
+		return oldValue;
+	}
+
+	/**
+	 * @return the number of buckets the calendar currently has
+	 */
+	public int bucketCount() {
+		return _buckets.length;
+	}
+
+	/**
+	 * @return the range of keys that one bucket covers in one year
+	 */
+	public long bucketWidth() {
+		return _width;
+	}
+
+	/**
+	 * @param entry which is checked for validity with respect to this queue
+	 * @return the entry cast as a node of this queue
+	 * @throws InvalidEntryException if the entry is not currently stored in this queue
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<V> checkAndConvertEntry(Entry<Long,V> entry) throws InvalidEntryException {
+		if (!(entry instanceof Node) || ((Node<V>) entry)._owner != this) {
+			throw new InvalidEntryException("Invalid entry");
+		}
+		return (Node<V>) entry;
+	}
+
+	/**
+	 * Finds the minimum and moves the scan position to its bucket. The scan
+	 * goes through one year of buckets from the current one, taking the first
+	 * head that lies within its bucket's current year; if a whole year is
+	 * empty, the minimum is found directly among the bucket heads.
+	 *
+	 * @return the node with the minimum key, which must exist
+	 */
+	private Node<V> locateMin() {
+		int bucket = _current;
+		long top = _currentTop;
+		for (int i = 0; i < _buckets.length; i++) {
+			Node<V> head = _buckets[bucket];
+			if (head != null && head._key < top) {
+				_current = bucket;
+				_currentTop = top;
+				return head;
+			}
+			bucket = (bucket + 1) & (_buckets.length - 1);
+			top += _width;
+		}
+		Node<V> min = null;
+		for (Node<V> head : _buckets) {
+			if (head != null && (min == null || head._key < min._key)) {
+				min = head;
+			}
+		}
+		this.moveTo(min._key);
+		return min;
+	}
+
+	/**
+	 * Unlinks a node, releases it and shrinks the calendar if it has become sparse
+	 *
+	 * @return the node
+	 */
+	private Node<V> removeNode(Node<V> node) {
+		this.unlink(node);
+		node._owner = null;
+		_size--;
+		if (_size < _buckets.length / 2 && _buckets.length > MIN_BUCKETS) {
+			this.resize(_buckets.length / 2, this.estimateWidth());
+		}
+		return node;
+	}
+
+	/**
+	 * Links a node into its bucket after any nodes with an equal or smaller
+	 * key, searching back from the tail, and moves the scan position back if
+	 * the key lies before it
+	 */
+	private void link(Node<V> node) {
+		int bucket = this.bucketOf(node._key);
+		Node<V> previous = _tails[bucket];
+		Node<V> next = null;
+		while (previous != null && previous._key > node._key) {
+			next = previous;
+			previous = previous._previous;
+		}
+		node._previous = previous;
+		node._next = next;
+		if (previous == null) {
+			_buckets[bucket] = node;
+		} else {
+			previous._next = node;
+		}
+		if (next == null) {
+			_tails[bucket] = node;
+		} else {
+			next._previous = node;
+		}
+		if (node._key < _currentTop - _width) {
+			this.moveTo(node._key);
+		}
+	}
+
+	/**
+	 * Unlinks a node from its bucket
+	 */
+	private void unlink(Node<V> node) {
+		int bucket = this.bucketOf(node._key);
+		if (node._previous == null) {
+			_buckets[bucket] = node._next;
+		} else {
+			node._previous._next = node._next;
+		}
+		if (node._next == null) {
+			_tails[bucket] = node._previous;
+		} else {
+			node._next._previous = node._previous;
+		}
+		node._previous = null;
+		node._next = null;
+	}
+
+	/**
+	 * Moves the scan position to the bucket and year of the given key
+	 */
+	private void moveTo(long key) {
+		_current = this.bucketOf(key);
+		_currentTop = (Math.floorDiv(key, _width) + 1) * _width;
+	}
+
+	/**
+	 * @return the bucket index of a key
+	 */
+	private int bucketOf(long key) {
+		return (int) (Math.floorDiv(key, _width) & (_buckets.length - 1));
+	}
+
+	/**
+	 * Estimates the bucket width from the WIDTH_SAMPLE smallest keys: the
+	 * gaps between them are averaged, gaps more than twice that average are
+	 * dropped as outliers, and the width is three times the average of the
+	 * rest. The current width is kept if fewer than two keys are stored.
+	 *
+	 * @return the new width, at least 1
+	 */
+	private long estimateWidth() {
+		if (_size < 2) {
+			return _width;
+		}
+		// insertion into a short sorted array; most keys are larger than the last sampled one
+		long[] sample = new long[Math.min(_size, WIDTH_SAMPLE)];
+		int sampled = 0;
+		for (Node<V> head : _buckets) {
+			for (Node<V> node = head; node != null; node = node._next) {
+				if (sampled == sample.length && node._key >= sample[sampled - 1]) {
+					continue;
+				}
+				int i = sampled < sample.length ? sampled++ : sampled - 1;
+				while (i > 0 && sample[i - 1] > node._key) {
+					sample[i] = sample[i - 1];
+					i--;
+				}
+				sample[i] = node._key;
+			}
+		}
+		// gaps are computed in double so that keys far apart cannot overflow
+		double average = ((double) sample[sampled - 1] - (double) sample[0]) / (sampled - 1);
+		double total = 0;
+		int gaps = 0;
+		for (int i = 1; i < sampled; i++) {
+			double gap = (double) sample[i] - (double) sample[i - 1];
+			if (gap <= 2 * average) {
+				total += gap;
+				gaps++;
+			}
+		}
+		return (long) Math.max(1, Math.min(3 * total / gaps, Long.MAX_VALUE / 4));
+	}
+
+	/**
+	 * Rebuilds the calendar with the given number of buckets and width, relinking every node
+	 */
+	@SuppressWarnings("unchecked")
+	private void resize(int bucketCount, long width) {
+		Node<V>[] old = _buckets;
+		_buckets = (Node<V>[]) new Node<?>[bucketCount];
+		_tails = (Node<V>[]) new Node<?>[bucketCount];
+		_width = width;
+		_currentTop = Long.MAX_VALUE;
+		if (old == null) {
+			this.moveTo(0);
+			return;
+		}
+		long min = Long.MAX_VALUE;
+		for (Node<V> head : old) {
+			Node<V> node = head;
+			while (node != null) {
+				Node<V> next = node._next;
+				min = Math.min(min, node._key);
+				this.link(node);
+				node = next;
+			}
+		}
+		this.moveTo(min == Long.MAX_VALUE ? 0 : min);
+	}
+
+	/**
+	 * A calendar node, which is also the entry handed out for its key and value
+	 */
+	private static class Node<V> implements Entry<Long,V> {
+
+		private MyCalendarQueue<V> _owner;
+		private long _key;
+		private V _value;
+		private Node<V> _previous;
+		private Node<V> _next;
+
+		private Node(MyCalendarQueue<V> owner, long key, V value) {
+			_owner = owner;
+			_key = key;
+			_value = value;
+		}
+
+		public Long getKey() {
+			return _key;
+		}
+
+		public V getValue() {
+			return _value;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the MyCalendarQueue implementation, including resizing, keys before the scan position and
+ * first in, first out order among equal keys.
+ */
+public class MyCalendarQueueTest {
+
+	/**
+	 * Tests a hold-model workload with removals and key changes against a sorted list of the expected keys
+	 */
+	@Test
+	public void randomOperationsTest() {
+		MyCalendarQueue<Integer> queue = new MyCalendarQueue<Integer>();
+		Random random = new Random(41);
+		List<Entry<Long, Integer>> entries = new ArrayList<Entry<Long, Integer>>();
+		long now = 0;
+		for (int i = 0; i < 20000; i++) {
+			int operation = random.nextInt(10);
+			if (entries.isEmpty() || operation < 5) {
+				// mostly near the front, sometimes far in the past or the future
+				long key = operation == 0 ? now - random.nextInt(100000) : now + random.nextInt(1000);
+				entries.add(queue.insert(key, i));
+			} else if (operation < 8) {
+				Entry<Long, Integer> min = queue.removeMin();
+				assertThat(min.getKey(), is(this.smallestKey(entries)));
+				entries.remove(min);
+				now = min.getKey();
+			} else if (operation < 9) {
+				queue.remove(entries.remove(random.nextInt(entries.size())));
+			} else {
+				Entry<Long, Integer> entry = entries.get(random.nextInt(entries.size()));
+				queue.replaceKey(entry, now + random.nextInt(5000));
+			}
+			assertThat(queue.size(), is(entries.size()));
+		}
+
+		assertTrue(queue.bucketCount() > 16);
+		List<Long> keys = new ArrayList<Long>();
+		for (Entry<Long, Integer> entry : entries) {
+			keys.add(entry.getKey());
+		}
+		Collections.sort(keys);
+		for (long key : keys) {
+			assertThat(queue.removeMin().getKey(), is(key));
+		}
+		assertTrue(queue.isEmpty());
+		assertThat(queue.bucketCount(), is(16));
+	}
+
+	/**
+	 * Tests that entries with equal keys leave in the order they were inserted, across a resize
+	 */
+	@Test
+	public void equalKeysFifoTest() {
+		MyCalendarQueue<Integer> queue = new MyCalendarQueue<Integer>();
+		for (int i = 0; i < 100; i++) {
+			queue.insert((long) (i % 3), i);
+		}
+		for (int key = 0; key < 3; key++) {
+			int previous = -1;
+			while (!queue.isEmpty() && queue.min().getKey() == key) {
+				int value = queue.removeMin().getValue();
+				assertTrue(value > previous);
+				previous = value;
+			}
+		}
+		assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * Tests that one far-future key does not stretch the bucket width, as the calendar grows and as it shrinks
+	 * until the key is among the few that remain
+	 */
+	@Test
+	public void outlierWidthTest() {
+		MyCalendarQueue<Integer> queue = new MyCalendarQueue<Integer>();
+		queue.insert(1000000000000L, -1);
+		for (int i = 0; i < 100; i++) {
+			queue.insert(10L * i, i);
+		}
+		assertTrue(queue.bucketCount() > 16);
+		assertTrue(queue.bucketWidth() <= 100);
+		for (int i = 0; i < 90; i++) {
+			assertThat(queue.removeMin().getValue(), is(i));
+		}
+		assertThat(queue.bucketCount(), is(16));
+		assertTrue(queue.bucketWidth() <= 100);
+		for (int i = 90; i < 100; i++) {
+			assertThat(queue.removeMin().getValue(), is(i));
+		}
+		assertThat(queue.removeMin().getValue(), is(-1));
+	}
+
+	/**
+	 * Tests that an Invalid Entry Exception is raised for an entry that was already removed
+	 */
+	@Test(expected = InvalidEntryException.class)
+	public void removeTwiceExceptionTest() {
+		MyCalendarQueue<String> queue = new MyCalendarQueue<String>();
+		Entry<Long, String> entry = queue.insert(5L, "a");
+		queue.removeMin();
+		queue.remove(entry);
+	}
+
+	private long smallestKey(List<Entry<Long, Integer>> entries) {
+		long smallest = Long.MAX_VALUE;
+		for (Entry<Long, Integer> entry : entries) {
+			smallest = Math.min(smallest, entry.getKey());
+		}
+		return smallest;
+	}
+}
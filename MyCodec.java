@@ -0,0 +1,112 @@
+package heap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Converts keys or values to and from bytes for MyHeapSnapshot. Each encoded
+ * object is written with its length in front of it, so a codec only has to
+ * report how many bytes it needs, write exactly that many, and read them
+ * back. Codecs are never handed null; null values are marked by the length.
+ */
+
+public interface MyCodec<T> {
+
+	/**
+	 * @param object to be encoded
+	 * @return the number of bytes write will put into the buffer for this object
+	 */
+	int size(T object);
+
+	/**
+	 * Writes exactly size(object) bytes for the object at the buffer's position.
+	 *
+	 * @param object to be encoded
+	 * @param buffer with at least size(object) bytes remaining
+	 */
+	void write(T object, ByteBuffer buffer);
+
+	/**
+	 * Reads an object that was written by write.
+	 *
+	 * @param buffer positioned at the first byte of the object
+	 * @param length the number of bytes that write produced for the object
+	 * @return the decoded object
+	 */
+	T read(ByteBuffer buffer, int length);
+
+	/**
+	 * Encodes Integers as 4 big-endian bytes
+	 */
+	MyCodec<Integer> INTEGER = new MyCodec<Integer>() {
+		public int size(Integer object) {
+			return 4;
+		}
+
+		public void write(Integer object, ByteBuffer buffer) {
+			buffer.putInt(object);
+		}
+
+		public Integer read(ByteBuffer buffer, int length) {
+			return buffer.getInt();
+		}
+	};
+
+	/**
+	 * Encodes Longs as 8 big-endian bytes
+	 */
+	MyCodec<Long> LONG = new MyCodec<Long>() {
+		public int size(Long object) {
+			return 8;
+		}
+
+		public void write(Long object, ByteBuffer buffer) {
+			buffer.putLong(object);
+		}
+
+		public Long read(ByteBuffer buffer, int length) {
+			return buffer.getLong();
+		}
+	};
+
+	/**
+	 * Encodes Strings as UTF-8. size counts the bytes from the chars instead
+	 * of encoding the string, so each string is only encoded once, by write.
+	 */
+	MyCodec<String> STRING = new MyCodec<String>() {
+		private final Charset _utf8 = Charset.forName("UTF-8");
+
+		public int size(String object) {
+			int size = 0;
+			int length = object.length();
+			for (int i = 0; i < length; i++) {
+				char c = object.charAt(i);
+				if (c < 0x80) {
+					size++;
+				} else if (c < 0x800) {
+					size += 2;
+				} else if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(object.charAt(i + 1))) {
+					size += 4;
+					i++;
+				} else if (Character.isSurrogate(c)) {
+					// an unpaired surrogate is encoded as a single '?'
+					size++;
+				} else {
+					size += 3;
+				}
+			}
+			return size;
+		}
+
+		public void write(String object, ByteBuffer buffer) {
+			buffer.put(object.getBytes(_utf8));
+		}
+
+		public String read(ByteBuffer buffer, int length) {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return new String(bytes, _utf8);
+		}
+	};
+}
@@ -0,0 +1,154 @@
+package heap;
+
+import java.util.Arrays;
+
+/**
+ * An indexed d-ary min-heap of graph nodes. The heap is an int array of
+ * nodes with their keys in a parallel long array, and a position array
+ * indexed by node finds a queued node in O(1), so push can lower its key in
+ * place. Nothing is allocated after construction, which is what makes it
+ * faster on graph searches than a general adaptable priority queue.
+ *
+ * With d = 2 this is the usual indexed binary heap. A larger d makes the
+ * tree shallower, so a decrease-key sifts up fewer levels at the cost of
+ * comparing d children on the way down in pop; since Dijkstra does many
+ * more decrease-keys than pops on dense graphs, d = 4 is often faster.
+ */
+
+public class MyDaryHeap implements MyNodeQueue {
+
+	private final int _arity;
+	private final int[] _heap;
+	private final long[] _keys;
+	private final int[] _positions;
+	private int _size;
+
+	/**
+	 * Creates an empty heap for the nodes of a graph.
+	 *
+	 * @param nodes the number of nodes that may be queued
+	 * @param arity the number of children each heap slot has
+	 * @throws IllegalArgumentException if the node count is negative or the arity is less than 2
+	 */
+	public MyDaryHeap(int nodes, int arity) throws IllegalArgumentException {
+		if (nodes < 0 || arity < 2) {
+			throw new IllegalArgumentException("Invalid node count or arity");
+		}
+		_arity = arity;
+		_heap = new int[nodes];
+		_keys = new long[nodes];
+		_positions = new int[nodes];
+		Arrays.fill(_positions, -1);
+		_size = 0;
+	}
+
+	/**
+	 * Returns whether the heap is empty. This method runs in O(1) time.
+	 *
+	 * @return true if no node is queued; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * @return the number of nodes queued
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Queues a node or lowers its key. This method runs in O(log_d n) time.
+	 *
+	 * @param node to queue
+	 * @param key of the node
+	 */
+	public void push(int node, long key) {
+		int slot = _positions[node];
+		if (slot < 0) {
+			slot = _size++;
+		} else if (key >= _keys[slot]) {
+			return;
+		}
+		this.siftUp(slot, node, key);
+	}
+
+	/**
+	 * Removes the node with the smallest key. This method runs in O(d log_d n) time.
+	 *
+	 * @return the node removed
+	 * @throws IllegalStateException if the heap is empty
+	 */
+	public int pop() throws IllegalStateException {
+		if (_size == 0) {
+			throw new IllegalStateException("The Heap is Empty");
+		}
+		int min = _heap[0];
+		_positions[min] = -1;
+		_size--;
+		if (_size > 0) {
+			this.siftDown(0, _heap[_size], _keys[_size]);
+		}
+		return min;
+	}
+
+	/**
+	 * Removes every queued node. This method runs in O(n) time for the n nodes queued.
+	 */
+	public void clear() {
+		for (int i = 0; i < _size; i++) {
+			_positions[_heap[i]] = -1;
+		}
+		_size = 0;
+	}
+
+	/**
+	 * Moves a node up from a slot, shifting larger parents down, until its parent is not larger
+	 */
+	private void siftUp(int slot, int node, long key) {
+		while (slot > 0) {
+			int parent = (slot - 1) / _arity;
+			if (_keys[parent] <= key) {
+				break;
+			}
+			this.place(slot, _heap[parent], _keys[parent]);
+			slot = parent;
+		}
+		this.place(slot, node, key);
+	}
+
+	/**
+	 * Moves a node down from a slot, shifting the smallest child up, until no child is smaller
+	 */
+	private void siftDown(int slot, int node, long key) {
+		while (true) {
+			int first = slot * _arity + 1;
+			if (first >= _size) {
+				break;
+			}
+			int smallest = first;
+			int end = Math.min(first + _arity, _size);
+			for (int child = first + 1; child < end; child++) {
+				if (_keys[child] < _keys[smallest]) {
+					smallest = child;
+				}
+			}
+			if (_keys[smallest] >= key) {
+				break;
+			}
+			this.place(slot, _heap[smallest], _keys[smallest]);
+			slot = smallest;
+		}
+		this.place(slot, node, key);
+	}
+
+	/**
+	 * Stores a node and key in a slot and records the slot as the node's position
+	 */
+	private void place(int slot, int node, long key) {
+		_heap[slot] = node;
+		_keys[slot] = key;
+		_positions[node] = slot;
+	}
+}
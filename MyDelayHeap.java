@@ -0,0 +1,35 @@
+package heap;
+
+import java.util.Comparator;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A MyBlockingHeap with the semantics of java.util.concurrent.DelayQueue:
+ * elements are ordered by their remaining delay, and an element can only be
+ * taken, polled or drained once its delay has run out. peek still returns
+ * the head whether or not it is due.
+ */
+
+public class MyDelayHeap<E extends Delayed> extends MyBlockingHeap<E> {
+
+	/**
+	 * Creates an empty queue ordered by the elements' delays.
+	 */
+	public MyDelayHeap() {
+		super(new Comparator<E>() {
+			public int compare(E one, E two) {
+				return one.compareTo(two);
+			}
+		});
+	}
+
+	/**
+	 * @param element at the head of the queue
+	 * @return the element's own remaining delay in nanoseconds
+	 */
+	@Override
+	protected long delayNanos(E element) {
+		return element.getDelay(TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,904 @@
+package heap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import net.datastructures.*;
+
+/**
+ * An adaptable priority queue whose contents survive restarts. Every insert,
+ * remove, replaceKey and replaceValue is appended as a record to a
+ * write-ahead log and then applied to an in-memory MyHeap, whose entries
+ * stay valid handles while the heap reorders them. If the record cannot be
+ * encoded nothing is applied, and if the change is rejected the record is
+ * taken back out of the log buffer; checkpoint forces every record to the
+ * log, writes a MyHeapSnapshot and starts the log over. open recovers by
+ * loading the latest snapshot and replaying the log tail on top of it.
+ *
+ * Every entry gets an id that is stored in both the snapshot and the log,
+ * so a caller can find the same entry again after recovery with entry(id).
+ *
+ * How long an operation waits for its record depends on the SyncPolicy.
+ * With PER_OPERATION the caller returns only once its record is forced to
+ * disk, but callers that arrive while a force is in progress are committed
+ * together by the next one (group commit), so concurrent callers share
+ * fsyncs. With INTERVAL a background thread forces the log every few
+ * milliseconds, and with OS_MANAGED records are written to the file on
+ * every operation but only forced when the operating system decides to.
+ */
+
+public class MyDurableHeap<K,V> implements AdaptablePriorityQueue<K,V> {
+
+	/**
+	 * When log records are forced to disk
+	 */
+	public enum SyncPolicy {
+		/** each operation waits until its record is forced, sharing the force with concurrent callers */
+		PER_OPERATION,
+		/** a background thread forces the log at a fixed interval; operations do not wait */
+		INTERVAL,
+		/** records are written on every operation but forcing is left to the operating system */
+		OS_MANAGED
+	}
+
+	private static final String SNAPSHOT_FILE = "heap.snapshot";
+	private static final String LOG_FILE = "heap.log";
+	private static final int READ_BUFFER_SIZE = 1 << 20;
+
+	private static final byte INSERT = 1;
+	private static final byte REMOVE = 2;
+	private static final byte REPLACE_KEY = 3;
+	private static final byte REPLACE_VALUE = 4;
+	private static final byte CHECKPOINT = 5;
+
+	private final Path _directory;
+	private final MyCodec<K> _keyCodec;
+	private final MyCodec<V> _valueCodec;
+	private final SyncPolicy _policy;
+	private final MyHeap<K,DurableEntry<K,V>> _heap;
+	private final Map<Long,DurableEntry<K,V>> _entriesById;
+	private final FileChannel _log;
+	private ScheduledExecutorService _syncer;
+	private long _nextId;
+
+	// _lock guards the heap and the pending records; _syncLock guards who is writing the log
+	private final ReentrantLock _lock;
+	private ByteBuffer _pending;
+	private ByteBuffer _spare;
+	private long _appended;
+
+	private final ReentrantLock _syncLock;
+	private final Condition _synced;
+	private boolean _syncing;
+	private long _durable;
+
+	private MyDurableHeap(Path directory, MyHeap<K,DurableEntry<K,V>> heap, MyCodec<K> keyCodec,
+			MyCodec<V> valueCodec, SyncPolicy policy) throws IOException {
+		_directory = directory;
+		_keyCodec = keyCodec;
+		_valueCodec = valueCodec;
+		_policy = policy;
+		_heap = heap;
+		_entriesById = new HashMap<Long,DurableEntry<K,V>>();
+		_lock = new ReentrantLock();
+		_pending = ByteBuffer.allocate(64 * 1024);
+		_spare = ByteBuffer.allocate(64 * 1024);
+		_syncLock = new ReentrantLock();
+		_synced = _syncLock.newCondition();
+		for (Entry<K,DurableEntry<K,V>> entry : heap.entries()) {
+			DurableEntry<K,V> durableEntry = entry.getValue();
+			durableEntry._entry = entry;
+			_entriesById.put(durableEntry._id, durableEntry);
+			_nextId = Math.max(_nextId, durableEntry._id + 1);
+		}
+		_log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Opens the durable heap stored in the given directory, creating it if
+	 * it does not exist. The latest snapshot is loaded and the log records
+	 * written after it are replayed; a torn record at the end of the log,
+	 * left by a crash in the middle of a write, is discarded.
+	 *
+	 * @param directory holding the snapshot and log files
+	 * @param comparator to be used for heap keys
+	 * @param keyCodec used to encode keys in the snapshot and log
+	 * @param valueCodec used to encode values in the snapshot and log
+	 * @param policy deciding when log records are forced to disk
+	 * @param intervalMillis how often the log is forced under SyncPolicy.INTERVAL; ignored otherwise
+	 * @return the recovered heap
+	 * @throws IOException if the files cannot be read or created
+	 * @throws IllegalArgumentException if the interval is not positive under SyncPolicy.INTERVAL
+	 */
+	public static <K,V> MyDurableHeap<K,V> open(Path directory, Comparator<K> comparator, MyCodec<K> keyCodec,
+			MyCodec<V> valueCodec, SyncPolicy policy, long intervalMillis)
+			throws IOException, IllegalArgumentException {
+		if (policy == SyncPolicy.INTERVAL && intervalMillis <= 0) {
+			throw new IllegalArgumentException("interval must be positive");
+		}
+		Files.createDirectories(directory);
+		Path snapshot = directory.resolve(SNAPSHOT_FILE);
+		MyHeap<K,DurableEntry<K,V>> heap;
+		if (Files.exists(snapshot)) {
+			heap = MyHeapSnapshot.loadHeap(snapshot, comparator, keyCodec,
+					new DurableEntryCodec<K,V>(valueCodec));
+		} else {
+			heap = new MyHeap<K,DurableEntry<K,V>>(comparator);
+		}
+		MyDurableHeap<K,V> durableHeap = new MyDurableHeap<K,V>(directory, heap, keyCodec, valueCodec, policy);
+		durableHeap.replay();
+		if (policy == SyncPolicy.INTERVAL) {
+			durableHeap.startSyncer(intervalMillis);
+		}
+		return durableHeap;
+	}
+
+	/**
+	 * @return the number of entries stored
+	 */
+	public int size() {
+		_lock.lock();
+		try {
+			return _heap.size();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true if the heap is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return this.size() == 0;
+	}
+
+	/**
+	 * Returns but does not remove the entry with minimum key.
+	 * This method runs in O(1) time.
+	 *
+	 * @return the entry with the minimum key in the heap
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		_lock.lock();
+		try {
+			return _heap.min().getValue();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the entry with the given id, for example one handed out before a restart.
+	 * This method runs in O(1) expected time.
+	 *
+	 * @param id of the entry, as returned by getId
+	 * @return the entry with that id
+	 * @throws InvalidEntryException if no entry with that id is stored
+	 */
+	public Entry<K,V> entry(long id) throws InvalidEntryException {
+		_lock.lock();
+		try {
+			DurableEntry<K,V> entry = _entriesById.get(id);
+			if (entry == null) {
+				throw new InvalidEntryException("No entry with id " + id);
+			}
+			return entry;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @param entry returned by this heap
+	 * @return the id that identifies the entry across restarts
+	 * @throws InvalidEntryException if the entry was not returned by this heap
+	 */
+	public long getId(Entry<K,V> entry) throws InvalidEntryException {
+		if (!(entry instanceof DurableEntry)) {
+			throw new InvalidEntryException("Invalid entry");
+		}
+		return ((DurableEntry<K,V>) entry)._id;
+	}
+
+	/**
+	 * Inserts a key-value pair, logs it and returns the entry created.
+	 * This method runs in O(log n) time plus the wait required by the sync policy.
+	 *
+	 * @param key to be used as the key the heap is sorting with
+	 * @param value stored with the associated key in the heap
+	 * @return the entry created using the key/value parameters
+	 * @throws InvalidKeyException if the key is not suitable for this heap
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		DurableEntry<K,V> entry;
+		long lsn;
+		_lock.lock();
+		try {
+			int record = this.encode(INSERT, _nextId, key, true, value, true);
+			try {
+				entry = this.applyInsert(_nextId, key, value);
+			} catch (RuntimeException e) {
+				_pending.position(record);
+				throw e;
+			}
+			_nextId++;
+			lsn = this.appended();
+		} finally {
+			_lock.unlock();
+		}
+		this.commit(lsn);
+		return entry;
+	}
+
+	/**
+	 * Removes and returns the entry with the minimum key, and logs the removal.
+	 * This method runs in O(log n) time plus the wait required by the sync policy.
+	 *
+	 * @return the entry with the minimum key, now removed
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+		return this.remove(null, true);
+	}
+
+	/**
+	 * Removes and returns the given entry, and logs the removal.
+	 * This method runs in O(log n) time plus the wait required by the sync policy.
+	 *
+	 * @param entry to be removed from the heap
+	 * @return the entry specified for removal by the parameter, now removed
+	 * @throws InvalidEntryException if the entry cannot be removed from this heap
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public Entry<K,V> remove(Entry<K,V> entry) throws InvalidEntryException {
+		return this.remove(entry, false);
+	}
+
+	/**
+	 * Replaces the key of the given entry and logs the change.
+	 * This method runs in O(log n) time plus the wait required by the sync policy.
+	 *
+	 * @param entry within which the key will be replaced
+	 * @param key to replace the existing key in the entry
+	 * @return the old key formerly associated with the entry
+	 * @throws InvalidEntryException if the entry is invalid
+	 * @throws InvalidKeyException if the key is invalid
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public K replaceKey(Entry<K,V> entry, K key) throws InvalidEntryException, InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		K oldKey;
+		long lsn;
+		_lock.lock();
+		try {
+			DurableEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
+			int record = this.encode(REPLACE_KEY, checkedEntry._id, key, true, null, false);
+			try {
+				oldKey = _heap.replaceKey(checkedEntry._entry, key);
+			} catch (RuntimeException e) {
+				_pending.position(record);
+				throw e;
+			}
+			lsn = this.appended();
+		} finally {
+			_lock.unlock();
+		}
+		this.commit(lsn);
+		return oldKey;
+	}
+
+	/**
+	 * Replaces the value of the given entry and logs the change.
+	 * This method runs in O(1) time plus the wait required by the sync policy.
+	 *
+	 * @param entry within which the value will be replaced
+	 * @param value to replace the existing value in the entry
+	 * @return the old value formerly associated with the entry
+	 * @throws InvalidEntryException if the entry cannot have its value replaced
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public V replaceValue(Entry<K,V> entry, V value) throws InvalidEntryException {
+		V oldValue;
+		long lsn;
+		_lock.lock();
+		try {
+			DurableEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
+			this.encode(REPLACE_VALUE, checkedEntry._id, null, false, value, true);
+			oldValue = checkedEntry._value;
+			checkedEntry._value = value;
+			lsn = this.appended();
+		} finally {
+			_lock.unlock();
+		}
+		this.commit(lsn);
+		return oldValue;
+	}
+
+	/**
+	 * Writes a snapshot of the current contents and empties the log, so
+	 * that recovery only has to replay what happens afterwards. The pending
+	 * records are forced to the log before the snapshot is written, so if a
+	 * crash leaves the old log next to the new snapshot, that log holds the
+	 * last record of every entry it mentions and replaying it ends in the
+	 * state the snapshot already has. Operations wait while the snapshot is
+	 * written. This method runs in O(n) time.
+	 *
+	 * @throws IOException if the snapshot or the log cannot be written
+	 */
+	public void checkpoint() throws IOException {
+		this.becomeWriter();
+		long lsn = 0;
+		try {
+			_lock.lock();
+			try {
+				this.writePending(true);
+				lsn = _appended;
+				MyHeapSnapshot.save(_heap, _keyCodec, new DurableEntryCodec<K,V>(_valueCodec),
+						_directory.resolve(SNAPSHOT_FILE));
+				// every record is in the log and covered by the snapshot, so the log can start over
+				_log.truncate(0);
+				_log.position(0);
+				this.encode(CHECKPOINT, _nextId, null, false, null, false);
+				lsn = this.appended();
+				this.writePending(true);
+			} finally {
+				_lock.unlock();
+			}
+		} finally {
+			this.releaseWriter(lsn);
+		}
+	}
+
+	/**
+	 * Forces every record appended so far to disk, whatever the sync policy.
+	 *
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public void sync() {
+		long lsn;
+		_lock.lock();
+		try {
+			lsn = _appended;
+		} finally {
+			_lock.unlock();
+		}
+		this.awaitDurable(lsn);
+	}
+
+	/**
+	 * Forces the log to disk and closes it. The heap must not be used afterwards.
+	 *
+	 * @throws IOException if the log cannot be written or closed
+	 */
+	public void close() throws IOException {
+		if (_syncer != null) {
+			_syncer.shutdown();
+		}
+		try {
+			this.sync();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			_log.close();
+		}
+	}
+
+	/**
+	 * @throws InvalidEntryException if the entry is not stored in this heap
+	 */
+	@SuppressWarnings("unchecked")
+	private DurableEntry<K,V> checkAndConvertEntry(Entry<K,V> entry) throws InvalidEntryException {
+		if (!(entry instanceof DurableEntry)) {
+			throw new InvalidEntryException("Invalid entry");
+		}
+		DurableEntry<K,V> checkedEntry = (DurableEntry<K,V>) entry;
+		if (_entriesById.get(checkedEntry._id) != checkedEntry) {
+			throw new InvalidEntryException("Not in the heap");
+		}
+		return checkedEntry;
+	}
+
+	/**
+	 * Removes the given entry, or the minimum if asked to, and logs the removal
+	 */
+	private Entry<K,V> remove(Entry<K,V> entry, boolean minimum) {
+		DurableEntry<K,V> removed;
+		long lsn;
+		_lock.lock();
+		try {
+			if (minimum) {
+				removed = _heap.min().getValue();
+			} else {
+				removed = this.checkAndConvertEntry(entry);
+			}
+			this.encode(REMOVE, removed._id, null, false, null, false);
+			this.applyRemove(removed);
+			lsn = this.appended();
+		} finally {
+			_lock.unlock();
+		}
+		this.commit(lsn);
+		return removed;
+	}
+
+	private DurableEntry<K,V> applyInsert(long id, K key, V value) {
+		DurableEntry<K,V> entry = new DurableEntry<K,V>(id, value);
+		entry._entry = _heap.insert(key, entry);
+		_entriesById.put(id, entry);
+		return entry;
+	}
+
+	private void applyRemove(DurableEntry<K,V> entry) {
+		_heap.remove(entry._entry);
+		_entriesById.remove(entry._id);
+	}
+
+	/**
+	 * Encodes a record into the pending buffer; must be called with _lock held. If a codec fails,
+	 * the buffer is left as it was. Until appended is called, the record can be taken back by
+	 * moving the buffer's position back to the returned offset.
+	 * A record is its body length, the body (type, id, then the key and/or value if present)
+	 * and a CRC32 of the body, so a torn record at the end of the log can be recognized.
+	 *
+	 * @return the offset of the record in the pending buffer
+	 */
+	private int encode(byte type, long id, K key, boolean hasKey, V value, boolean hasValue) {
+		int keySize = hasKey ? _keyCodec.size(key) : 0;
+		int valueSize = hasValue && value != null ? _valueCodec.size(value) : 0;
+		int bodySize = 9 + (hasKey ? 4 + keySize : 0) + (hasValue ? 4 + valueSize : 0);
+		this.ensurePending(bodySize + 8);
+		int record = _pending.position();
+		try {
+			_pending.putInt(bodySize);
+			_pending.put(type);
+			_pending.putLong(id);
+			if (hasKey) {
+				_pending.putInt(keySize);
+				_keyCodec.write(key, _pending);
+			}
+			if (hasValue) {
+				if (value == null) {
+					_pending.putInt(-1);
+				} else {
+					_pending.putInt(valueSize);
+					_valueCodec.write(value, _pending);
+				}
+			}
+		} catch (RuntimeException e) {
+			_pending.position(record);
+			throw e;
+		}
+		CRC32 checksum = new CRC32();
+		checksum.update(_pending.array(), _pending.arrayOffset() + record + 4, bodySize);
+		_pending.putInt((int) checksum.getValue());
+		return record;
+	}
+
+	/**
+	 * Commits the record encoded last, once its change has been applied; must be called with _lock held
+	 *
+	 * @return the log sequence number of the record
+	 */
+	private long appended() {
+		_appended++;
+		if (_policy == SyncPolicy.OS_MANAGED) {
+			// hand the record to the operating system right away; it decides when it reaches the disk
+			try {
+				this.writePending(false);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return _appended;
+	}
+
+	/**
+	 * Grows the pending buffer so that the given number of bytes fit; must be called with _lock held
+	 */
+	private void ensurePending(int bytes) {
+		if (_pending.remaining() >= bytes) {
+			return;
+		}
+		int capacity = _pending.capacity();
+		while (capacity - _pending.position() < bytes) {
+			capacity *= 2;
+		}
+		ByteBuffer larger = ByteBuffer.allocate(capacity);
+		_pending.flip();
+		larger.put(_pending);
+		_pending = larger;
+	}
+
+	/**
+	 * Writes the pending records to the log and optionally forces it; must be called with _lock held.
+	 * If the write fails, the records stay pending and the log is moved back to where they start.
+	 */
+	private void writePending(boolean force) throws IOException {
+		long start = _log.position();
+		_pending.flip();
+		try {
+			while (_pending.hasRemaining()) {
+				_log.write(_pending);
+			}
+		} catch (IOException e) {
+			_pending.position(_pending.limit());
+			_pending.limit(_pending.capacity());
+			this.rewindLog(start, e);
+			throw e;
+		}
+		_pending.clear();
+		if (force) {
+			_log.force(false);
+		}
+	}
+
+	/**
+	 * Waits as long as the sync policy requires for the record with the given sequence number
+	 */
+	private void commit(long lsn) {
+		if (_policy == SyncPolicy.PER_OPERATION) {
+			this.awaitDurable(lsn);
+		}
+	}
+
+	/**
+	 * Returns once the record with the given sequence number has been forced. If no other thread
+	 * is writing the log, this thread takes every record appended so far, writes and forces them
+	 * in one go, and wakes every caller whose record was in the batch.
+	 */
+	private void awaitDurable(long lsn) {
+		_syncLock.lock();
+		try {
+			while (_durable < lsn) {
+				if (_syncing) {
+					_synced.awaitUninterruptibly();
+					continue;
+				}
+				_syncing = true;
+				long batch = _durable;
+				try {
+					_syncLock.unlock();
+					try {
+						batch = this.writeBatch();
+					} finally {
+						_syncLock.lock();
+					}
+				} finally {
+					_syncing = false;
+					_durable = Math.max(_durable, batch);
+					_synced.signalAll();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			_syncLock.unlock();
+		}
+	}
+
+	/**
+	 * Swaps out the pending records under _lock, then writes and forces them without it, so
+	 * other threads can keep appending to the next batch in the meantime
+	 *
+	 * @return the sequence number of the last record in the batch
+	 */
+	private long writeBatch() throws IOException {
+		ByteBuffer batch;
+		long lsn;
+		_lock.lock();
+		try {
+			batch = _pending;
+			_pending = _spare;
+			_spare = batch;
+			lsn = _appended;
+		} finally {
+			_lock.unlock();
+		}
+		long start = _log.position();
+		batch.flip();
+		try {
+			while (batch.hasRemaining()) {
+				_log.write(batch);
+			}
+		} catch (IOException e) {
+			this.rewindLog(start, e);
+			this.restoreBatch(batch);
+			throw e;
+		}
+		batch.clear();
+		_log.force(false);
+		return lsn;
+	}
+
+	/**
+	 * Puts the records of a batch that could not be written back in front of the records appended
+	 * since, and makes the emptied buffer the spare again, so that the next write retries them all
+	 */
+	private void restoreBatch(ByteBuffer batch) {
+		_lock.lock();
+		try {
+			batch.position(batch.limit());
+			batch.limit(batch.capacity());
+			_pending.flip();
+			if (batch.remaining() < _pending.remaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(batch.position() + _pending.remaining());
+				batch.flip();
+				larger.put(batch);
+				batch = larger;
+			}
+			batch.put(_pending);
+			_spare = _pending;
+			_spare.clear();
+			_pending = batch;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Moves the log back to where a failed write started, so the retry overwrites whatever part
+	 * of it reached the file
+	 */
+	private void rewindLog(long start, IOException failure) {
+		try {
+			_log.position(start);
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Waits until no other thread is writing the log and then claims it
+	 */
+	private void becomeWriter() {
+		_syncLock.lock();
+		try {
+			while (_syncing) {
+				_synced.awaitUninterruptibly();
+			}
+			_syncing = true;
+		} finally {
+			_syncLock.unlock();
+		}
+	}
+
+	/**
+	 * Gives up the log after becomeWriter, marking everything up to the given sequence number durable
+	 */
+	private void releaseWriter(long lsn) {
+		_syncLock.lock();
+		try {
+			_syncing = false;
+			_durable = Math.max(_durable, lsn);
+			_synced.signalAll();
+		} finally {
+			_syncLock.unlock();
+		}
+	}
+
+	/**
+	 * Starts the background thread that forces the log under SyncPolicy.INTERVAL
+	 */
+	private void startSyncer(long intervalMillis) {
+		_syncer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "heap-log-sync");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		_syncer.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				MyDurableHeap.this.sync();
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Applies every complete record in the log to the heap and cuts off anything after the last
+	 * one. Inserting an id that exists and changing or removing one that does not are skipped.
+	 * A crash between writing a snapshot and emptying the log leaves records the snapshot already
+	 * covers; checkpoint forces every record before it writes the snapshot, so that log ends with
+	 * the last record of each entry it mentions, and replaying it in order ends with the keys,
+	 * values and entries the snapshot holds.
+	 */
+	private void replay() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		buffer.limit(0);
+		long valid = 0;
+		long unread = _log.size();
+		_log.position(0);
+		while (true) {
+			if (buffer.remaining() < 4) {
+				buffer = this.fill(buffer, 4, unread);
+				unread = _log.size() - _log.position();
+				if (buffer.remaining() < 4) {
+					break;
+				}
+			}
+			int bodySize = buffer.getInt(buffer.position());
+			if (bodySize < 9 || (long) bodySize + 8 > unread + buffer.remaining()) {
+				break;
+			}
+			if (buffer.remaining() < bodySize + 8) {
+				buffer = this.fill(buffer, bodySize + 8, unread);
+				unread = _log.size() - _log.position();
+				if (buffer.remaining() < bodySize + 8) {
+					break;
+				}
+			}
+			int bodyStart = buffer.position() + 4;
+			CRC32 checksum = new CRC32();
+			checksum.update(buffer.array(), buffer.arrayOffset() + bodyStart, bodySize);
+			if (buffer.getInt(bodyStart + bodySize) != (int) checksum.getValue()) {
+				break;
+			}
+			buffer.position(bodyStart);
+			this.applyRecord(buffer);
+			buffer.position(bodyStart + bodySize + 4);
+			valid += bodySize + 8;
+		}
+		_log.truncate(valid);
+		_log.position(valid);
+	}
+
+	/**
+	 * @return a buffer holding the unread bytes of the given one followed by as much of the log
+	 * as fits, and at least the given number of bytes if the log has them
+	 */
+	private ByteBuffer fill(ByteBuffer buffer, int bytes, long unread) throws IOException {
+		ByteBuffer target = buffer;
+		if (bytes > buffer.capacity()) {
+			target = ByteBuffer.allocate(bytes);
+			target.put(buffer);
+		} else {
+			buffer.compact();
+		}
+		while (target.position() < bytes && target.hasRemaining() && _log.read(target) > 0) {
+			// keep reading until the record fits or the log runs out
+		}
+		target.flip();
+		return target;
+	}
+
+	/**
+	 * Applies one record body, positioned just after its length
+	 */
+	private void applyRecord(ByteBuffer body) throws IOException {
+		byte type = body.get();
+		long id = body.getLong();
+		DurableEntry<K,V> entry = _entriesById.get(id);
+		switch (type) {
+		case INSERT:
+			K key = this.readObject(body, _keyCodec);
+			V value = this.readObject(body, _valueCodec);
+			if (entry == null) {
+				this.applyInsert(id, key, value);
+			}
+			_nextId = Math.max(_nextId, id + 1);
+			break;
+		case REMOVE:
+			if (entry != null) {
+				this.applyRemove(entry);
+			}
+			break;
+		case REPLACE_KEY:
+			K newKey = this.readObject(body, _keyCodec);
+			if (entry != null) {
+				_heap.replaceKey(entry._entry, newKey);
+			}
+			break;
+		case REPLACE_VALUE:
+			V newValue = this.readObject(body, _valueCodec);
+			if (entry != null) {
+				entry._value = newValue;
+			}
+			break;
+		case CHECKPOINT:
+			_nextId = Math.max(_nextId, id);
+			break;
+		default:
+			throw new IOException("Unknown log record type " + type);
+		}
+	}
+
+	/**
+	 * Reads a length-prefixed object, or null for a length of -1
+	 */
+	private <T> T readObject(ByteBuffer buffer, MyCodec<T> codec) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		int start = buffer.position();
+		T object = codec.read(buffer, length);
+		buffer.position(start + length);
+		return object;
+	}
+
+	/**
+	 * The entry handed out to callers. The key lives in the underlying heap's entry; the value and
+	 * the id live here.
+	 */
+	private static class DurableEntry<K,V> implements Entry<K,V> {
+
+		private final long _id;
+		private V _value;
+		private Entry<K,DurableEntry<K,V>> _entry;
+
+		private DurableEntry(long id, V value) {
+			_id = id;
+			_value = value;
+		}
+
+		public K getKey() {
+			return _entry.getKey();
+		}
+
+		public V getValue() {
+			return _value;
+		}
+	}
+
+	/**
+	 * Encodes a DurableEntry for snapshots as its id followed by its length-prefixed value
+	 */
+	private static class DurableEntryCodec<K,V> implements MyCodec<DurableEntry<K,V>> {
+
+		private final MyCodec<V> _valueCodec;
+
+		private DurableEntryCodec(MyCodec<V> valueCodec) {
+			_valueCodec = valueCodec;
+		}
+
+		public int size(DurableEntry<K,V> entry) {
+			return 12 + (entry._value == null ? 0 : _valueCodec.size(entry._value));
+		}
+
+		public void write(DurableEntry<K,V> entry, ByteBuffer buffer) {
+			buffer.putLong(entry._id);
+			if (entry._value == null) {
+				buffer.putInt(-1);
+			} else {
+				buffer.putInt(_valueCodec.size(entry._value));
+				_valueCodec.write(entry._value, buffer);
+			}
+		}
+
+		public DurableEntry<K,V> read(ByteBuffer buffer, int length) {
+			long id = buffer.getLong();
+			int valueLength = buffer.getInt();
+			V value = null;
+			if (valueLength >= 0) {
+				int start = buffer.position();
+				value = _valueCodec.read(buffer, valueLength);
+				buffer.position(start + valueLength);
+			}
+			return new DurableEntry<K,V>(id, value);
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests that MyDurableHeap recovers its contents from its snapshot and log.
+ */
+public class MyDurableHeapTest {
+
+	/**
+	 * Tests that every kind of operation is replayed from the log after a restart
+	 */
+	@Test
+	public void replayTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyDurableHeap<Integer, String> heap = this.open(directory, MyDurableHeap.SyncPolicy.PER_OPERATION);
+		Entry<Integer, String> entry = heap.insert(12, "ABC");
+		Entry<Integer, String> entry2 = heap.insert(6, "DEF");
+		heap.insert(18, "GHI");
+		heap.insert(1, "PQR");
+		heap.replaceKey(entry, 3);
+		heap.replaceValue(entry2, null);
+		heap.removeMin();
+		long id = heap.getId(entry2);
+		heap.close();
+
+		MyDurableHeap<Integer, String> recovered = this.open(directory, MyDurableHeap.SyncPolicy.PER_OPERATION);
+		assertThat(recovered.size(), is(3));
+		assertThat(recovered.min().getValue(), is("ABC"));
+		assertTrue(recovered.entry(id).getValue() == null);
+		recovered.remove(recovered.entry(id));
+		assertThat(this.drain(recovered), is(Arrays.asList(3, 18)));
+		recovered.close();
+	}
+
+	/**
+	 * Tests that a checkpoint empties the log and that later operations are replayed on top of the snapshot
+	 */
+	@Test
+	public void checkpointTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyDurableHeap<Integer, String> heap = this.open(directory, MyDurableHeap.SyncPolicy.INTERVAL);
+		for (int i = 0; i < 100; i++) {
+			heap.insert(i, "v" + i);
+		}
+		heap.checkpoint();
+		long logSizeAfterCheckpoint = Files.size(directory.resolve("heap.log"));
+		Entry<Integer, String> added = heap.insert(-1, "new");
+		heap.removeMin();
+		heap.removeMin();
+		heap.close();
+
+		assertTrue(logSizeAfterCheckpoint < 100);
+		MyDurableHeap<Integer, String> recovered = this.open(directory, MyDurableHeap.SyncPolicy.INTERVAL);
+		assertThat(recovered.size(), is(99));
+		assertThat(recovered.min().getKey(), is(1));
+		assertTrue(recovered.getId(recovered.insert(500, "x")) > heap.getId(added));
+		recovered.close();
+	}
+
+	/**
+	 * Tests that the log left next to a newer snapshot, as by a crash before checkpoint empties it,
+	 * is replayed without bringing back removed entries or older keys and values. The first
+	 * checkpoint is made to fail after forcing the log, which is where the log stands when such a
+	 * crash hits.
+	 */
+	@Test
+	public void staleLogTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyDurableHeap<Integer, String> heap = MyDurableHeap.open(directory, new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.STRING, MyDurableHeap.SyncPolicy.INTERVAL, 60000);
+		Entry<Integer, String> first = heap.insert(1, "A");
+		Entry<Integer, String> second = heap.insert(2, "B");
+		Entry<Integer, String> removed = heap.insert(5, "E");
+		heap.sync();
+		heap.remove(removed);
+		heap.replaceKey(second, 10);
+		heap.replaceValue(first, "A2");
+		heap.insert(4, "D");
+		Path snapshot = directory.resolve("heap.snapshot");
+		Path blocker = snapshot.resolve("blocker");
+		Files.createDirectory(snapshot);
+		Files.createFile(blocker);
+		try {
+			heap.checkpoint();
+			fail("checkpoint replaced a directory");
+		} catch (IOException e) {
+			assertThat(heap.size(), is(3));
+		}
+		Path log = directory.resolve("heap.log");
+		Path staleLog = directory.resolve("stale.log");
+		staleLog.toFile().deleteOnExit();
+		new File(directory.toFile(), "heap.snapshot.tmp").deleteOnExit();
+		Files.copy(log, staleLog);
+		Files.delete(blocker);
+		Files.delete(snapshot);
+		heap.checkpoint();
+		heap.close();
+		Files.copy(staleLog, log, StandardCopyOption.REPLACE_EXISTING);
+
+		MyDurableHeap<Integer, String> recovered = this.open(directory, MyDurableHeap.SyncPolicy.PER_OPERATION);
+		assertThat(recovered.size(), is(3));
+		assertThat(recovered.entry(heap.getId(first)).getValue(), is("A2"));
+		assertThat(recovered.entry(heap.getId(second)).getKey(), is(10));
+		assertThat(this.drain(recovered), is(Arrays.asList(1, 4, 10)));
+		recovered.close();
+	}
+
+	/**
+	 * Tests that a torn record at the end of the log is cut off instead of failing recovery
+	 */
+	@Test
+	public void tornTailTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyDurableHeap<Integer, String> heap = this.open(directory, MyDurableHeap.SyncPolicy.OS_MANAGED);
+		heap.insert(5, "A");
+		heap.insert(7, "B");
+		heap.close();
+		Path log = directory.resolve("heap.log");
+		long validSize = Files.size(log);
+		FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+		channel.close();
+
+		MyDurableHeap<Integer, String> recovered = this.open(directory, MyDurableHeap.SyncPolicy.OS_MANAGED);
+		assertThat(recovered.size(), is(2));
+		assertThat(Files.size(log), is(validSize));
+		recovered.close();
+	}
+
+	/**
+	 * Tests that concurrent callers under group commit all get their operations logged
+	 */
+	@Test
+	public void groupCommitTest() throws Exception {
+		Path directory = this.temporaryDirectory();
+		final MyDurableHeap<Integer, String> heap = this.open(directory, MyDurableHeap.SyncPolicy.PER_OPERATION);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t * 50;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 50; i++) {
+						heap.insert(offset + i, "v");
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		heap.close();
+
+		MyDurableHeap<Integer, String> recovered = this.open(directory, MyDurableHeap.SyncPolicy.PER_OPERATION);
+		assertThat(recovered.size(), is(200));
+		recovered.close();
+	}
+
+	/**
+	 * Tests that an operation whose record cannot be encoded changes nothing, in memory or in the log
+	 */
+	@Test
+	public void failedEncodeTest() throws IOException {
+		MyCodec<String> picky = new MyCodec<String>() {
+			public int size(String object) {
+				return MyCodec.STRING.size(object);
+			}
+
+			public void write(String object, ByteBuffer buffer) {
+				if (object.equals("bad")) {
+					buffer.putInt(0);
+					throw new IllegalArgumentException("cannot encode");
+				}
+				MyCodec.STRING.write(object, buffer);
+			}
+
+			public String read(ByteBuffer buffer, int length) {
+				return MyCodec.STRING.read(buffer, length);
+			}
+		};
+		Path directory = this.temporaryDirectory();
+		MyDurableHeap<Integer, String> heap = MyDurableHeap.open(directory, new IntegerComparator(),
+				MyCodec.INTEGER, picky, MyDurableHeap.SyncPolicy.OS_MANAGED, 5);
+		Entry<Integer, String> entry = heap.insert(5, "good");
+		try {
+			heap.insert(1, "bad");
+			fail("insert encoded a bad value");
+		} catch (IllegalArgumentException e) {
+			assertThat(heap.size(), is(1));
+		}
+		try {
+			heap.replaceValue(entry, "bad");
+			fail("replaceValue encoded a bad value");
+		} catch (IllegalArgumentException e) {
+			assertThat(entry.getValue(), is("good"));
+		}
+		heap.insert(2, "after");
+		heap.close();
+
+		MyDurableHeap<Integer, String> recovered = MyDurableHeap.open(directory, new IntegerComparator(),
+				MyCodec.INTEGER, picky, MyDurableHeap.SyncPolicy.OS_MANAGED, 5);
+		assertThat(recovered.min().getValue(), is("after"));
+		assertThat(this.drain(recovered), is(Arrays.asList(2, 5)));
+		recovered.close();
+	}
+
+	private MyDurableHeap<Integer, String> open(Path directory, MyDurableHeap.SyncPolicy policy) throws IOException {
+		return MyDurableHeap.open(directory, new IntegerComparator(), MyCodec.INTEGER, MyCodec.STRING, policy, 5);
+	}
+
+	private Path temporaryDirectory() throws IOException {
+		Path directory = Files.createTempDirectory("heap");
+		directory.toFile().deleteOnExit();
+		for (String name : new String[] {"heap.log", "heap.snapshot"}) {
+			new File(directory.toFile(), name).deleteOnExit();
+		}
+		return directory;
+	}
+
+	private List<Integer> drain(MyDurableHeap<Integer, String> heap) {
+		List<Integer> keys = new ArrayList<Integer>();
+		while (!heap.isEmpty()) {
+			keys.add(heap.removeMin().getKey());
+		}
+		return keys;
+	}
+}
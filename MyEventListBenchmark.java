@@ -0,0 +1,147 @@
+package heap;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import net.datastructures.*;
+
+/**
+ * Chooses an event list backend for MySimulator by measuring each one on
+ * the classic hold model: a fixed number of events is kept pending, and
+ * every event that runs schedules one more a random delay later. This is
+ * the access pattern of most simulations (one removeMin followed by one
+ * insert near the front), and the one event list papers compare on.
+ *
+ * Run main to print events per second for every backend at a few event
+ * list sizes, or call fastest to choose a backend from code.
+ */
+
+public class MyEventListBenchmark {
+
+	private static final int MEAN_DELAY = 1000;
+
+	/**
+	 * Orders simulation times
+	 */
+	public static final Comparator<Long> TIME_ORDER = new Comparator<Long>() {
+		public int compare(Long one, Long two) {
+			return Long.compare(one, two);
+		}
+	};
+
+	private MyEventListBenchmark() {
+	}
+
+	/**
+	 * @return a factory for each event list backend, by name
+	 */
+	public static Map<String,Supplier<AdaptablePriorityQueue<Long,Runnable>>> backends() {
+		Map<String,Supplier<AdaptablePriorityQueue<Long,Runnable>>> backends =
+				new LinkedHashMap<String,Supplier<AdaptablePriorityQueue<Long,Runnable>>>();
+		backends.put("min-max heap", new Supplier<AdaptablePriorityQueue<Long,Runnable>>() {
+			public AdaptablePriorityQueue<Long,Runnable> get() {
+				return new MyMinMaxHeap<Long,Runnable>(TIME_ORDER);
+			}
+		});
+		backends.put("binary heap", new Supplier<AdaptablePriorityQueue<Long,Runnable>>() {
+			public AdaptablePriorityQueue<Long,Runnable> get() {
+				return new MyHeap<Long,Runnable>(TIME_ORDER);
+			}
+		});
+		backends.put("pairing heap", new Supplier<AdaptablePriorityQueue<Long,Runnable>>() {
+			public AdaptablePriorityQueue<Long,Runnable> get() {
+				return new MyPairingHeap<Long,Runnable>(TIME_ORDER);
+			}
+		});
+		backends.put("calendar queue", new Supplier<AdaptablePriorityQueue<Long,Runnable>>() {
+			public AdaptablePriorityQueue<Long,Runnable> get() {
+				return new MyCalendarQueue<Runnable>();
+			}
+		});
+		return backends;
+	}
+
+	/**
+	 * Measures one backend on the hold model.
+	 *
+	 * @param backend which creates the event list
+	 * @param pending the number of events kept pending
+	 * @param events the number of events to run
+	 * @param seed for the random delays
+	 * @return the events run per second
+	 */
+	public static double measure(Supplier<AdaptablePriorityQueue<Long,Runnable>> backend, int pending,
+			long events, long seed) {
+		MySimulator simulator = new MySimulator(backend.get());
+		Random random = new Random(seed);
+		for (int i = 0; i < pending; i++) {
+			simulator.schedule(random.nextInt(2 * MEAN_DELAY), new HoldEvent(simulator, random));
+		}
+		while (simulator.getEventsRun() < events) {
+			simulator.step();
+		}
+		return simulator.getEventsPerSecond();
+	}
+
+	/**
+	 * Measures every backend, each after a warm-up run, and returns the fastest.
+	 *
+	 * @param backends the backends to choose from, by name
+	 * @param pending the number of events kept pending
+	 * @param events the number of events to run per measurement
+	 * @return the name of the backend that ran the most events per second
+	 */
+	public static String fastest(Map<String,Supplier<AdaptablePriorityQueue<Long,Runnable>>> backends,
+			int pending, long events) {
+		String fastest = null;
+		double best = -1;
+		for (Map.Entry<String,Supplier<AdaptablePriorityQueue<Long,Runnable>>> backend : backends.entrySet()) {
+			measure(backend.getValue(), pending, events, 1);
+			double rate = measure(backend.getValue(), pending, events, 2);
+			if (rate > best) {
+				best = rate;
+				fastest = backend.getKey();
+			}
+		}
+		return fastest;
+	}
+
+	/**
+	 * Prints the events per second of every backend at several event list sizes.
+	 *
+	 * @param args optionally, the number of events to run per measurement
+	 */
+	public static void main(String[] args) {
+		long events = args.length > 0 ? Long.parseLong(args[0]) : 5000000;
+		Map<String,Supplier<AdaptablePriorityQueue<Long,Runnable>>> backends = backends();
+		for (int pending : new int[] {1000, 100000, 1000000}) {
+			System.out.println(pending + " pending events:");
+			for (Map.Entry<String,Supplier<AdaptablePriorityQueue<Long,Runnable>>> backend : backends.entrySet()) {
+				measure(backend.getValue(), pending, events, 1);
+				double rate = measure(backend.getValue(), pending, events, 2);
+				System.out.printf("    %-15s %,15.0f events/sec%n", backend.getKey(), rate);
+			}
+		}
+	}
+
+	/**
+	 * An event that schedules itself again a random delay after it runs
+	 */
+	private static class HoldEvent implements Runnable {
+
+		private final MySimulator _simulator;
+		private final Random _random;
+
+		private HoldEvent(MySimulator simulator, Random random) {
+			_simulator = simulator;
+			_random = random;
+		}
+
+		public void run() {
+			_simulator.scheduleAfter(_random.nextInt(2 * MEAN_DELAY), this);
+		}
+	}
+}
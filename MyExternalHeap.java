@@ -0,0 +1,463 @@
+package heap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.datastructures.*;
+
+/**
+ * A priority queue for more entries than fit in memory. New entries go into
+ * a small in-memory insertion heap; when it fills up, it is drained in
+ * sorted order into a run file with large sequential writes. removeMin takes
+ * the smaller of the insertion heap's minimum and the smallest head among
+ * the runs, reading each run through its own block buffer, so runs are
+ * merged lazily as they are drained.
+ *
+ * Runs are kept in levels as in a sequence heap: a freshly spilled run is
+ * on level 0, and whenever a level holds fanIn runs they are merged into a
+ * single run on the next level. Every entry is therefore rewritten at most
+ * once per level, and there are O(log_fanIn(n/M)) levels for a memory
+ * budget of M entries, which keeps the I/O at O((n/B) log_fanIn(n/M)) block
+ * transfers and the number of open run files at O(fanIn) per level.
+ *
+ * Entries only live in memory while they are in the insertion heap or at
+ * the head of a run, so this is a plain PriorityQueue rather than an
+ * adaptable one.
+ *
+ * Direct buffers are expensive to allocate and are only freed by the
+ * garbage collector, so the heap allocates one write buffer and reuses it
+ * for every spill and merge, and returns each run's read buffer to a pool
+ * when the run is deleted. The number of read buffers is therefore the
+ * largest number of runs that were ever open at once.
+ */
+
+public class MyExternalHeap<K,V> implements PriorityQueue<K,V> {
+
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+	private static final int READ_BUFFER_SIZE = 1 << 18;
+
+	private final Comparator<K> _comparator;
+	private final MyCodec<K> _keyCodec;
+	private final MyCodec<V> _valueCodec;
+	private final Path _directory;
+	private final int _memoryEntries;
+	private final int _fanIn;
+
+	private final MyMinMaxHeap<K,V> _insertionHeap;
+	private final MyMinMaxHeap<K,Run<K,V>> _runs;
+	private final List<List<Run<K,V>>> _levels;
+	private final ArrayDeque<ByteBuffer> _readBuffers;
+	private ByteBuffer _writeBuffer;
+	private int _buffersAllocated;
+	private long _size;
+	private long _nextRunNumber;
+	private long _bytesWritten;
+	private long _bytesRead;
+
+	/**
+	 * Creates an empty external heap that keeps its run files in the given directory.
+	 *
+	 * @param comparator to be used for keys
+	 * @param keyCodec used to write keys to run files
+	 * @param valueCodec used to write values to run files
+	 * @param directory in which run files are created
+	 * @param memoryEntries the number of entries the insertion heap holds before it is spilled
+	 * @param fanIn the number of runs on one level that are merged into a run on the next level
+	 * @throws IllegalArgumentException if an argument is null, memoryEntries is not positive or fanIn is less than 2
+	 */
+	public MyExternalHeap(Comparator<K> comparator, MyCodec<K> keyCodec, MyCodec<V> valueCodec, Path directory,
+			int memoryEntries, int fanIn) throws IllegalArgumentException {
+		if (comparator == null || keyCodec == null || valueCodec == null || directory == null) {
+			throw new IllegalArgumentException("argument is null");
+		}
+		if (memoryEntries < 1 || fanIn < 2) {
+			throw new IllegalArgumentException("memoryEntries must be positive and fanIn at least 2");
+		}
+		_comparator = comparator;
+		_keyCodec = keyCodec;
+		_valueCodec = valueCodec;
+		_directory = directory;
+		_memoryEntries = memoryEntries;
+		_fanIn = fanIn;
+		_insertionHeap = new MyMinMaxHeap<K,V>(comparator, memoryEntries);
+		_runs = new MyMinMaxHeap<K,Run<K,V>>(comparator);
+		_levels = new ArrayList<List<Run<K,V>>>();
+		_readBuffers = new ArrayDeque<ByteBuffer>();
+	}
+
+	/**
+	 * Returns the number of entries, in memory and on disk. This is a long
+	 * because an external heap can hold more than Integer.MAX_VALUE entries;
+	 * size() caps it.
+	 *
+	 * @return the number of entries stored
+	 */
+	public long longSize() {
+		return _size;
+	}
+
+	/**
+	 * @return the number of entries stored, or Integer.MAX_VALUE if there are more
+	 */
+	public int size() {
+		return (int) Math.min(_size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return true if the heap is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * @return the number of run files currently on disk
+	 */
+	public int runCount() {
+		return _runs.size();
+	}
+
+	/**
+	 * @return the number of bytes written to run files so far
+	 */
+	public long getBytesWritten() {
+		return _bytesWritten;
+	}
+
+	/**
+	 * @return the number of bytes read back from run files so far
+	 */
+	public long getBytesRead() {
+		long bytesRead = _bytesRead;
+		try {
+			for (Entry<K,Run<K,V>> entry : _runs.entries()) {
+				bytesRead += entry.getValue()._channel.position();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * @return the number of direct buffers allocated for writing and reading run files so far
+	 */
+	public int getBuffersAllocated() {
+		return _buffersAllocated;
+	}
+
+	/**
+	 * Returns but does not remove the entry with minimum key.
+	 * This method runs in O(1) time.
+	 *
+	 * @return the entry with the minimum key
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		if (isEmpty()) {
+			throw new EmptyPriorityQueueException("Empty Heap");
+		}
+		if (this.minIsInRuns()) {
+			return _runs.min().getValue()._head;
+		}
+		return _insertionHeap.min();
+	}
+
+	/**
+	 * Inserts a key-value pair and returns the entry created. When the
+	 * insertion heap is full it is first spilled to a run file, which may
+	 * cascade into merges; amortized over the entries written, this method
+	 * runs in O(log M + (1/B) log_fanIn(n/M)) I/O-adjusted time.
+	 *
+	 * @param key to be used as the key the heap is sorting with
+	 * @param value stored with the associated key
+	 * @return the entry created using the key/value parameters
+	 * @throws InvalidKeyException if the key is not suitable for this heap
+	 * @throws UncheckedIOException if a run file cannot be written
+	 */
+	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+		if (_insertionHeap.size() >= _memoryEntries) {
+			try {
+				this.spill();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		Entry<K,V> entry = _insertionHeap.insert(key, value);
+		_size++;
+		return entry;
+	}
+
+	/**
+	 * Removes and returns the entry with the minimum key, reading the next
+	 * block of a run when its buffer runs dry. This method runs in
+	 * O(log M + log r) time for r runs, plus the occasional block read.
+	 *
+	 * @return the entry with the minimum key, now removed
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 * @throws UncheckedIOException if a run file cannot be read
+	 */
+	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+		if (isEmpty()) {
+			throw new EmptyPriorityQueueException("The Heap is Empty");
+		}
+		_size--;
+		if (!this.minIsInRuns()) {
+			return _insertionHeap.removeMin();
+		}
+		try {
+			return this.takeHead(_runs, _runs.min());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Closes and deletes every run file. The heap is empty afterwards.
+	 *
+	 * @throws IOException if a run file cannot be closed or deleted
+	 */
+	public void close() throws IOException {
+		while (!_runs.isEmpty()) {
+			Run<K,V> run = _runs.removeMin().getValue();
+			run.delete();
+		}
+		_levels.clear();
+		while (!_insertionHeap.isEmpty()) {
+			_insertionHeap.removeMin();
+		}
+		_size = 0;
+	}
+
+	/**
+	 * @return true if the smallest run head is smaller than the insertion heap's minimum
+	 */
+	private boolean minIsInRuns() {
+		if (_runs.isEmpty()) {
+			return false;
+		}
+		return _insertionHeap.isEmpty()
+				|| _comparator.compare(_runs.min().getKey(), _insertionHeap.min().getKey()) < 0;
+	}
+
+	/**
+	 * Removes the head of the run held by the given entry of the given run heap, moving the run to
+	 * its next head or deleting it when it is used up
+	 *
+	 * @return the former head
+	 */
+	private MyHeapEntry<K,V> takeHead(MyMinMaxHeap<K,Run<K,V>> runs, Entry<K,Run<K,V>> runEntry)
+			throws IOException {
+		Run<K,V> run = runEntry.getValue();
+		MyHeapEntry<K,V> head = run._head;
+		if (run.advance()) {
+			runs.replaceKey(runEntry, run._head.getKey());
+		} else {
+			runs.remove(runEntry);
+			if (runs == _runs) {
+				_levels.get(run._level).remove(run);
+				run.delete();
+			}
+		}
+		return head;
+	}
+
+	/**
+	 * Writes a sorted copy of the insertion heap out as a level 0 run, then merges every level
+	 * that has filled up. The insertion heap is only emptied once the run is written and opened;
+	 * if that fails, the entries stay in memory and the partial run file is deleted.
+	 */
+	private void spill() throws IOException {
+		Path file = this.nextRunFile();
+		List<Entry<K,V>> layout = _insertionHeap.entries();
+		List<Entry<K,V>> sorted = new ArrayList<Entry<K,V>>(layout);
+		Collections.sort(sorted, new Comparator<Entry<K,V>>() {
+			public int compare(Entry<K,V> one, Entry<K,V> two) {
+				return _comparator.compare(one.getKey(), two.getKey());
+			}
+		});
+		try {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			try {
+				MyRecordWriter writer = new MyRecordWriter(channel, this.writeBuffer(), false);
+				for (Entry<K,V> entry : sorted) {
+					writer.writeObject(entry.getKey(), _keyCodec);
+					writer.writeObject(entry.getValue(), _valueCodec);
+				}
+				writer.flush();
+				_bytesWritten += channel.size();
+			} finally {
+				channel.close();
+			}
+			this.addRun(new Run<K,V>(this, file, sorted.size(), 0));
+		} catch (IOException | RuntimeException e) {
+			this.deletePartialRun(file, e);
+			throw e;
+		}
+		// removing from the last array slot backwards never moves another entry
+		for (int i = layout.size() - 1; i >= 0; i--) {
+			_insertionHeap.remove(layout.get(i));
+		}
+		for (int level = 0; level < _levels.size(); level++) {
+			if (_levels.get(level).size() >= _fanIn) {
+				this.merge(level);
+			}
+		}
+	}
+
+	/**
+	 * Merges every run on the given level into a single run on the next level
+	 */
+	private void merge(int level) throws IOException {
+		List<Run<K,V>> merging = new ArrayList<Run<K,V>>(_levels.get(level));
+		_levels.get(level).clear();
+		MyMinMaxHeap<K,Run<K,V>> mergeHeap = new MyMinMaxHeap<K,Run<K,V>>(_comparator, merging.size());
+		long count = 0;
+		for (Run<K,V> run : merging) {
+			_runs.remove(run._entry);
+			count += run._remaining + 1;
+			mergeHeap.insert(run._head.getKey(), run);
+		}
+		Path file = this.nextRunFile();
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		try {
+			MyRecordWriter writer = new MyRecordWriter(channel, this.writeBuffer(), false);
+			while (!mergeHeap.isEmpty()) {
+				MyHeapEntry<K,V> head = this.takeHead(mergeHeap, mergeHeap.min());
+				writer.writeObject(head.getKey(), _keyCodec);
+				writer.writeObject(head.getValue(), _valueCodec);
+			}
+			writer.flush();
+			_bytesWritten += channel.size();
+		} finally {
+			channel.close();
+		}
+		for (Run<K,V> run : merging) {
+			run.delete();
+		}
+		this.addRun(new Run<K,V>(this, file, count, level + 1));
+	}
+
+	/**
+	 * Opens the run for reading and adds it to the run heap and its level
+	 */
+	private void addRun(Run<K,V> run) throws IOException {
+		run.open();
+		run._entry = _runs.insert(run._head.getKey(), run);
+		while (_levels.size() <= run._level) {
+			_levels.add(new ArrayList<Run<K,V>>());
+		}
+		_levels.get(run._level).add(run);
+	}
+
+	/**
+	 * Deletes what a failed spill left of its run file, recording a failure to do so on the
+	 * original failure
+	 */
+	private void deletePartialRun(Path file, Exception failure) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	private Path nextRunFile() {
+		return _directory.resolve("run-" + (_nextRunNumber++) + ".dat");
+	}
+
+	/**
+	 * @return the heap's write buffer, allocated on the first spill
+	 */
+	private ByteBuffer writeBuffer() {
+		if (_writeBuffer == null) {
+			_writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+			_buffersAllocated++;
+		}
+		return _writeBuffer;
+	}
+
+	/**
+	 * @return a read buffer from the pool, or a new one if the pool is empty
+	 */
+	private ByteBuffer takeReadBuffer() {
+		ByteBuffer buffer = _readBuffers.poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+			_buffersAllocated++;
+		}
+		return buffer;
+	}
+
+	/**
+	 * A sorted run file read through a block buffer. The entry at the front of the run is kept
+	 * decoded in _head; _remaining counts the entries behind it.
+	 */
+	private static class Run<K,V> {
+
+		private final MyExternalHeap<K,V> _heap;
+		private final Path _file;
+		private final int _level;
+		private long _remaining;
+		private FileChannel _channel;
+		private ByteBuffer _buffer;
+		private MyRecordReader _reader;
+		private MyHeapEntry<K,V> _head;
+		private Entry<K,Run<K,V>> _entry;
+
+		private Run(MyExternalHeap<K,V> heap, Path file, long count, int level) {
+			_heap = heap;
+			_file = file;
+			_remaining = count;
+			_level = level;
+		}
+
+		/**
+		 * Opens the file and reads the first entry; runs are never empty
+		 */
+		private void open() throws IOException {
+			_channel = FileChannel.open(_file, StandardOpenOption.READ);
+			_buffer = _heap.takeReadBuffer();
+			_reader = new MyRecordReader(_channel, _channel.size(), _buffer, false);
+			this.advance();
+		}
+
+		/**
+		 * Replaces the head with the next entry in the run
+		 *
+		 * @return false if the run was used up instead
+		 */
+		private boolean advance() throws IOException {
+			if (_remaining == 0) {
+				_head = null;
+				return false;
+			}
+			K key = _reader.readObject(_heap._keyCodec);
+			_head = new MyHeapEntry<K,V>(key, _reader.readObject(_heap._valueCodec));
+			_remaining--;
+			return true;
+		}
+
+		/**
+		 * Closes and deletes the file and returns the read buffer to the heap's pool
+		 */
+		private void delete() throws IOException {
+			_heap._bytesRead += _channel.position();
+			_heap._readBuffers.push(_buffer);
+			_buffer = null;
+			_reader = null;
+			_channel.close();
+			Files.deleteIfExists(_file);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import net.datastructures.EmptyPriorityQueueException;
+import org.junit.Test;
+
+/**
+ * This class tests the MyExternalHeap implementation with a tiny memory budget, so that spilling and merging
+ * happen after only a few inserts.
+ */
+public class MyExternalHeapTest {
+
+	/**
+	 * Tests that entries come out in order after being spilled to several runs and merged
+	 */
+	@Test
+	public void spillAndDrainTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyExternalHeap<Integer, String> heap = new MyExternalHeap<Integer, String>(new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.STRING, directory, 16, 3);
+		Random random = new Random(31);
+		for (int i = 0; i < 1000; i++) {
+			int key = random.nextInt(5000);
+			heap.insert(key, "v" + key);
+		}
+
+		assertThat(heap.size(), is(1000));
+		assertTrue(heap.runCount() > 1);
+		int previous = Integer.MIN_VALUE;
+		while (!heap.isEmpty()) {
+			int key = heap.min().getKey();
+			assertThat(heap.removeMin().getValue(), is("v" + key));
+			assertTrue(key >= previous);
+			previous = key;
+		}
+		assertThat(directory.toFile().list().length, is(0));
+	}
+
+	/**
+	 * Tests interleaved inserts and removals against java.util.PriorityQueue
+	 */
+	@Test
+	public void interleavedTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyExternalHeap<Integer, String> heap = new MyExternalHeap<Integer, String>(new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.STRING, directory, 8, 2);
+		PriorityQueue<Integer> expected = new PriorityQueue<Integer>();
+		Random random = new Random(42);
+		for (int i = 0; i < 3000; i++) {
+			if (expected.isEmpty() || random.nextInt(3) > 0) {
+				int key = random.nextInt(1000);
+				heap.insert(key, null);
+				expected.add(key);
+			} else {
+				assertThat(heap.removeMin().getKey(), is(expected.poll()));
+			}
+		}
+		assertThat(heap.size(), is(expected.size()));
+		heap.close();
+		assertTrue(heap.isEmpty());
+		assertThat(directory.toFile().list().length, is(0));
+	}
+
+	/**
+	 * Tests that every entry is written at most once per merge level
+	 */
+	@Test
+	public void ioBoundTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyExternalHeap<Integer, Integer> heap = new MyExternalHeap<Integer, Integer>(new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.INTEGER, directory, 10, 4);
+		for (int i = 0; i < 640; i++) {
+			heap.insert(639 - i, i);
+		}
+		// 64 spills of 10 entries, merged 4 at a time: written at level 0, 1 and 2 (the last spill is in memory)
+		long recordSize = 16;
+		assertTrue(heap.getBytesWritten() <= 3 * 640 * recordSize);
+		while (!heap.isEmpty()) {
+			heap.removeMin();
+		}
+		assertThat(heap.getBytesRead(), is(heap.getBytesWritten()));
+	}
+
+	/**
+	 * Tests that spills and merges share one write buffer and that deleted runs hand their read buffers on
+	 */
+	@Test
+	public void bufferReuseTest() throws IOException {
+		Path directory = this.temporaryDirectory();
+		MyExternalHeap<Integer, Integer> heap = new MyExternalHeap<Integer, Integer>(new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.INTEGER, directory, 10, 4);
+		for (int i = 0; i < 640; i++) {
+			heap.insert(639 - i, i);
+		}
+		// 84 run files were written, but at most fanIn runs per level (3 levels) are ever open at once
+		assertTrue(heap.getBuffersAllocated() <= 1 + 3 * 4);
+		int allocated = heap.getBuffersAllocated();
+		while (!heap.isEmpty()) {
+			heap.removeMin();
+		}
+		for (int i = 0; i < 100; i++) {
+			heap.insert(i, i);
+		}
+		assertThat(heap.getBuffersAllocated(), is(allocated));
+		heap.close();
+	}
+
+	/**
+	 * Tests that a spill that fails partway keeps its entries in memory and leaves no run file behind
+	 */
+	@Test
+	public void failedSpillTest() throws IOException {
+		final boolean[] failing = {true};
+		MyCodec<String> flaky = new MyCodec<String>() {
+			public int size(String object) {
+				return MyCodec.STRING.size(object);
+			}
+
+			public void write(String object, ByteBuffer buffer) {
+				if (failing[0] && object.equals("v3")) {
+					throw new IllegalArgumentException("cannot encode");
+				}
+				MyCodec.STRING.write(object, buffer);
+			}
+
+			public String read(ByteBuffer buffer, int length) {
+				return MyCodec.STRING.read(buffer, length);
+			}
+		};
+		Path directory = this.temporaryDirectory();
+		MyExternalHeap<Integer, String> heap = new MyExternalHeap<Integer, String>(new IntegerComparator(),
+				MyCodec.INTEGER, flaky, directory, 4, 2);
+		for (int i = 4; i > 0; i--) {
+			heap.insert(i, "v" + i);
+		}
+		try {
+			heap.insert(0, "v0");
+			fail("spill encoded a bad value");
+		} catch (IllegalArgumentException e) {
+			assertThat(heap.size(), is(4));
+			assertThat(heap.runCount(), is(0));
+			assertThat(directory.toFile().list().length, is(0));
+		}
+		failing[0] = false;
+		for (int i = 5; i < 12; i++) {
+			heap.insert(i, "v" + i);
+		}
+		assertTrue(heap.runCount() > 0);
+		for (int i = 1; i < 12; i++) {
+			assertThat(heap.removeMin().getValue(), is("v" + i));
+		}
+		assertTrue(heap.isEmpty());
+		heap.close();
+	}
+
+	/**
+	 * Tests that an Empty Priority Queue exception is properly raised in an invalid removeMin call
+	 */
+	@Test(expected = EmptyPriorityQueueException.class)
+	public void removeMinExceptionTest() throws IOException {
+		MyExternalHeap<Integer, String> heap = new MyExternalHeap<Integer, String>(new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.STRING, this.temporaryDirectory(), 4, 2);
+		heap.removeMin();
+	}
+
+	private Path temporaryDirectory() throws IOException {
+		Path directory = Files.createTempDirectory("heap");
+		directory.toFile().deleteOnExit();
+		return directory;
+	}
+}
@@ -0,0 +1,318 @@
+package heap;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.datastructures.*;
+
+/**
+ * A multi-tenant scheduler that shares dispatches between tenants in
+ * proportion to their weights, using weighted fair queuing in the style of
+ * stride scheduling. Each tenant has its own MyMinMaxHeap of pending
+ * requests, ordered by the request keys. A top-level MyMinMaxHeap holds
+ * only the tenants with pending requests, keyed by their virtual finish
+ * time: the virtual time at which the tenant's next dispatch completes if
+ * each dispatch costs 1 / weight. Tenants with equal finish times are
+ * served in the order they were registered, so a run is deterministic.
+ *
+ * dispatch serves the tenant with the earliest finish time, moves the
+ * global virtual time up to that finish time, and re-keys the tenant one
+ * stride later, so a noisy tenant can only ever push its own finish time
+ * further out. A tenant that goes idle keeps its last finish time; when it
+ * becomes busy again it starts at the later of that time and the global
+ * virtual time, so idling does not bank credit. A weight change never
+ * moves a finish time below the global virtual time either, so virtual
+ * time only moves forward. Dispatch, submission and
+ * weight changes all run in O(log T + log n) time for T busy tenants, and
+ * never visit the idle ones.
+ *
+ * Per-tenant metrics count dispatches and time each request's wait from
+ * submit to dispatch. The scheduler is not thread-safe.
+ */
+
+public class MyFairScheduler<T,K,V> {
+
+	private final Comparator<K> _comparator;
+	private final Map<T,Tenant<T,K,V>> _tenants;
+	private final MyMinMaxHeap<Tenant<T,K,V>,Tenant<T,K,V>> _busy;
+	private double _virtualTime;
+	private int _size;
+	private long _registrations;
+
+	/**
+	 * Creates a scheduler with no tenants.
+	 *
+	 * @param comparator to be used for request keys within a tenant
+	 * @throws IllegalArgumentException if null comparator is passed in
+	 */
+	public MyFairScheduler(Comparator<K> comparator) throws IllegalArgumentException {
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator is null");
+		}
+		_comparator = comparator;
+		_tenants = new HashMap<T,Tenant<T,K,V>>();
+		// a busy tenant is its own key, ordered by its finish time and then by when it was registered
+		_busy = new MyMinMaxHeap<Tenant<T,K,V>,Tenant<T,K,V>>(new Comparator<Tenant<T,K,V>>() {
+			public int compare(Tenant<T,K,V> one, Tenant<T,K,V> two) {
+				int result = Double.compare(one._finishTag, two._finishTag);
+				return result != 0 ? result : Long.compare(one._registration, two._registration);
+			}
+		});
+		_virtualTime = 0;
+		_size = 0;
+		_registrations = 0;
+	}
+
+	/**
+	 * @return the number of pending requests over all tenants
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * @return true if no tenant has a pending request; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * Registers a tenant. This method runs in O(1) time.
+	 *
+	 * @param tenant to be registered
+	 * @param weight the tenant's share of dispatches relative to the other tenants
+	 * @throws IllegalArgumentException if the tenant is already registered or the weight is not positive
+	 */
+	public void addTenant(T tenant, double weight) throws IllegalArgumentException {
+		this.checkWeight(weight);
+		if (_tenants.containsKey(tenant)) {
+			throw new IllegalArgumentException("Tenant is already registered");
+		}
+		_tenants.put(tenant, new Tenant<T,K,V>(tenant, weight, _comparator, _registrations++));
+	}
+
+	/**
+	 * Unregisters a tenant that has no pending requests. This method runs in O(1) time.
+	 *
+	 * @param tenant to be unregistered
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 * @throws IllegalStateException if the tenant still has pending requests
+	 */
+	public void removeTenant(T tenant) throws IllegalArgumentException, IllegalStateException {
+		if (!this.tenant(tenant)._queue.isEmpty()) {
+			throw new IllegalStateException("Tenant has pending requests");
+		}
+		_tenants.remove(tenant);
+	}
+
+	/**
+	 * Changes a tenant's weight. A busy tenant's current stride is rescaled to
+	 * the new weight, so the change applies from its next dispatch on. The
+	 * rescaled stride starts no earlier than the global virtual time, so a
+	 * raised weight cannot put the tenant behind virtual time and earn it a
+	 * burst of catch-up dispatches. This method runs in O(log T) time.
+	 *
+	 * @param tenant whose weight is changed
+	 * @param weight the new weight
+	 * @throws IllegalArgumentException if the tenant is not registered or the weight is not positive
+	 */
+	public void setWeight(T tenant, double weight) throws IllegalArgumentException {
+		this.checkWeight(weight);
+		Tenant<T,K,V> state = this.tenant(tenant);
+		if (state._busyEntry != null) {
+			double start = Math.max(state._finishTag - 1 / state._weight, _virtualTime);
+			this.rekey(state, start + 1 / weight);
+		}
+		state._weight = weight;
+	}
+
+	/**
+	 * @param tenant whose weight is returned
+	 * @return the tenant's current weight
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 */
+	public double getWeight(T tenant) throws IllegalArgumentException {
+		return this.tenant(tenant)._weight;
+	}
+
+	/**
+	 * Adds a request to a tenant's queue. If the tenant was idle, it joins the
+	 * busy tenants one stride after the later of its last finish time and
+	 * the global virtual time. This method runs in O(log T + log n) time.
+	 *
+	 * @param tenant the request belongs to
+	 * @param key that orders the request within its tenant
+	 * @param value of the request
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 * @throws InvalidKeyException if the key is invalid
+	 */
+	public void submit(T tenant, K key, V value) throws IllegalArgumentException, InvalidKeyException {
+		Tenant<T,K,V> state = this.tenant(tenant);
+		state._queue.insert(key, new Request<V>(value, System.nanoTime()));
+		_size++;
+		if (state._busyEntry == null) {
+			double start = Math.max(state._finish, _virtualTime);
+			state._finishTag = start + 1 / state._weight;
+			state._busyEntry = _busy.insert(state, state);
+		}
+	}
+
+	/**
+	 * Returns the tenant that the next dispatch will serve.
+	 * This method runs in O(1) time.
+	 *
+	 * @return the busy tenant with the earliest virtual finish time
+	 * @throws EmptyPriorityQueueException if no tenant has a pending request
+	 */
+	public T nextTenant() throws EmptyPriorityQueueException {
+		return _busy.min().getValue()._tenant;
+	}
+
+	/**
+	 * Removes and returns the smallest request of the busy tenant with the
+	 * earliest virtual finish time. This method runs in O(log T + log n) time.
+	 *
+	 * @return the dispatched request as a key/value entry
+	 * @throws EmptyPriorityQueueException if no tenant has a pending request
+	 */
+	public Entry<K,V> dispatch() throws EmptyPriorityQueueException {
+		Tenant<T,K,V> state = _busy.min().getValue();
+		Entry<K,Request<V>> request = state._queue.removeMin();
+		_size--;
+		_virtualTime = state._finishTag;
+		state._finish = state._finishTag;
+		if (state._queue.isEmpty()) {
+			_busy.remove(state._busyEntry);
+			state._busyEntry = null;
+		} else {
+			this.rekey(state, state._finish + 1 / state._weight);
+		}
+
+		long latency = System.nanoTime() - request.getValue()._submitted;
+		state._dispatched++;
+		state._totalLatency += latency;
+		state._maxLatency = Math.max(state._maxLatency, latency);
+		return new MyHeapEntry<K,V>(request.getKey(), request.getValue()._value);
+	}
+
+	/**
+	 * @param tenant whose pending requests are counted
+	 * @return the number of requests the tenant has waiting
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 */
+	public int getBacklog(T tenant) throws IllegalArgumentException {
+		return this.tenant(tenant)._queue.size();
+	}
+
+	/**
+	 * @param tenant whose dispatches are counted
+	 * @return the number of the tenant's requests dispatched since it was registered
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 */
+	public long getDispatched(T tenant) throws IllegalArgumentException {
+		return this.tenant(tenant)._dispatched;
+	}
+
+	/**
+	 * @param tenant whose throughput is measured
+	 * @return the tenant's dispatches per second since it was registered
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 */
+	public double getThroughput(T tenant) throws IllegalArgumentException {
+		Tenant<T,K,V> state = this.tenant(tenant);
+		long elapsed = Math.max(1, System.nanoTime() - state._registered);
+		return state._dispatched * 1e9 / elapsed;
+	}
+
+	/**
+	 * @param tenant whose waiting time is measured
+	 * @return the mean time in nanoseconds from submit to dispatch, or 0 before the first dispatch
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 */
+	public double getMeanLatencyNanos(T tenant) throws IllegalArgumentException {
+		Tenant<T,K,V> state = this.tenant(tenant);
+		return state._dispatched == 0 ? 0 : (double) state._totalLatency / state._dispatched;
+	}
+
+	/**
+	 * @param tenant whose waiting time is measured
+	 * @return the longest time in nanoseconds from submit to dispatch
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 */
+	public long getMaxLatencyNanos(T tenant) throws IllegalArgumentException {
+		return this.tenant(tenant)._maxLatency;
+	}
+
+	/**
+	 * Moves a busy tenant to a new finish time. The tenant is its own key in
+	 * the busy heap, so its finish time is only changed here, together with
+	 * the heap repair.
+	 */
+	private void rekey(Tenant<T,K,V> state, double finishTag) {
+		state._finishTag = finishTag;
+		_busy.replaceKey(state._busyEntry, state);
+	}
+
+	/**
+	 * @return the state of a registered tenant
+	 * @throws IllegalArgumentException if the tenant is not registered
+	 */
+	private Tenant<T,K,V> tenant(T tenant) throws IllegalArgumentException {
+		Tenant<T,K,V> state = _tenants.get(tenant);
+		if (state == null) {
+			throw new IllegalArgumentException("Tenant is not registered");
+		}
+		return state;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the weight is not positive and finite
+	 */
+	private void checkWeight(double weight) throws IllegalArgumentException {
+		if (!(weight > 0) || Double.isInfinite(weight)) {
+			throw new IllegalArgumentException("weight must be positive and finite");
+		}
+	}
+
+	/**
+	 * A tenant's queue, weight, scheduling state and metrics
+	 */
+	private static class Tenant<T,K,V> {
+
+		private final T _tenant;
+		private final MyMinMaxHeap<K,Request<V>> _queue;
+		private final long _registered;
+		private final long _registration;
+		private double _weight;
+		private double _finish;
+		private double _finishTag;
+		private Entry<Tenant<T,K,V>,Tenant<T,K,V>> _busyEntry;
+		private long _dispatched;
+		private long _totalLatency;
+		private long _maxLatency;
+
+		private Tenant(T tenant, double weight, Comparator<K> comparator, long registration) {
+			_tenant = tenant;
+			_queue = new MyMinMaxHeap<K,Request<V>>(comparator);
+			_registered = System.nanoTime();
+			_registration = registration;
+			_weight = weight;
+		}
+	}
+
+	/**
+	 * A pending value and the time it was submitted at
+	 */
+	private static class Request<V> {
+
+		private final V _value;
+		private final long _submitted;
+
+		private Request(V value, long submitted) {
+			_value = value;
+			_submitted = submitted;
+		}
+	}
+}
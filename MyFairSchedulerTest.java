@@ -0,0 +1,179 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the MyFairScheduler implementation, in particular that dispatches are shared by weight and
+ * that no tenant can starve another.
+ */
+public class MyFairSchedulerTest {
+
+	/**
+	 * Tests that busy tenants are served in proportion to their weights
+	 */
+	@Test
+	public void weightedShareTest() {
+		MyFairScheduler<String, Integer, String> scheduler = this.scheduler(1, 2, 3);
+		for (int i = 0; i < 1000; i++) {
+			scheduler.submit("a", i, "a" + i);
+			scheduler.submit("b", i, "b" + i);
+			scheduler.submit("c", i, "c" + i);
+		}
+		for (int i = 0; i < 600; i++) {
+			scheduler.dispatch();
+		}
+
+		assertTrue(Math.abs(scheduler.getDispatched("a") - 100) <= 1);
+		assertTrue(Math.abs(scheduler.getDispatched("b") - 200) <= 1);
+		assertTrue(Math.abs(scheduler.getDispatched("c") - 300) <= 1);
+		assertThat(scheduler.size(), is(2400));
+	}
+
+	/**
+	 * Tests that a quiet tenant is served promptly even when a noisy one has a large backlog, and that each
+	 * tenant's requests leave in key order
+	 */
+	@Test
+	public void noisyTenantTest() {
+		MyFairScheduler<String, Integer, String> scheduler = this.scheduler(1, 1, 1);
+		for (int i = 0; i < 1000; i++) {
+			scheduler.submit("a", 1000 - i, "noisy");
+		}
+		for (int i = 0; i < 10; i++) {
+			scheduler.submit("b", 10 - i, "quiet");
+		}
+		int quietKey = 0;
+		for (int i = 0; i < 20; i++) {
+			Entry<Integer, String> entry = scheduler.dispatch();
+			if (entry.getValue().equals("quiet")) {
+				assertThat(entry.getKey(), is(++quietKey));
+			}
+		}
+
+		assertThat(scheduler.getBacklog("b"), is(0));
+		assertTrue(scheduler.getMaxLatencyNanos("b") >= 0);
+		assertTrue(scheduler.getMeanLatencyNanos("a") >= 0);
+	}
+
+	/**
+	 * Tests that an idle tenant does not bank credit while it is idle
+	 */
+	@Test
+	public void idleBanksNoCreditTest() {
+		MyFairScheduler<String, Integer, String> scheduler = this.scheduler(1, 1, 1);
+		for (int i = 0; i < 200; i++) {
+			scheduler.submit("a", i, "a");
+		}
+		for (int i = 0; i < 100; i++) {
+			assertThat(scheduler.nextTenant(), is("a"));
+			scheduler.dispatch();
+		}
+		for (int i = 0; i < 100; i++) {
+			scheduler.submit("b", i, "b");
+		}
+		for (int i = 0; i < 20; i++) {
+			scheduler.dispatch();
+		}
+
+		assertTrue(Math.abs(scheduler.getDispatched("b") - 10) <= 1);
+	}
+
+	/**
+	 * Tests that a weight change applies to the following dispatches
+	 */
+	@Test
+	public void setWeightTest() {
+		MyFairScheduler<String, Integer, String> scheduler = this.scheduler(1, 1, 1);
+		for (int i = 0; i < 1000; i++) {
+			scheduler.submit("a", i, "a");
+			scheduler.submit("b", i, "b");
+		}
+		for (int i = 0; i < 100; i++) {
+			scheduler.dispatch();
+		}
+		scheduler.setWeight("b", 4);
+		for (int i = 0; i < 500; i++) {
+			scheduler.dispatch();
+		}
+
+		assertTrue(Math.abs(scheduler.getDispatched("a") - 150) <= 2);
+		assertTrue(Math.abs(scheduler.getDispatched("b") - 450) <= 2);
+		assertTrue(scheduler.getWeight("b") == 4);
+	}
+
+	/**
+	 * Tests that raising the weight of a tenant far behind virtual time does not hand it a burst of dispatches
+	 */
+	@Test
+	public void setWeightVirtualTimeTest() {
+		MyFairScheduler<String, Integer, String> scheduler = this.scheduler(0.01, 1, 1);
+		for (int i = 0; i < 1000; i++) {
+			scheduler.submit("a", i, "a");
+			scheduler.submit("b", i, "b");
+		}
+		for (int i = 0; i < 50; i++) {
+			assertThat(scheduler.dispatch().getValue(), is("b"));
+		}
+		scheduler.setWeight("a", 1);
+		for (int i = 0; i < 40; i++) {
+			scheduler.dispatch();
+		}
+
+		assertThat(scheduler.getDispatched("a"), is(20L));
+		assertThat(scheduler.getDispatched("b"), is(70L));
+	}
+
+	/**
+	 * Tests that tenants with equal finish times are served in the order they were registered
+	 */
+	@Test
+	public void tieBreakTest() {
+		MyFairScheduler<String, Integer, String> scheduler =
+				new MyFairScheduler<String, Integer, String>(new IntegerComparator());
+		String[] tenants = {"c", "a", "d", "b"};
+		for (String tenant : tenants) {
+			scheduler.addTenant(tenant, 1);
+		}
+		for (int i = 0; i < 3; i++) {
+			for (int t = tenants.length - 1; t >= 0; t--) {
+				scheduler.submit(tenants[t], i, tenants[t]);
+			}
+		}
+		for (int i = 0; i < 12; i++) {
+			assertThat(scheduler.dispatch().getValue(), is(tenants[i % tenants.length]));
+		}
+	}
+
+	/**
+	 * Tests that an Empty Priority Queue Exception is raised when no tenant has a pending request
+	 */
+	@Test(expected = EmptyPriorityQueueException.class)
+	public void dispatchExceptionTest() {
+		MyFairScheduler<String, Integer, String> scheduler = this.scheduler(1, 1, 1);
+		scheduler.submit("a", 1, "a");
+		scheduler.dispatch();
+		scheduler.dispatch();
+	}
+
+	/**
+	 * Tests that an Illegal Argument Exception is raised when submitting for an unknown tenant
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownTenantExceptionTest() {
+		MyFairScheduler<String, Integer, String> scheduler = this.scheduler(1, 1, 1);
+		scheduler.submit("d", 1, "d");
+	}
+
+	private MyFairScheduler<String, Integer, String> scheduler(double a, double b, double c) {
+		MyFairScheduler<String, Integer, String> scheduler =
+				new MyFairScheduler<String, Integer, String>(new IntegerComparator());
+		scheduler.addTenant("a", a);
+		scheduler.addTenant("b", b);
+		scheduler.addTenant("c", c);
+		return scheduler;
+	}
+}
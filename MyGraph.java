@@ -0,0 +1,247 @@
+package heap;
+
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * A directed graph with non-negative int edge weights, stored in
+ * compressed sparse row (CSR) form: the edges leaving node u are at
+ * indices offsets[u] up to offsets[u + 1] of the targets and weights
+ * arrays. Three flat int arrays keep a graph of tens of millions of nodes
+ * compact and let a search walk a node's edges sequentially in memory.
+ *
+ * Nodes are numbered from 0. A graph is immutable once built; reverse()
+ * builds the graph with every edge turned around, which backward searches
+ * need, and caches it.
+ */
+
+public class MyGraph {
+
+	/**
+	 * The smallest edge weight in a grid built by grid()
+	 */
+	public static final int GRID_MIN_WEIGHT = 10;
+
+	private final int[] _offsets;
+	private final int[] _targets;
+	private final int[] _weights;
+	private MyGraph _reverse;
+
+	/**
+	 * Creates a graph from CSR arrays, which are used as they are, not copied.
+	 *
+	 * @param offsets of each node's first edge, with one more entry than there are nodes
+	 * @param targets the target node of each edge
+	 * @param weights the weight of each edge
+	 * @throws IllegalArgumentException if the arrays do not describe a valid graph
+	 */
+	public MyGraph(int[] offsets, int[] targets, int[] weights) throws IllegalArgumentException {
+		if (offsets.length == 0 || offsets[0] != 0 || offsets[offsets.length - 1] != targets.length
+				|| weights.length != targets.length) {
+			throw new IllegalArgumentException("Arrays do not describe a graph");
+		}
+		int nodes = offsets.length - 1;
+		for (int u = 0; u < nodes; u++) {
+			if (offsets[u] > offsets[u + 1]) {
+				throw new IllegalArgumentException("Offsets must not decrease");
+			}
+		}
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] < 0 || targets[i] >= nodes) {
+				throw new IllegalArgumentException("Edge target is not a node");
+			}
+			if (weights[i] < 0) {
+				throw new IllegalArgumentException("Edge weight is negative");
+			}
+		}
+		_offsets = offsets;
+		_targets = targets;
+		_weights = weights;
+	}
+
+	/**
+	 * Builds a graph from a list of edges, grouping them by source node with a
+	 * counting sort. This method runs in O(n + m) time.
+	 *
+	 * @param nodes the number of nodes
+	 * @param from the source node of each edge
+	 * @param to the target node of each edge
+	 * @param weights the weight of each edge
+	 * @return the graph
+	 * @throws IllegalArgumentException if the edges do not describe a valid graph
+	 */
+	public static MyGraph fromEdges(int nodes, int[] from, int[] to, int[] weights) throws IllegalArgumentException {
+		if (nodes < 0 || from.length != to.length || from.length != weights.length) {
+			throw new IllegalArgumentException("Edge arrays differ in length");
+		}
+		int[] offsets = new int[nodes + 1];
+		for (int u : from) {
+			if (u < 0 || u >= nodes) {
+				throw new IllegalArgumentException("Edge source is not a node");
+			}
+			offsets[u + 1]++;
+		}
+		for (int u = 0; u < nodes; u++) {
+			offsets[u + 1] += offsets[u];
+		}
+		int[] next = new int[nodes];
+		System.arraycopy(offsets, 0, next, 0, nodes);
+		int[] targets = new int[from.length];
+		int[] sortedWeights = new int[from.length];
+		for (int i = 0; i < from.length; i++) {
+			int slot = next[from[i]]++;
+			targets[slot] = to[i];
+			sortedWeights[slot] = weights[i];
+		}
+		return new MyGraph(offsets, targets, sortedWeights);
+	}
+
+	/**
+	 * Builds a road-like grid: every node is connected both ways to its
+	 * right and lower neighbours with a random weight from 10 to 99, and a
+	 * few of those roads are missing. Node (x, y) is numbered y * width + x,
+	 * and since every edge moves one step and weighs at least 10, ten times
+	 * the grid distance between two nodes never overestimates the shortest
+	 * path, which makes it a valid A* heuristic.
+	 *
+	 * @param width the number of columns
+	 * @param height the number of rows
+	 * @param seed for the weights and missing roads, so a grid can be rebuilt exactly
+	 * @return the grid
+	 * @throws IllegalArgumentException if the grid is empty or too large for int node numbers
+	 */
+	public static MyGraph grid(int width, int height, long seed) throws IllegalArgumentException {
+		if (width < 1 || height < 1 || (long) width * height * 4 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Grid size is out of range");
+		}
+		Random random = new Random(seed);
+		int nodes = width * height;
+		// the weight of each node's road to the right and down, 0 where there is none
+		int[] right = new int[nodes];
+		int[] down = new int[nodes];
+		int[] offsets = new int[nodes + 1];
+		for (int u = 0; u < nodes; u++) {
+			if (u % width + 1 < width && random.nextInt(20) != 0) {
+				right[u] = GRID_MIN_WEIGHT + random.nextInt(90);
+				offsets[u + 1]++;
+				offsets[u + 2]++;
+			}
+			if (u + width < nodes && random.nextInt(20) != 0) {
+				down[u] = GRID_MIN_WEIGHT + random.nextInt(90);
+				offsets[u + 1]++;
+				offsets[u + width + 1]++;
+			}
+		}
+		for (int u = 0; u < nodes; u++) {
+			offsets[u + 1] += offsets[u];
+		}
+		int[] targets = new int[offsets[nodes]];
+		int[] weights = new int[offsets[nodes]];
+		for (int u = 0; u < nodes; u++) {
+			int edge = offsets[u];
+			if (u >= width && down[u - width] != 0) {
+				targets[edge] = u - width;
+				weights[edge++] = down[u - width];
+			}
+			if (u % width > 0 && right[u - 1] != 0) {
+				targets[edge] = u - 1;
+				weights[edge++] = right[u - 1];
+			}
+			if (right[u] != 0) {
+				targets[edge] = u + 1;
+				weights[edge++] = right[u];
+			}
+			if (down[u] != 0) {
+				targets[edge] = u + width;
+				weights[edge++] = down[u];
+			}
+		}
+		return new MyGraph(offsets, targets, weights);
+	}
+
+	/**
+	 * Returns the A* heuristic for a grid built by grid(): the grid distance
+	 * from a node to the target times the smallest edge weight, which never
+	 * overestimates and drops by at most an edge's weight along an edge.
+	 *
+	 * @param width the number of columns of the grid
+	 * @param target node the search is heading for
+	 * @return the heuristic
+	 */
+	public static IntToLongFunction gridHeuristic(final int width, final int target) {
+		final int targetX = target % width;
+		final int targetY = target / width;
+		return new IntToLongFunction() {
+			public long applyAsLong(int node) {
+				return (long) GRID_MIN_WEIGHT * (Math.abs(node % width - targetX) + Math.abs(node / width - targetY));
+			}
+		};
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int nodeCount() {
+		return _offsets.length - 1;
+	}
+
+	/**
+	 * @return the number of edges
+	 */
+	public int edgeCount() {
+		return _targets.length;
+	}
+
+	/**
+	 * @param node whose edges are wanted
+	 * @return the index of the node's first edge
+	 */
+	public int firstEdge(int node) {
+		return _offsets[node];
+	}
+
+	/**
+	 * @param node whose edges are wanted
+	 * @return one past the index of the node's last edge
+	 */
+	public int endEdge(int node) {
+		return _offsets[node + 1];
+	}
+
+	/**
+	 * @param edge index
+	 * @return the node the edge leads to
+	 */
+	public int target(int edge) {
+		return _targets[edge];
+	}
+
+	/**
+	 * @param edge index
+	 * @return the weight of the edge
+	 */
+	public int weight(int edge) {
+		return _weights[edge];
+	}
+
+	/**
+	 * Returns the graph with every edge reversed, building it on the first
+	 * call. This method runs in O(n + m) time the first time and O(1) after.
+	 *
+	 * @return the reversed graph
+	 */
+	public synchronized MyGraph reverse() {
+		if (_reverse == null) {
+			int nodes = this.nodeCount();
+			int[] from = new int[_targets.length];
+			for (int u = 0; u < nodes; u++) {
+				for (int e = _offsets[u]; e < _offsets[u + 1]; e++) {
+					from[e] = u;
+				}
+			}
+			_reverse = fromEdges(nodes, _targets, from, _weights);
+			_reverse._reverse = this;
+		}
+		return _reverse;
+	}
+}
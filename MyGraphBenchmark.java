@@ -0,0 +1,193 @@
+package heap;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Chooses a node queue backend for MyShortestPaths by timing each one on
+ * road-like grids from MyGraph.grid. Grids and queries come from fixed
+ * seeds, so every run searches exactly the same graphs between exactly the
+ * same node pairs. After timing a backend, the benchmark checks every
+ * distance it found against a bidirectional search on an indexed binary
+ * heap, so a faulty backend cannot win.
+ *
+ * Run main with the number of queries and the grid sides to measure, for
+ * example "50 100 1000 3163" for grids of 10 thousand, 1 million and 10
+ * million nodes (the last needs a heap of about 2 GB), or call fastest to
+ * choose a backend from code.
+ */
+
+public class MyGraphBenchmark {
+
+	/**
+	 * The searches the benchmark can run
+	 */
+	public enum Algorithm {
+		DIJKSTRA, A_STAR, BIDIRECTIONAL
+	}
+
+	/**
+	 * Orders distances
+	 */
+	public static final Comparator<Long> DISTANCE_ORDER = new Comparator<Long>() {
+		public int compare(Long one, Long two) {
+			return Long.compare(one, two);
+		}
+	};
+
+	private MyGraphBenchmark() {
+	}
+
+	/**
+	 * @return a factory for each node queue backend, by name
+	 */
+	public static Map<String,IntFunction<MyNodeQueue>> backends() {
+		Map<String,IntFunction<MyNodeQueue>> backends = new LinkedHashMap<String,IntFunction<MyNodeQueue>>();
+		backends.put("min-max heap", new IntFunction<MyNodeQueue>() {
+			public MyNodeQueue apply(int nodes) {
+				return new MyAdaptableNodeQueue(new MyMinMaxHeap<Long,Integer>(DISTANCE_ORDER), nodes);
+			}
+		});
+		backends.put("binary heap", new IntFunction<MyNodeQueue>() {
+			public MyNodeQueue apply(int nodes) {
+				return new MyAdaptableNodeQueue(new MyHeap<Long,Integer>(DISTANCE_ORDER), nodes);
+			}
+		});
+		backends.put("pairing heap", new IntFunction<MyNodeQueue>() {
+			public MyNodeQueue apply(int nodes) {
+				return new MyAdaptableNodeQueue(new MyPairingHeap<Long,Integer>(DISTANCE_ORDER), nodes);
+			}
+		});
+		backends.put("indexed binary", new IntFunction<MyNodeQueue>() {
+			public MyNodeQueue apply(int nodes) {
+				return new MyDaryHeap(nodes, 2);
+			}
+		});
+		backends.put("indexed 4-ary", new IntFunction<MyNodeQueue>() {
+			public MyNodeQueue apply(int nodes) {
+				return new MyDaryHeap(nodes, 4);
+			}
+		});
+		backends.put("radix heap", new IntFunction<MyNodeQueue>() {
+			public MyNodeQueue apply(int nodes) {
+				return new MyRadixHeap(nodes);
+			}
+		});
+		return backends;
+	}
+
+	/**
+	 * Times one backend running one search between random pairs of nodes of a grid.
+	 *
+	 * @param grid built by MyGraph.grid
+	 * @param width the number of columns of the grid, for the A* heuristic
+	 * @param backend which creates the node queues
+	 * @param algorithm the search to run
+	 * @param queries the number of node pairs to search between
+	 * @param seed for the node pairs
+	 * @return the queries answered per second
+	 * @throws IllegalStateException if the backend finds a wrong distance
+	 */
+	public static double measure(MyGraph grid, int width, IntFunction<MyNodeQueue> backend, Algorithm algorithm,
+			int queries, long seed) throws IllegalStateException {
+		MyShortestPaths paths = new MyShortestPaths(grid, backend);
+		MyShortestPaths reference = new MyShortestPaths(grid, new IntFunction<MyNodeQueue>() {
+			public MyNodeQueue apply(int nodes) {
+				return new MyDaryHeap(nodes, 2);
+			}
+		});
+		Random random = new Random(seed);
+		int[] sources = new int[queries];
+		int[] targets = new int[queries];
+		for (int i = 0; i < queries; i++) {
+			sources[i] = random.nextInt(grid.nodeCount());
+			targets[i] = random.nextInt(grid.nodeCount());
+		}
+		long[] distances = new long[queries];
+		long start = System.nanoTime();
+		for (int i = 0; i < queries; i++) {
+			distances[i] = search(paths, width, algorithm, sources[i], targets[i]);
+		}
+		long nanos = System.nanoTime() - start;
+		for (int i = 0; i < queries; i++) {
+			if (distances[i] != reference.bidirectionalDistance(sources[i], targets[i])) {
+				throw new IllegalStateException("backend found a wrong distance");
+			}
+		}
+		return nanos == 0 ? 0 : queries * 1e9 / nanos;
+	}
+
+	/**
+	 * Measures every backend, each after a warm-up run, and returns the fastest.
+	 *
+	 * @param grid built by MyGraph.grid
+	 * @param width the number of columns of the grid
+	 * @param backends the backends to choose from, by name
+	 * @param algorithm the search to run
+	 * @param queries the number of node pairs to search between per measurement
+	 * @return the name of the backend that answered the most queries per second
+	 */
+	public static String fastest(MyGraph grid, int width, Map<String,IntFunction<MyNodeQueue>> backends,
+			Algorithm algorithm, int queries) {
+		String fastest = null;
+		double best = -1;
+		for (Map.Entry<String,IntFunction<MyNodeQueue>> backend : backends.entrySet()) {
+			measure(grid, width, backend.getValue(), algorithm, queries, 1);
+			double rate = measure(grid, width, backend.getValue(), algorithm, queries, 2);
+			if (rate > best) {
+				best = rate;
+				fastest = backend.getKey();
+			}
+		}
+		return fastest;
+	}
+
+	/**
+	 * Prints the queries per second of every backend and search on square grids.
+	 *
+	 * @param args optionally, the number of queries per measurement followed by the grid sides
+	 */
+	public static void main(String[] args) {
+		int queries = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int[] sides = {100, 1000};
+		if (args.length > 1) {
+			sides = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				sides[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+		Map<String,IntFunction<MyNodeQueue>> backends = backends();
+		for (int side : sides) {
+			MyGraph grid = MyGraph.grid(side, side, side);
+			System.out.println(side + " x " + side + " grid, " + grid.nodeCount() + " nodes, "
+					+ grid.edgeCount() + " edges:");
+			for (Algorithm algorithm : Algorithm.values()) {
+				System.out.println("  " + algorithm + ":");
+				for (Map.Entry<String,IntFunction<MyNodeQueue>> backend : backends.entrySet()) {
+					measure(grid, side, backend.getValue(), algorithm, queries, 1);
+					double rate = measure(grid, side, backend.getValue(), algorithm, queries, 2);
+					System.out.printf("    %-15s %,12.1f queries/sec%n", backend.getKey(), rate);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs one search
+	 *
+	 * @return the distance found
+	 */
+	private static long search(MyShortestPaths paths, int width, Algorithm algorithm, int source, int target) {
+		switch (algorithm) {
+		case A_STAR:
+			return paths.aStarDistance(source, target, MyGraph.gridHeuristic(width, target));
+		case BIDIRECTIONAL:
+			return paths.bidirectionalDistance(source, target);
+		default:
+			return paths.distance(source, target);
+		}
+	}
+}
@@ -1,6 +1,13 @@
 package heap;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import net.datastructures.*;
 import support.heap.HeapWrapper;
@@ -15,10 +22,21 @@ import support.heap.HeapWrapper;
  */
 
 public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V> {
+
+	private static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+	private static final long SEQUENCE_LIMIT = 1L << 32;
 	
 	// This the underlying data structure of your heap
 	private Comparator<K> _comparator;
 	private MyLinkedHeapTree<MyHeapEntry<K,V>> _tree;
+	private boolean _bottomUpSifting;
+	private long _comparisons;
+	private int _cancelled;
+	private double _compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+	private long _compactions;
+	private boolean _stable;
+	private boolean _packed;
+	private long _sequence;
 
 	/** 
 	 * Creates an empty heap with the given comparator. 
@@ -48,6 +66,116 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 		}
 	}
 
+	/**
+	 * Turns bottom-up sifting on or off. It is meant for keys whose
+	 * comparator is expensive. Downheaping walks the hole left at the top
+	 * along the smaller children all the way to a leaf (one comparison per
+	 * level instead of two), then sifts the displaced entry back up from
+	 * there, which is usually only a level or two because it came from the
+	 * bottom of the tree. Both directions move entries into a hole instead
+	 * of swapping them. Off by default, since it can leave equal keys in a
+	 * different arrangement than the classic sift does.
+	 *
+	 * @param enabled true to sift bottom-up, false for the classic sift
+	 */
+	public void setBottomUpSifting(boolean enabled) {
+		_bottomUpSifting = enabled;
+	}
+
+	/**
+	 * Turns stable ordering on or off. In stable mode, entries with equal
+	 * keys leave the heap in the order they were inserted, and an entry whose
+	 * key is replaced goes behind the entries that already have its new key.
+	 * Nothing extra is allocated: each entry keeps its order in a long.
+	 *
+	 * When the comparator is the natural order (an IntegerComparator or
+	 * Comparator.naturalOrder()) and the keys are Integers, or Longs in the
+	 * int range, the key and a 32-bit sequence number are packed into that
+	 * long, key in the high half, and sifting compares the single long
+	 * without calling the comparator. When the sequence numbers run out,
+	 * they are reassigned in the current order, which keeps heap order as it
+	 * is. Any other comparator, or the first key that does not fit, makes
+	 * the heap compare keys with the comparator and only then the sequence
+	 * numbers, which is the two-step comparison packing avoids.
+	 *
+	 * @param enabled true to break ties first in, first out
+	 * @throws IllegalStateException if the heap is not empty
+	 */
+	public void setStableOrdering(boolean enabled) throws IllegalStateException {
+		if (!_tree.isEmpty()) {
+			throw new IllegalStateException("Not Empty");
+		}
+		_stable = enabled;
+		_packed = enabled && (_comparator.getClass() == IntegerComparator.class
+				|| _comparator == Comparator.naturalOrder());
+		_sequence = 0;
+	}
+
+	/**
+	 * @return true if entries with equal keys leave first in, first out
+	 */
+	public boolean isStableOrdering() {
+		return _stable;
+	}
+
+	/**
+	 * @return true if the stable order is kept as packed key and sequence longs, compared without the comparator
+	 */
+	public boolean isPackedOrdering() {
+		return _packed;
+	}
+
+	/**
+	 * @return the number of key comparisons made since the heap was created or the count was reset
+	 */
+	public long getComparisons() {
+		return _comparisons;
+	}
+
+	/**
+	 * Resets the key comparison count to zero
+	 */
+	public void resetComparisons() {
+		_comparisons = 0;
+	}
+
+	/**
+	 * Sets the fraction of cancelled entries at which the heap is compacted.
+	 * Once more than this fraction of the stored entries are cancelled,
+	 * the next cancel compacts the heap. A threshold of 1 never compacts, so
+	 * cancelled entries only leave the heap when they reach the root.
+	 *
+	 * @param threshold the fraction of cancelled entries, greater than 0 and at most 1
+	 * @throws IllegalArgumentException if the threshold is out of range
+	 */
+	public void setCompactionThreshold(double threshold) throws IllegalArgumentException {
+		if (!(threshold > 0 && threshold <= 1)) {
+			throw new IllegalArgumentException("threshold must be greater than 0 and at most 1");
+		}
+		_compactionThreshold = threshold;
+	}
+
+	/**
+	 * @return the number of cancelled entries still stored in the heap
+	 */
+	public int getCancelledCount() {
+		return _cancelled;
+	}
+
+	/**
+	 * @return the fraction of the stored entries that are cancelled, or 0 if nothing is stored
+	 */
+	public double getCancelledFraction() {
+		return _tree.isEmpty() ? 0 : (double) _cancelled / _tree.size();
+	}
+
+	/**
+	 * @return the number of times the heap has been compacted
+	 */
+	public long getCompactions() {
+		return _compactions;
+	}
+
 	/**
 	 * Returns a CompleteBinaryTree that will allow the visualizer 
 	 * access to private members, shattering encapsulation, but 
@@ -64,13 +192,13 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 	}
 	
 	/** 
-	 * Returns the size of the heap.
+	 * Returns the size of the heap, not counting cancelled entries.
 	 * This method must run in O(1) time.
 	 *
 	 * @return an int representing the number of entries stored
 	 */
 	public int size() {
-		return _tree.size();
+		return _tree.size() - _cancelled;
 	}
 
 	/** 
@@ -80,11 +208,13 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 	 * @return true if the heap is empty; false otherwise
 	 */
 	public boolean isEmpty() {
-		return (_tree.isEmpty());
+		return (this.size() == 0);
 	}
 
 	/** 
-	 * Returns but does not remove the entry with minimum key.
+	 * Returns but does not remove the entry with minimum key. Every
+	 * operation that changes the heap leaves a live entry at the root, so
+	 * this never has to look past cancelled entries or change the heap.
 	 * This method must run in O(1) time.
 	 * 
 	 * @return the entry with the minimum key in the heap
@@ -107,37 +237,32 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 	 * @throws InvalidKeyException if the key is not suitable for this heap
 	 */
 	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
-		if (key == null || !(key instanceof Integer)) {
-			throw new InvalidKeyException("Key is not a valid object type");
-		}
+		this.checkQueryKey(key);
 		MyHeapEntry<K,V> insertableEntry = new MyHeapEntry<K,V>(key, value);
 		insertableEntry.setKey(key);
 		insertableEntry.setValue(value);
+		this.assignOrder(insertableEntry);
 		insertableEntry.setPosition(_tree.add(insertableEntry));
 		this.upHeap(insertableEntry.getPosition());
-		return insertableEntry.getPosition().element();
+		return insertableEntry;
 	}
 
 	/** 
-	 * Removes and returns the entry with the minimum key.
-	 * This method must run in O(log n) time.
+	 * Removes and returns the entry with the minimum key, then removes any
+	 * cancelled entries that surface at the root.
+	 * This method must run in O(log n) amortized time.
 	 * 
 	 * @return the entry with the with the minimum key, now removed 
 	 * @throws EmptyPriorityQueueException if the heap is empty
 	 */
 	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
-		if(_tree.isEmpty()){
+		if(isEmpty()){
 			throw new EmptyPriorityQueueException("The Heap is Empty");
 		}
-		MyHeapEntry<K,V> lastEntry = _tree.returnLast().element();
-		if(!_tree.isEmpty()) {
-			this.swapElement(_tree.root().element(), lastEntry);
-			_tree.remove();
-			if(!_tree.isEmpty()) {
-				this.downHeap(_tree.root());
-			}
-		}
-		return lastEntry;
+		MyHeapEntry<K,V> minEntry = _tree.root().element();
+		this.removeEntry(minEntry);
+		this.dropCancelledRoots();
+		return minEntry;
 	}
 
 	/** 
@@ -154,14 +279,12 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 		if(_tree.isEmpty() || position == null || entry == null){
 			throw new InvalidEntryException("Not in the tree");
 		}
-		Position<MyHeapEntry<K,V>> check = _tree.returnLast();
-		this.swapElement(checkedEntry, check.element());
-		MyHeapEntry<K,V> lastEntry = _tree.remove();
-		if(!_tree.isEmpty()) {
-			this.upHeap(position);
-			this.downHeap(position);
+		if(checkedEntry.isCancelled()){
+			throw new InvalidEntryException("Entry was cancelled");
 		}
-		return lastEntry;
+		this.removeEntry(checkedEntry);
+		this.dropCancelledRoots();
+		return checkedEntry;
 	}
 
 	/** 
@@ -177,24 +300,73 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 
 	public K replaceKey(Entry<K,V> entry, K key) throws InvalidEntryException, InvalidKeyException {
 		MyHeapEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
-		if(_tree.isEmpty() || entry == null){
+		if(_tree.isEmpty() || checkedEntry.getPosition() == null){
 			throw new InvalidEntryException("Entry is not in tree");
 		}
-		if(!_tree.isEmpty()) {
-			if (key == null || !(key instanceof Integer)) {
-				throw new InvalidKeyException("Key is not a valid object type");
-			}
+		if(checkedEntry.isCancelled()){
+			throw new InvalidEntryException("Entry was cancelled");
 		}
+		this.checkQueryKey(key);
 
-		Position<MyHeapEntry<K,V>> position = checkedEntry.getPosition();
 		K oldKey = checkedEntry.getKey();
 		checkedEntry.setKey(key);
-		this.downHeap(position);
-		this.upHeap(position);
+		this.assignOrder(checkedEntry);
+		this.reheap(checkedEntry.getPosition());
+		this.dropCancelledRoots();
 
 		return oldKey;
 	}
 
+	/**
+	 * Replaces the keys of many entries at once. Every entry and key is
+	 * checked before anything changes, then every key is written without
+	 * sifting. For a batch of k keys in a heap of n entries, if k log n is
+	 * less than n, only the paths from the changed entries towards the root
+	 * are repaired, in one bottom-up pass: the deepest nodes first, each
+	 * node at most once, and a node is only looked at while a change below
+	 * it is still moving up, so paths that meet share their work near the
+	 * root. That is O(k log n). Larger batches heapify the whole tree
+	 * bottom-up in O(n). In stable mode the entries take new sequence numbers
+	 * in the map's iteration order, so pass a LinkedHashMap to choose how
+	 * entries with equal keys leave.
+	 *
+	 * @param keys the new key for each entry
+	 * @throws InvalidEntryException if any entry is invalid or cancelled
+	 * @throws InvalidKeyException if any key is invalid
+	 */
+	public void replaceKeys(Map<Entry<K,V>,K> keys) throws InvalidEntryException, InvalidKeyException {
+		List<MyHeapEntry<K,V>> checkedEntries = new ArrayList<MyHeapEntry<K,V>>(keys.size());
+		List<K> newKeys = new ArrayList<K>(keys.size());
+		for (Map.Entry<Entry<K,V>,K> change : keys.entrySet()) {
+			MyHeapEntry<K,V> checkedEntry = this.checkAndConvertEntry(change.getKey());
+			if(_tree.isEmpty() || checkedEntry.getPosition() == null){
+				throw new InvalidEntryException("Entry is not in tree");
+			}
+			if(checkedEntry.isCancelled()){
+				throw new InvalidEntryException("Entry was cancelled");
+			}
+			K key = change.getValue();
+			this.checkQueryKey(key);
+			checkedEntries.add(checkedEntry);
+			newKeys.add(key);
+		}
+		if (checkedEntries.isEmpty()) {
+			return;
+		}
+		int size = _tree.size();
+		int height = 32 - Integer.numberOfLeadingZeros(size);
+		for (int i = 0; i < checkedEntries.size(); i++) {
+			checkedEntries.get(i).setKey(newKeys.get(i));
+			this.assignOrder(checkedEntries.get(i));
+		}
+		if ((long) checkedEntries.size() * height >= size) {
+			this.heapify(this.levelOrder());
+		} else {
+			this.repairPaths(checkedEntries, height);
+		}
+		this.dropCancelledRoots();
+	}
+
 	/** 
 	 * Replaces the value of the given entry.
 	 * This method must run in O(1) time.
@@ -206,6 +378,9 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 	 */
 	public V replaceValue(Entry<K,V> entry, V value) throws InvalidEntryException {		
 		MyHeapEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
+		if(checkedEntry.isCancelled()){
+			throw new InvalidEntryException("Entry was cancelled");
+		}
 
 		V oldValue = checkedEntry.getValue();
 		checkedEntry.setValue(value);
@@ -214,6 +389,132 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 	}
 	
 
+	/**
+	 * Cancels the given entry without restructuring the heap: the entry is
+	 * only marked, it no longer counts towards size(), and it is removed
+	 * once it reaches the root. When more than the compaction threshold of
+	 * the stored entries are cancelled, the heap is compacted.
+	 * This method runs in O(1) time unless the entry is at the root, which
+	 * costs a removeMin, or the heap is compacted.
+	 *
+	 * @param entry to be cancelled
+	 * @throws InvalidEntryException if the entry is not in the heap or is already cancelled
+	 */
+	public void cancel(Entry<K,V> entry) throws InvalidEntryException {
+		MyHeapEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
+		if(_tree.isEmpty() || checkedEntry.getPosition() == null){
+			throw new InvalidEntryException("Not in the tree");
+		}
+		if(checkedEntry.isCancelled()){
+			throw new InvalidEntryException("Entry was cancelled");
+		}
+		checkedEntry.setCancelled(true);
+		_cancelled++;
+		if(_cancelled > _compactionThreshold * _tree.size()) {
+			this.compact();
+		} else {
+			this.dropCancelledRoots();
+		}
+	}
+
+	/**
+	 * Removes every cancelled entry: the live entries are packed into the
+	 * front of the tree in level order, the emptied nodes are removed from
+	 * the end, and the heap is rebuilt bottom-up. Live entries stay valid.
+	 * This method runs in O(n) time.
+	 */
+	public void compact() {
+		if(_cancelled == 0) {
+			return;
+		}
+		List<Position<MyHeapEntry<K,V>>> level = this.levelOrder();
+		int live = 0;
+		for (Position<MyHeapEntry<K,V>> position : level) {
+			MyHeapEntry<K,V> element = position.element();
+			if (element.isCancelled()) {
+				element.setPosition(null);
+			} else {
+				this.place(level.get(live), element);
+				live++;
+			}
+		}
+		while (_tree.size() > live) {
+			_tree.remove();
+		}
+		_cancelled = 0;
+		this.heapify(level.subList(0, live));
+		_compactions++;
+	}
+
+	/**
+	 * Counts the entries whose key is less than the given key, without
+	 * removing anything. Heap order means that once a node's key is not less
+	 * than the given key, none of its descendants' keys are either, so the
+	 * search never goes below such a node. This method runs in O(m) time,
+	 * m being the number of entries counted plus cancelled ones passed over.
+	 *
+	 * @param key to compare the entries' keys against
+	 * @return the number of entries with a smaller key
+	 * @throws InvalidKeyException if the key is invalid
+	 */
+	public int countLessThan(K key) throws InvalidKeyException {
+		this.checkQueryKey(key);
+		return _tree.isEmpty() ? 0 : this.countLessThan(_tree.root(), key);
+	}
+
+	/**
+	 * Passes every entry whose key is less than the given key to the
+	 * visitor, in no particular order, pruning the same way countLessThan
+	 * does. The tree is walked recursively, so the heap allocates nothing.
+	 * The visitor must not modify the heap. This method runs in O(m) time,
+	 * m being the number of entries visited plus cancelled ones passed over.
+	 *
+	 * @param key to compare the entries' keys against
+	 * @param visitor which is given each entry with a smaller key
+	 * @throws InvalidKeyException if the key is invalid
+	 */
+	public void forEachLessThan(K key, Consumer<? super Entry<K,V>> visitor) throws InvalidKeyException {
+		this.checkQueryKey(key);
+		if (!_tree.isEmpty()) {
+			this.forEachLessThan(_tree.root(), key, visitor);
+		}
+	}
+
+	/**
+	 * Returns the entry with the k-th smallest key, without removing
+	 * anything. Only the smallest entries are explored: a small auxiliary
+	 * heap holds the frontier of nodes whose parents have been taken, and
+	 * each step takes its minimum and adds that node's children. This method
+	 * runs in O(k log k) time, plus the cancelled entries passed over.
+	 *
+	 * @param k the rank of the entry, where 1 is the minimum
+	 * @return the entry with the k-th smallest key
+	 * @throws IllegalArgumentException if k is less than 1 or greater than the size
+	 */
+	public Entry<K,V> kthSmallest(int k) throws IllegalArgumentException {
+		if (k < 1 || k > this.size()) {
+			throw new IllegalArgumentException("k must be between 1 and the size of the heap");
+		}
+		MyMinMaxHeap<K,Position<MyHeapEntry<K,V>>> frontier =
+				new MyMinMaxHeap<K,Position<MyHeapEntry<K,V>>>(_comparator, 2 * k);
+		frontier.insert(_tree.root().element().getKey(), _tree.root());
+		while (true) {
+			Position<MyHeapEntry<K,V>> position = frontier.removeMin().getValue();
+			if (!position.element().isCancelled()) {
+				k--;
+				if (k == 0) {
+					return position.element();
+				}
+			}
+			if (_tree.hasLeft(position)) {
+				frontier.insert(_tree.left(position).element().getKey(), _tree.left(position));
+			}
+			if (_tree.hasRight(position)) {
+				frontier.insert(_tree.right(position).element().getKey(), _tree.right(position));
+			}
+		}
+	}
+
 	/**
 	 * Determines whether a given entry is valid and converts it to a
 	 * MyHeapEntry. Don't change this method.
@@ -231,6 +532,241 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 		return (MyHeapEntry<K, V>) entry;
 	}
 
+	/**
+	 * Returns the live entries in level order, leaving out cancelled ones.
+	 * Without cancelled entries this is the order an array-backed heap would
+	 * store them in. The heap is not changed.
+	 * This method runs in O(n) time.
+	 *
+	 * @return a list of the live entries currently stored, in level order
+	 */
+	public List<Entry<K,V>> entries() {
+		List<Entry<K,V>> entries = new ArrayList<Entry<K,V>>(size());
+		for (Position<MyHeapEntry<K,V>> position : this.levelOrder()) {
+			if (!position.element().isCancelled()) {
+				entries.add(position.element());
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Adds an entry as the new last node without upheaping it, for restoring
+	 * a snapshot. In stable mode the entry gets back the sequence number it
+	 * had in the saved heap, and later entries are numbered after it. If the
+	 * saved entries leave gaps in the layout, restoreHeapOrder must be called
+	 * once every entry is added. This method runs in O(1) time.
+	 *
+	 * @param key of the entry to add
+	 * @param value of the entry to add
+	 * @param sequence the entry's sequence number in the saved heap, ignored outside stable mode
+	 * @return the entry created
+	 */
+	Entry<K,V> appendInLayoutOrder(K key, V value, long sequence) {
+		MyHeapEntry<K,V> appendedEntry = new MyHeapEntry<K,V>(key, value);
+		if (_stable) {
+			if (_packed && this.packs(key) && sequence < SEQUENCE_LIMIT) {
+				appendedEntry.setOrder(((Number) key).longValue() << 32 | sequence);
+			} else {
+				if (_packed) {
+					this.unpack();
+				}
+				appendedEntry.setOrder(sequence);
+			}
+			_sequence = Math.max(_sequence, sequence + 1);
+		}
+		appendedEntry.setPosition(_tree.add(appendedEntry));
+		return appendedEntry;
+	}
+
+	/**
+	 * Restores heap order after entries were added with appendInLayoutOrder,
+	 * with a bottom-up heapify. This method runs in O(n) time.
+	 */
+	void restoreHeapOrder() {
+		this.heapify(this.levelOrder());
+	}
+
+	/**
+	 * @return the positions of the tree in level order
+	 */
+	private List<Position<MyHeapEntry<K,V>>> levelOrder() {
+		List<Position<MyHeapEntry<K,V>>> level = new ArrayList<Position<MyHeapEntry<K,V>>>(_tree.size());
+		if (_tree.isEmpty()) {
+			return level;
+		}
+		level.add(_tree.root());
+		for (int i = 0; i < level.size(); i++) {
+			Position<MyHeapEntry<K,V>> position = level.get(i);
+			if (_tree.hasLeft(position)) {
+				level.add(_tree.left(position));
+			}
+			if (_tree.hasRight(position)) {
+				level.add(_tree.right(position));
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * @throws InvalidKeyException if the key could not be stored in this heap
+	 */
+	private void checkQueryKey(K key) throws InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is not a valid object type");
+		}
+	}
+
+	/**
+	 * @return the number of live entries in the subtree at the position with a key less than the given key
+	 */
+	private int countLessThan(Position<MyHeapEntry<K,V>> position, K key) {
+		if (this.compare(position.element().getKey(), key) >= 0) {
+			return 0;
+		}
+		int count = position.element().isCancelled() ? 0 : 1;
+		if (_tree.hasLeft(position)) {
+			count += this.countLessThan(_tree.left(position), key);
+		}
+		if (_tree.hasRight(position)) {
+			count += this.countLessThan(_tree.right(position), key);
+		}
+		return count;
+	}
+
+	/**
+	 * Gives the visitor every live entry in the subtree at the position with a key less than the given key
+	 */
+	private void forEachLessThan(Position<MyHeapEntry<K,V>> position, K key,
+			Consumer<? super Entry<K,V>> visitor) {
+		if (this.compare(position.element().getKey(), key) >= 0) {
+			return;
+		}
+		if (!position.element().isCancelled()) {
+			visitor.accept(position.element());
+		}
+		if (_tree.hasLeft(position)) {
+			this.forEachLessThan(_tree.left(position), key, visitor);
+		}
+		if (_tree.hasRight(position)) {
+			this.forEachLessThan(_tree.right(position), key, visitor);
+		}
+	}
+
+	/**
+	 * @param level which is every position of the tree in level order
+	 * Rebuilds heap order bottom-up by downheaping every node that has a child, last one first
+	 */
+	private void heapify(List<Position<MyHeapEntry<K,V>>> level) {
+		for (int i = level.size() / 2 - 1; i >= 0; i--) {
+			this.downHeap(level.get(i));
+		}
+	}
+
+	/**
+	 * @param changed which are the entries whose keys were written without sifting
+	 * @param height which is the number of levels of the tree
+	 * Restores heap order after the changed entries' keys were written, level by level from the deepest, so a
+	 * node is examined once the subtrees below it are heaps, and only while a changed entry is its child. Until a
+	 * node is examined, entries have only moved within the subtrees below it, so every unchanged entry in its
+	 * subtree was there before the batch and is no smaller than its own entry. A node holding a changed entry is
+	 * downheaped; a node holding an unchanged entry only has to move it past changed entries, which siftPastChanged
+	 * does while comparing with nothing else. Whenever a node ends up holding a changed entry, its parent is
+	 * examined on the next level up.
+	 */
+	private void repairPaths(List<MyHeapEntry<K,V>> changed, int height){
+		Set<MyHeapEntry<K,V>> changedSet = Collections.newSetFromMap(new IdentityHashMap<MyHeapEntry<K,V>,Boolean>());
+		Set<Position<MyHeapEntry<K,V>>> queued =
+				Collections.newSetFromMap(new IdentityHashMap<Position<MyHeapEntry<K,V>>,Boolean>());
+		List<List<Position<MyHeapEntry<K,V>>>> levels = new ArrayList<List<Position<MyHeapEntry<K,V>>>>(height);
+		for (int depth = 0; depth < height; depth++) {
+			levels.add(new ArrayList<Position<MyHeapEntry<K,V>>>());
+		}
+		for (MyHeapEntry<K,V> element : changed) {
+			changedSet.add(element);
+			queued.add(element.getPosition());
+			levels.get(this.depth(element.getPosition())).add(element.getPosition());
+		}
+		for (int depth = height - 1; depth >= 0; depth--) {
+			for (Position<MyHeapEntry<K,V>> position : levels.get(depth)) {
+				if (changedSet.contains(position.element())) {
+					this.downHeap(position);
+				} else {
+					this.siftPastChanged(position.element(), changedSet);
+				}
+				if (changedSet.contains(position.element()) && !_tree.isRoot(position)) {
+					Position<MyHeapEntry<K,V>> parent = _tree.parent(position);
+					if (queued.add(parent)) {
+						levels.get(depth - 1).add(parent);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param element which is an entry whose key the batch did not change
+	 * @param changedSet which are the entries whose keys the batch changed
+	 * Moves the unchanged entry down while a child holds a smaller changed entry. The unchanged entries below it
+	 * are all at least as large, so they are never compared.
+	 */
+	private void siftPastChanged(MyHeapEntry<K,V> element, Set<MyHeapEntry<K,V>> changedSet){
+		while (true) {
+			Position<MyHeapEntry<K,V>> position = element.getPosition();
+			Position<MyHeapEntry<K,V>> child = null;
+			if (_tree.hasLeft(position) && changedSet.contains(_tree.left(position).element())) {
+				child = _tree.left(position);
+			}
+			if (_tree.hasRight(position) && changedSet.contains(_tree.right(position).element())
+					&& (child == null || this.compare(_tree.right(position).element(), child.element()) < 0)) {
+				child = _tree.right(position);
+			}
+			if (child == null || this.compare(child.element(), element) >= 0) {
+				return;
+			}
+			this.swapElement(child.element(), element);
+		}
+	}
+
+	/**
+	 * @return the number of edges between the position and the root
+	 */
+	private int depth(Position<MyHeapEntry<K,V>> position){
+		int depth = 0;
+		for (Position<MyHeapEntry<K,V>> current = position; !_tree.isRoot(current); current = _tree.parent(current)) {
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * Removes cancelled entries from the root until the root is live or the tree is empty, so that min
+	 * never has to. Each cancelled entry is removed this way at most once, so the cost is amortized over
+	 * the cancels.
+	 */
+	private void dropCancelledRoots() {
+		while (!_tree.isEmpty() && _tree.root().element().isCancelled()) {
+			_cancelled--;
+			this.removeEntry(_tree.root().element());
+		}
+	}
+
+	/**
+	 * @param element which is removed from the tree
+	 * Moves the last entry into the element's position, removes the last node and restores heap order
+	 * at that position. The removed element no longer has a position.
+	 */
+	private void removeEntry(MyHeapEntry<K,V> element) {
+		Position<MyHeapEntry<K,V>> position = element.getPosition();
+		MyHeapEntry<K,V> lastEntry = _tree.returnLast().element();
+		_tree.remove();
+		element.setPosition(null);
+		if (lastEntry != element) {
+			this.place(position, lastEntry);
+			this.reheap(position);
+		}
+	}
+
 	/*
 	 * You may find it useful to add some helper methods here.
 	 * Think about actions that may be executed often in the 
@@ -243,33 +779,43 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 	 */
 
 	/**
-	 * @param pos which is the position whose contents are checked to be upHeaped
-	 * Handles the recognition and calls the upward swapping of entry details when a key is smaller than its parents
+	 * @param pos which is the position whose entry is checked to be upHeaped
+	 * Handles the recognition and calls the upward swapping of entries when a key is smaller than its parents
 	 */
 	public void upHeap(Position<MyHeapEntry<K,V>> pos){
+		if (_bottomUpSifting) {
+			this.holeUp(pos);
+			return;
+		}
 		Position<MyHeapEntry<K,V>> position = pos;
-		while(!_tree.isRoot(position) && _comparator.compare(position.element().getKey(),
-				_tree.parent(position).element().getKey()) < 0){
-			this.swapElement(position.element(), _tree.parent(position).element());
-			position = _tree.parent(position);
+		while (!_tree.isRoot(position)) {
+			Position<MyHeapEntry<K,V>> parent = _tree.parent(position);
+			if (this.compare(position.element(), parent.element()) >= 0) {
+				break;
+			}
+			this.swapElement(position.element(), parent.element());
+			position = parent;
 		}
 	}
 
 	/**
-	 * @param pos which is the position whose contents are checked to be downHeaped
-	 * Handles the recognition and calls the downward swapping of entry details when a key is larger than its children
+	 * @param pos which is the position whose entry is checked to be downHeaped
+	 * Handles the recognition and calls the downward swapping of entries when a key is larger than its children
 	 */
 	public void downHeap(Position<MyHeapEntry<K,V>> pos){
+		if (_bottomUpSifting) {
+			this.bottomUpDown(pos);
+			return;
+		}
 		Position<MyHeapEntry<K,V>> position = pos;
 			while (_tree.hasLeft(position)) {
 				Position<MyHeapEntry<K, V>> swapChild = _tree.left(position);
 				if (_tree.hasRight(position)) {
-					if (_comparator.compare(_tree.right(position).element().getKey(),
-							_tree.left(position).element().getKey()) < 0) {
+					if (this.compare(_tree.right(position).element(), _tree.left(position).element()) < 0) {
 						swapChild = _tree.right(position);
 					}
 				}
-				if (_comparator.compare(swapChild.element().getKey(), position.element().getKey()) < 0) {
+				if (this.compare(swapChild.element(), position.element()) < 0) {
 					this.swapElement(swapChild.element(), position.element());
 					position = swapChild;
 				} else {
@@ -279,18 +825,181 @@ public class MyHeap<K,V> implements HeapWrapper<K,V>, AdaptablePriorityQueue<K,V
 	}
 
 	/**
-	 * @param elementOne which is the first element whose contents are swapped
-	 * @param elementTwo which is the second element whose contents are swapped
-	 * Handles the actual mechanics of swapping entry details by switching keys and values of the entries
+	 * @param pos which is the position whose entry may be out of order in either direction
+	 * Restores heap order at a position after its entry changed. With bottom-up sifting, one
+	 * comparison against the parent decides the direction, so the entry is never sifted both ways.
 	 */
-	public void swapElement(MyHeapEntry<K,V> elementOne, MyHeapEntry<K,V> elementTwo){
-		K oneKey = elementOne.getKey();
-		V oneValue = elementOne.getValue();
+	private void reheap(Position<MyHeapEntry<K,V>> pos){
+		if (!_bottomUpSifting) {
+			this.upHeap(pos);
+			this.downHeap(pos);
+			return;
+		}
+		if (!_tree.isRoot(pos) && this.compare(pos.element(), _tree.parent(pos).element()) < 0) {
+			this.holeUp(pos);
+		} else {
+			this.bottomUpDown(pos);
+		}
+	}
 
-		elementOne.setKey(elementTwo.getKey());
-		elementOne.setValue(elementTwo.getValue());
-		elementTwo.setKey(oneKey);
-		elementTwo.setValue(oneValue);
+	/**
+	 * @param pos which is the position whose entry is moved up
+	 * Lifts the entry out of the position, moves each larger parent down into the hole,
+	 * and places the lifted entry where the hole ends up
+	 */
+	private void holeUp(Position<MyHeapEntry<K,V>> pos){
+		MyHeapEntry<K,V> lifted = pos.element();
+		Position<MyHeapEntry<K,V>> hole = pos;
+		while (!_tree.isRoot(hole)) {
+			Position<MyHeapEntry<K,V>> parent = _tree.parent(hole);
+			if (this.compare(lifted, parent.element()) >= 0) {
+				break;
+			}
+			this.place(hole, parent.element());
+			hole = parent;
+		}
+		this.place(hole, lifted);
+	}
+
+	/**
+	 * @param pos which is the position whose entry is moved down
+	 * Lifts the entry out of the position, moves the smaller child up into the hole
+	 * until the hole reaches a leaf, then sifts the lifted entry up from that leaf
+	 */
+	private void bottomUpDown(Position<MyHeapEntry<K,V>> pos){
+		MyHeapEntry<K,V> lifted = pos.element();
+		Position<MyHeapEntry<K,V>> hole = pos;
+		while (_tree.hasLeft(hole)) {
+			Position<MyHeapEntry<K,V>> child = _tree.left(hole);
+			if (_tree.hasRight(hole) && this.compare(_tree.right(hole).element(), child.element()) < 0) {
+				child = _tree.right(hole);
+			}
+			this.place(hole, child.element());
+			hole = child;
+		}
+		while (hole != pos) {
+			Position<MyHeapEntry<K,V>> parent = _tree.parent(hole);
+			if (this.compare(lifted, parent.element()) >= 0) {
+				break;
+			}
+			this.place(hole, parent.element());
+			hole = parent;
+		}
+		this.place(hole, lifted);
+	}
+
+	/**
+	 * @param position which receives the element
+	 * @param element which is stored at the position
+	 * Stores an entry at a position and records the position in the entry, so the entry stays a valid handle
+	 * wherever it moves
+	 */
+	private void place(Position<MyHeapEntry<K,V>> position, MyHeapEntry<K,V> element){
+		_tree.replace(position, element);
+		element.setPosition(position);
+	}
+
+	/**
+	 * @return the comparator's result on the two keys, counting the comparison
+	 */
+	private int compare(K keyOne, K keyTwo){
+		_comparisons++;
+		return _comparator.compare(keyOne, keyTwo);
+	}
+
+	/**
+	 * @return the heap's ordering of two entries, counting the comparison.
+	 * With packed ordering this compares the packed longs alone. Otherwise, in stable mode, entries whose keys
+	 * are equal are ordered by their sequence numbers.
+	 */
+	private int compare(MyHeapEntry<K,V> elementOne, MyHeapEntry<K,V> elementTwo){
+		if (_packed) {
+			_comparisons++;
+			return Long.compare(elementOne.getOrder(), elementTwo.getOrder());
+		}
+		int result = this.compare(elementOne.getKey(), elementTwo.getKey());
+		if (result != 0 || !_stable) {
+			return result;
+		}
+		return Long.compare(elementOne.getOrder(), elementTwo.getOrder());
 	}
-}
 
+	/**
+	 * @param element which is given the next sequence number
+	 * Records the stable order of an entry whose key was just set; does nothing outside stable mode.
+	 * With packed ordering the key goes in the high half, and a key that does not fit ends packing first.
+	 */
+	private void assignOrder(MyHeapEntry<K,V> element){
+		if (!_stable) {
+			return;
+		}
+		if (_packed) {
+			if (this.packs(element.getKey())) {
+				if (_sequence >= SEQUENCE_LIMIT) {
+					this.resequence();
+				}
+				element.setOrder(((Number) element.getKey()).longValue() << 32 | _sequence++);
+				return;
+			}
+			this.unpack();
+		}
+		element.setOrder(_sequence++);
+	}
+
+	/**
+	 * @return true if the key can be packed into the high half of an order
+	 */
+	private boolean packs(K key){
+		return key instanceof Integer || key instanceof Long && ((Long) key).longValue() == ((Long) key).intValue();
+	}
+
+	/**
+	 * @return the stable sequence number of an entry, taken from the low half of its order when it is packed
+	 */
+	long sequenceOf(MyHeapEntry<K,V> element){
+		return _packed ? element.getOrder() & (SEQUENCE_LIMIT - 1) : element.getOrder();
+	}
+
+	/**
+	 * Renumbers the stored entries 0, 1, 2, ... in their current packed order. Every entry keeps its place
+	 * relative to every other, so the heap stays in order without any sifting.
+	 */
+	private void resequence(){
+		List<MyHeapEntry<K,V>> elements = new ArrayList<MyHeapEntry<K,V>>(_tree.size());
+		for (Position<MyHeapEntry<K,V>> position : this.levelOrder()) {
+			elements.add(position.element());
+		}
+		Collections.sort(elements, new Comparator<MyHeapEntry<K,V>>() {
+			public int compare(MyHeapEntry<K,V> one, MyHeapEntry<K,V> two) {
+				return Long.compare(one.getOrder(), two.getOrder());
+			}
+		});
+		_sequence = 0;
+		for (MyHeapEntry<K,V> element : elements) {
+			element.setOrder((element.getOrder() & ~(SEQUENCE_LIMIT - 1)) | _sequence++);
+		}
+	}
+
+	/**
+	 * Switches from packed ordering to comparing keys and then sequence numbers, keeping each stored entry's
+	 * sequence number, so the order among equal keys is unchanged
+	 */
+	private void unpack(){
+		for (Position<MyHeapEntry<K,V>> position : this.levelOrder()) {
+			position.element().setOrder(this.sequenceOf(position.element()));
+		}
+		_packed = false;
+	}
+
+	/**
+	 * @param elementOne which is the first element to be swapped
+	 * @param elementTwo which is the second element to be swapped
+	 * Handles the actual mechanics of swapping two entries by exchanging their positions in the tree, so each
+	 * entry keeps its key, value, stable order and cancelled mark
+	 */
+	public void swapElement(MyHeapEntry<K,V> elementOne, MyHeapEntry<K,V> elementTwo){
+		Position<MyHeapEntry<K,V>> positionOne = elementOne.getPosition();
+		this.place(elementTwo.getPosition(), elementOne);
+		this.place(positionOne, elementTwo);
+	}
+}
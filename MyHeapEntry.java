@@ -20,6 +20,9 @@ public class MyHeapEntry<K,V> implements Entry<K,V> {
 	private K _key;
 	private V _value;
 	private Position<MyHeapEntry<K,V>> _position;
+	private int _index;
+	private long _order;
+	private boolean _cancelled;
 	/** 
 	 * Default constructor. You may wish to modify the parameters.
 	 */
@@ -57,7 +60,7 @@ public class MyHeapEntry<K,V> implements Entry<K,V> {
 	}
 
 	/**
-	 * set the position of the entry
+	 * set the position of the entry, or null once it has left the heap
 	 */
 	public void setPosition(Position<MyHeapEntry<K,V>> position) {
 		_position = position;
@@ -69,4 +72,48 @@ public class MyHeapEntry<K,V> implements Entry<K,V> {
 	public Position<MyHeapEntry<K, V>> getPosition() {
 		return _position;
 	}
+
+	/**
+	 * set the array index of the entry, for heaps that are backed by an array
+	 * instead of a linked tree
+	 */
+	public void setIndex(int index) {
+		_index = index;
+	}
+
+	/**
+	 * @return the array index that the entry is stored at
+	 */
+	public int getIndex() {
+		return _index;
+	}
+
+	/**
+	 * set the sequence number that orders the entry among equal keys, for
+	 * heaps that break ties first in, first out
+	 */
+	public void setOrder(long order) {
+		_order = order;
+	}
+
+	/**
+	 * @return the sequence number that orders the entry among equal keys
+	 */
+	public long getOrder() {
+		return _order;
+	}
+
+	/**
+	 * set whether the entry has been cancelled, for heaps that delete lazily
+	 */
+	public void setCancelled(boolean cancelled) {
+		_cancelled = cancelled;
+	}
+
+	/**
+	 * @return true if the entry has been cancelled
+	 */
+	public boolean isCancelled() {
+		return _cancelled;
+	}
 }
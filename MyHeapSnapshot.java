@@ -0,0 +1,268 @@
+package heap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import net.datastructures.*;
+
+/**
+ * Saves and restores heaps in a compact binary snapshot format. Entries are
+ * written in the heap's layout order (level order for MyHeap, array order
+ * for MyMinMaxHeap), so restoring only appends them back in the same order
+ * and the heap is valid as loaded, without re-heapifying. The one exception
+ * is a MyHeap with cancelled entries: they are left out of the snapshot,
+ * which can break heap order where they were, so such a snapshot is marked
+ * and heapified bottom-up once loaded, in O(n). A stable MyHeap stores each
+ * entry's sequence number, so the restored heap keeps its FIFO order among
+ * equal keys and numbers new entries after the saved ones.
+ *
+ * The file is a header (magic, version, heap kind, flags, entry count), then
+ * for each entry a length-prefixed key, a length-prefixed value (length -1
+ * for a null value) and, for a stable heap, the 8-byte sequence number, then
+ * a CRC32 of everything before it. Keys and values
+ * are converted by pluggable MyCodecs. Both directions stream through a
+ * FileChannel with a large direct buffer, and save writes to a temporary
+ * file that is moved over the target only once it is complete and forced to
+ * disk, so a crash never leaves a half-written snapshot behind.
+ */
+
+public class MyHeapSnapshot {
+
+	private static final int MAGIC = 0x48505331;
+	private static final int VERSION = 2;
+	private static final int KIND_HEAP = 0;
+	private static final int KIND_MIN_MAX_HEAP = 1;
+	private static final int FLAG_GAPS = 1;
+	private static final int FLAG_SEQUENCES = 2;
+	private static final int HEADER_SIZE = 24;
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private MyHeapSnapshot() {
+	}
+
+	/**
+	 * Writes a snapshot of the heap to the given file, replacing it. The heap
+	 * is not changed. This method runs in O(n) time.
+	 *
+	 * @param heap to be saved
+	 * @param keyCodec used to encode the keys
+	 * @param valueCodec used to encode the values
+	 * @param file to write the snapshot to
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static <K,V> void save(final MyHeap<K,V> heap, MyCodec<K> keyCodec, MyCodec<V> valueCodec, Path file)
+			throws IOException {
+		int flags = heap.getCancelledCount() > 0 ? FLAG_GAPS : 0;
+		ToLongFunction<Entry<K,V>> sequences = null;
+		if (heap.isStableOrdering()) {
+			flags |= FLAG_SEQUENCES;
+			sequences = new ToLongFunction<Entry<K,V>>() {
+				public long applyAsLong(Entry<K,V> entry) {
+					return heap.sequenceOf((MyHeapEntry<K,V>) entry);
+				}
+			};
+		}
+		write(KIND_HEAP, flags, heap.entries(), sequences, keyCodec, valueCodec, file);
+	}
+
+	/**
+	 * Writes a snapshot of the min-max heap to the given file, replacing it.
+	 * This method runs in O(n) time.
+	 *
+	 * @param heap to be saved
+	 * @param keyCodec used to encode the keys
+	 * @param valueCodec used to encode the values
+	 * @param file to write the snapshot to
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static <K,V> void save(MyMinMaxHeap<K,V> heap, MyCodec<K> keyCodec, MyCodec<V> valueCodec, Path file)
+			throws IOException {
+		write(KIND_MIN_MAX_HEAP, 0, heap.entries(), null, keyCodec, valueCodec, file);
+	}
+
+	/**
+	 * Restores a heap saved with save(MyHeap, ...). It is heapified only if
+	 * the saved heap had cancelled entries. A heap saved in stable mode comes
+	 * back in stable mode with its entries' sequence numbers.
+	 * This method runs in O(n) time.
+	 *
+	 * @param file holding the snapshot
+	 * @param comparator to be used for the restored heap's keys
+	 * @param keyCodec used to decode the keys
+	 * @param valueCodec used to decode the values
+	 * @return the restored heap
+	 * @throws IOException if the file cannot be read, is not a MyHeap snapshot, or fails its checksum
+	 */
+	public static <K,V> MyHeap<K,V> loadHeap(Path file, Comparator<K> comparator,
+			MyCodec<K> keyCodec, MyCodec<V> valueCodec) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MyRecordReader reader = openReader(channel);
+			if (readKind(reader) != KIND_HEAP) {
+				throw new IOException("Snapshot was written from a different kind of heap");
+			}
+			int flags = reader.require(4).getInt();
+			long count = readCount(reader);
+			boolean sequences = (flags & FLAG_SEQUENCES) != 0;
+			MyHeap<K,V> heap = new MyHeap<K,V>(comparator);
+			heap.setStableOrdering(sequences);
+			for (long i = 0; i < count; i++) {
+				K key = reader.readObject(keyCodec);
+				V value = reader.readObject(valueCodec);
+				heap.appendInLayoutOrder(key, value, sequences ? reader.require(8).getLong() : 0);
+			}
+			verifyChecksum(reader, channel);
+			if ((flags & FLAG_GAPS) != 0) {
+				heap.restoreHeapOrder();
+			}
+			return heap;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Restores a min-max heap saved with save(MyMinMaxHeap, ...). The chunk
+	 * directory of the backing store is sized from the header, so it is never
+	 * regrown. This method runs in O(n) time.
+	 *
+	 * @param file holding the snapshot
+	 * @param comparator to be used for the restored heap's keys
+	 * @param keyCodec used to decode the keys
+	 * @param valueCodec used to decode the values
+	 * @return the restored heap
+	 * @throws IOException if the file cannot be read, is not a MyMinMaxHeap snapshot, or fails its checksum
+	 */
+	public static <K,V> MyMinMaxHeap<K,V> loadMinMaxHeap(Path file, Comparator<K> comparator,
+			MyCodec<K> keyCodec, MyCodec<V> valueCodec) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MyRecordReader reader = openReader(channel);
+			if (readKind(reader) != KIND_MIN_MAX_HEAP || reader.require(4).getInt() != 0) {
+				throw new IOException("Snapshot was written from a different kind of heap");
+			}
+			long count = readCount(reader);
+			if (count > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot has too many entries: " + count);
+			}
+			MyMinMaxHeap<K,V> heap = new MyMinMaxHeap<K,V>(comparator, (int) count);
+			for (long i = 0; i < count; i++) {
+				K key = reader.readObject(keyCodec);
+				heap.appendInLayoutOrder(key, reader.readObject(valueCodec));
+			}
+			verifyChecksum(reader, channel);
+			return heap;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the header, the entries in the given order, each followed by its sequence number if
+	 * sequences is not null, and the checksum to a temporary file and then moves it over the target
+	 */
+	private static <K,V> void write(int kind, int flags, List<Entry<K,V>> entries,
+			ToLongFunction<Entry<K,V>> sequences, MyCodec<K> keyCodec, MyCodec<V> valueCodec, Path file)
+			throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			MyRecordWriter writer = new MyRecordWriter(channel, BUFFER_SIZE);
+			ByteBuffer header = writer.reserve(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(kind);
+			header.putInt(flags);
+			header.putLong(entries.size());
+			for (Entry<K,V> entry : entries) {
+				writer.writeObject(entry.getKey(), keyCodec);
+				writer.writeObject(entry.getValue(), valueCodec);
+				if (sequences != null) {
+					writer.reserve(8).putLong(sequences.applyAsLong(entry));
+				}
+			}
+			writer.flush();
+			ByteBuffer trailer = ByteBuffer.allocate(8);
+			trailer.putLong(writer.checksum());
+			trailer.flip();
+			while (trailer.hasRemaining()) {
+				channel.write(trailer);
+			}
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return a reader over everything in the snapshot except the trailing checksum
+	 * @throws IOException if the snapshot is too short to hold a header and a checksum
+	 */
+	private static MyRecordReader openReader(FileChannel channel) throws IOException {
+		long length = channel.size() - 8;
+		if (length < HEADER_SIZE) {
+			throw new IOException("Snapshot is truncated");
+		}
+		return new MyRecordReader(channel, length, BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads the start of the header, checking the magic number and version
+	 *
+	 * @return the kind of heap the snapshot was written from
+	 */
+	private static int readKind(MyRecordReader reader) throws IOException {
+		ByteBuffer header = reader.require(12);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a heap snapshot");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		return header.getInt();
+	}
+
+	/**
+	 * Reads the entry count at the end of the header, after the kind and flags
+	 *
+	 * @return the number of entries in the snapshot
+	 */
+	private static long readCount(MyRecordReader reader) throws IOException {
+		long count = reader.require(8).getLong();
+		if (count < 0) {
+			throw new IOException("Snapshot has a negative entry count");
+		}
+		return count;
+	}
+
+	/**
+	 * @throws IOException if bytes are left over or the stored checksum does not match
+	 */
+	private static void verifyChecksum(MyRecordReader reader, FileChannel channel) throws IOException {
+		if (reader.hasRemaining()) {
+			throw new IOException("Snapshot has trailing bytes");
+		}
+		ByteBuffer trailer = ByteBuffer.allocate(8);
+		long position = channel.size() - 8;
+		while (trailer.hasRemaining()) {
+			if (channel.read(trailer, position + trailer.position()) < 0) {
+				throw new IOException("Snapshot is truncated");
+			}
+		}
+		trailer.flip();
+		if (trailer.getLong() != reader.checksum()) {
+			throw new IOException("Snapshot checksum does not match");
+		}
+	}
+}
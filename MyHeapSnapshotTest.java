@@ -0,0 +1,209 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests saving and restoring heaps with MyHeapSnapshot.
+ */
+public class MyHeapSnapshotTest {
+
+	private static final Comparator<Long> LONG_COMPARATOR = new Comparator<Long>() {
+		public int compare(Long one, Long two) {
+			return one.compareTo(two);
+		}
+	};
+
+	/**
+	 * Tests that a MyHeap comes back with the same layout, without a key comparison, and still removes in order
+	 */
+	@Test
+	public void heapRoundTripTest() throws IOException {
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		Random random = new Random(29);
+		for (int i = 0; i < 1000; i++) {
+			heap.insert(random.nextInt(500), i % 7 == 0 ? null : "v" + i);
+		}
+		Path file = this.temporaryFile();
+		MyHeapSnapshot.save(heap, MyCodec.INTEGER, MyCodec.STRING, file);
+		MyHeap<Integer, String> restored = MyHeapSnapshot.loadHeap(file, new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.STRING);
+
+		assertThat(restored.getComparisons(), is(0L));
+		assertThat(this.keysOf(restored.entries()), is(this.keysOf(heap.entries())));
+		int previous = Integer.MIN_VALUE;
+		while (!restored.isEmpty()) {
+			int key = restored.removeMin().getKey();
+			assertTrue(key >= previous);
+			previous = key;
+		}
+	}
+
+	/**
+	 * Tests that a MyHeap with cancelled entries is saved without them and restored in heap order, leaving the
+	 * saved heap unchanged
+	 */
+	@Test
+	public void cancelledHeapRoundTripTest() throws IOException {
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setCompactionThreshold(1);
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		Random random = new Random(30);
+		for (int i = 0; i < 200; i++) {
+			entries.add(heap.insert(random.nextInt(500), "v" + i));
+		}
+		// the live entries alone in level order are not a valid heap, since the gaps shift them up a level
+		for (int i = 1; i < 200; i += 3) {
+			heap.cancel(entries.get(i));
+		}
+		int cancelled = heap.getCancelledCount();
+		Path file = this.temporaryFile();
+		MyHeapSnapshot.save(heap, MyCodec.INTEGER, MyCodec.STRING, file);
+		assertThat(heap.getCancelledCount(), is(cancelled));
+		MyHeap<Integer, String> restored = MyHeapSnapshot.loadHeap(file, new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.STRING);
+
+		assertThat(restored.size(), is(heap.size()));
+		while (!heap.isEmpty()) {
+			assertThat(restored.removeMin().getKey(), is(heap.removeMin().getKey()));
+		}
+		assertTrue(restored.isEmpty());
+	}
+
+	/**
+	 * Tests that a stable heap comes back in stable mode with the same layout, without a key comparison, with equal
+	 * keys still first in, first out, and with new entries numbered after the restored ones
+	 */
+	@Test
+	public void stableHeapRoundTripTest() throws IOException {
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setStableOrdering(true);
+		Random random = new Random(40);
+		for (int i = 0; i < 500; i++) {
+			heap.insert(random.nextInt(10), Integer.toString(i));
+		}
+		heap.replaceKey(heap.min(), 5);
+		Path file = this.temporaryFile();
+		MyHeapSnapshot.save(heap, MyCodec.INTEGER, MyCodec.STRING, file);
+		MyHeap<Integer, String> restored = MyHeapSnapshot.loadHeap(file, new IntegerComparator(),
+				MyCodec.INTEGER, MyCodec.STRING);
+
+		assertTrue(restored.isStableOrdering());
+		assertThat(restored.getComparisons(), is(0L));
+		assertThat(this.keysOf(restored.entries()), is(this.keysOf(heap.entries())));
+		heap.insert(5, "new");
+		restored.insert(5, "new");
+		while (!heap.isEmpty()) {
+			assertThat(restored.removeMin().getValue(), is(heap.removeMin().getValue()));
+		}
+		assertTrue(restored.isEmpty());
+	}
+
+	/**
+	 * Tests that a MyMinMaxHeap comes back valid at both ends, including values larger than the I/O buffer
+	 */
+	@Test
+	public void minMaxHeapRoundTripTest() throws IOException {
+		MyMinMaxHeap<Long, String> heap = new MyMinMaxHeap<Long, String>(LONG_COMPARATOR);
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < (1 << 20); i++) {
+			large.append('x');
+		}
+		heap.insert(5L, large.toString());
+		for (long i = 0; i < 300; i++) {
+			heap.insert(i * 31 % 101, "v" + i);
+		}
+		Path file = this.temporaryFile();
+		MyHeapSnapshot.save(heap, MyCodec.LONG, MyCodec.STRING, file);
+		MyMinMaxHeap<Long, String> restored = MyHeapSnapshot.loadMinMaxHeap(file, LONG_COMPARATOR,
+				MyCodec.LONG, MyCodec.STRING);
+
+		assertThat(restored.size(), is(301));
+		assertThat(restored.min().getKey(), is(0L));
+		assertThat(restored.max().getKey(), is(100L));
+		boolean foundLarge = false;
+		for (Entry<Long, String> entry : restored.entries()) {
+			foundLarge |= entry.getValue().length() == (1 << 20);
+		}
+		assertTrue(foundLarge);
+	}
+
+	/**
+	 * Tests that the string codec's size matches the bytes it writes, for one to four byte characters and an
+	 * unpaired surrogate, and that the strings read back
+	 */
+	@Test
+	public void stringCodecTest() {
+		String[] strings = {"", "plain", "caf\u00e9", "\u20ac100", "\ud83d\ude00 smile"};
+		for (String string : strings) {
+			ByteBuffer buffer = ByteBuffer.allocate(64);
+			MyCodec.STRING.write(string, buffer);
+			assertThat(MyCodec.STRING.size(string), is(buffer.position()));
+			buffer.flip();
+			assertThat(MyCodec.STRING.read(buffer, buffer.limit()), is(string));
+		}
+		for (String broken : new String[] {"broken \ud83d", "\ude00", "\ude00\ud83d"}) {
+			ByteBuffer buffer = ByteBuffer.allocate(64);
+			MyCodec.STRING.write(broken, buffer);
+			assertThat(MyCodec.STRING.size(broken), is(buffer.position()));
+		}
+	}
+
+	/**
+	 * Tests that a flipped byte is caught by the checksum
+	 */
+	@Test(expected = IOException.class)
+	public void corruptSnapshotTest() throws IOException {
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.insert(1, "A");
+		heap.insert(2, "B");
+		Path file = this.temporaryFile();
+		MyHeapSnapshot.save(heap, MyCodec.INTEGER, MyCodec.STRING, file);
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+		channel.write(ByteBuffer.wrap(new byte[] {(byte) 'Z'}), 28);
+		channel.close();
+
+		MyHeapSnapshot.loadHeap(file, new IntegerComparator(), MyCodec.INTEGER, MyCodec.STRING);
+	}
+
+	/**
+	 * Tests that a MyHeap snapshot cannot be loaded as a MyMinMaxHeap, whose layout rules differ
+	 */
+	@Test(expected = IOException.class)
+	public void wrongKindTest() throws IOException {
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.insert(1, "A");
+		Path file = this.temporaryFile();
+		MyHeapSnapshot.save(heap, MyCodec.INTEGER, MyCodec.STRING, file);
+
+		MyHeapSnapshot.loadMinMaxHeap(file, new IntegerComparator(), MyCodec.INTEGER, MyCodec.STRING);
+	}
+
+	private Path temporaryFile() throws IOException {
+		Path file = Files.createTempFile("heap", ".snapshot");
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	private <K,V> List<K> keysOf(List<Entry<K,V>> entries) {
+		List<K> keys = new ArrayList<K>();
+		for (Entry<K,V> entry : entries) {
+			keys.add(entry.getKey());
+		}
+		return keys;
+	}
+}
@@ -7,7 +7,14 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
 
 import net.datastructures.*;
 import org.junit.Ignore;
@@ -256,10 +263,10 @@ public class MyHeapTest {
 		Entry<Integer, String> entry3 = heap.insert(3, "GHI");
 		Entry<Integer, String> entry4 = heap.insert(4, "JKL");
 
-		assertTrue(heap.removeMin().getKey() == 1);
-		assertTrue(heap.removeMin() == entry3);
-		assertTrue(heap.removeMin() == entry2);
 		assertTrue(heap.removeMin() == entry);
+		assertTrue(heap.removeMin() == entry2);
+		assertTrue(heap.removeMin() == entry3);
+		assertTrue(heap.removeMin() == entry4);
 	}
 
 	/**
@@ -287,11 +294,16 @@ public class MyHeapTest {
 		Entry<Integer, String> entry6 = heap.insert(1, "PQR");
 		Entry<Integer, String> entry7 = heap.insert(55, "STU");
 
-		//These are testing the helper swapping method, as the key value should switch during the reordering of the heap
-		assertTrue(heap.remove(entry2).getValue() == "ABC");
-		assertTrue(heap.remove(entry3) == entry6);
+		//Entries are moved around the tree whole, so remove returns the given entry with its own key and value
+		assertTrue(heap.remove(entry2) == entry2);
+		assertTrue(entry2.getKey() == 6 && entry2.getValue() == "DEF");
+		assertTrue(heap.remove(entry3) == entry3);
 		assertTrue(heap.remove(entry5).getKey() == 99);
-		assertTrue(heap.remove(entry4).getValue() == "STU");
+		assertTrue(heap.remove(entry4).getValue() == "JKL");
+		assertTrue(heap.removeMin() == entry6);
+		assertTrue(heap.removeMin() == entry);
+		assertTrue(heap.removeMin() == entry7);
+		assertTrue(heap.isEmpty());
 	}
 
 	/**
@@ -329,19 +341,23 @@ public class MyHeapTest {
 		Entry<Integer, String> entry6 = heap.insert(1, "PQR");
 		Entry<Integer, String> entry7 = heap.insert(55, "STU");
 
-		assertTrue(entry2.getKey() == 12);
+		assertTrue(entry2.getKey() == 6);
 		heap.replaceKey(entry2, 30);
-		//This is testing the downheap, as the 30 key should shift down the properties of entry2 to entry4
-		assertTrue(entry2.getKey() == 29);
-		assertTrue(entry4.getKey() == 30);
-		assertTrue(entry.getKey() == 1);
-		heap.replaceKey(entry, 9);
-		assertTrue(entry.getKey() == 6);
-		//Testing 0 and negative numbers
-		heap.replaceKey(entry, 0);
-		assertTrue(entry.getKey() == 0);
-		heap.replaceKey(entry, -50);
-		assertTrue(entry.getKey() == -50);
+		//This is testing the downheap, as the entry keeps its new key wherever it moves
+		assertTrue(entry2.getKey() == 30);
+		assertTrue(heap.min() == entry6);
+		heap.replaceKey(entry6, 40);
+		assertTrue(heap.min() == entry);
+		//Testing 0 and negative numbers, which upheap the entry to the root
+		heap.replaceKey(entry5, 0);
+		assertTrue(heap.min() == entry5);
+		heap.replaceKey(entry4, -50);
+		assertTrue(heap.min() == entry4);
+		int[] expected = {-50, 0, 12, 18, 30, 40, 55};
+		for (int key : expected) {
+			assertTrue(heap.removeMin().getKey() == key);
+		}
+		assertTrue(entry3.getValue() == "GHI" && entry7.getValue() == "STU");
 	}
 
 	/**
@@ -374,6 +390,536 @@ public class MyHeapTest {
 		assertTrue(entry.getValue() == "");
 	}
 
-}
+	/**
+	 * Tests that bottom-up sifting keeps the heap in order through inserts, removes and key replacements
+	 */
+	@Test
+	public void bottomUpSiftingOrderTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setBottomUpSifting(true);
+		Random random = new Random(32);
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		for (int i = 0; i < 200; i++) {
+			entries.add(heap.insert(random.nextInt(100), "v" + i));
+		}
+		for (int i = 0; i < 50; i++) {
+			heap.replaceKey(entries.get(random.nextInt(entries.size())), random.nextInt(100));
+		}
+		for (int i = 0; i < 20; i++) {
+			heap.remove(entries.get(50 + i));
+		}
+
+		assertThat(heap.size(), is(180));
+		int previous = Integer.MIN_VALUE;
+		while (!heap.isEmpty()) {
+			int key = heap.removeMin().getKey();
+			assertTrue(key >= previous);
+			previous = key;
+		}
+	}
+
+	/**
+	 * Tests that bottom-up sifting makes fewer comparisons than the classic sift when draining the heap
+	 */
+	@Test
+	public void bottomUpSiftingComparisonsTest(){
+		MyHeap<Integer, String> classic = new MyHeap<Integer, String>(new IntegerComparator());
+		MyHeap<Integer, String> bottomUp = new MyHeap<Integer, String>(new IntegerComparator());
+		bottomUp.setBottomUpSifting(true);
+		Random random = new Random(7);
+		for (int i = 0; i < 4096; i++) {
+			int key = random.nextInt(1000000);
+			classic.insert(key, "v");
+			bottomUp.insert(key, "v");
+		}
+		classic.resetComparisons();
+		bottomUp.resetComparisons();
+		while (!classic.isEmpty()) {
+			assertThat(bottomUp.removeMin().getKey(), is(classic.removeMin().getKey()));
+		}
+
+		assertTrue(bottomUp.getComparisons() * 10 < classic.getComparisons() * 7);
+	}
+
+	/**
+	 * Tests that cancelled entries are skipped by min and removeMin and do not count towards the size
+	 */
+	@Test
+	public void cancelStandardTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setCompactionThreshold(1);
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		for (int i = 0; i < 10; i++) {
+			entries.add(heap.insert(i, "v" + i));
+		}
+		// cancelled below the root, so they stay stored until they surface
+		for (Entry<Integer, String> entry : entries) {
+			if (entry.getKey() % 2 == 1) {
+				heap.cancel(entry);
+			}
+		}
+		assertThat(heap.size(), is(5));
+		assertThat(heap.getCancelledCount(), is(5));
+		assertThat(heap.removeMin().getKey(), is(0));
+		assertThat(heap.removeMin().getKey(), is(2));
+		assertThat(heap.removeMin().getKey(), is(4));
+		assertThat(heap.min().getKey(), is(6));
+		// cancelled at the root, so it is removed straight away along with the cancelled 7 below it
+		heap.cancel(heap.min());
+		assertThat(heap.size(), is(1));
+		assertThat(heap.getCancelledCount(), is(1));
+		assertThat(heap.removeMin().getKey(), is(8));
+		assertTrue(heap.isEmpty());
+		assertThat(heap.getCancelledCount(), is(0));
+		assertThat(heap.getCompactions(), is(0L));
+	}
+
+	/**
+	 * Tests that cancelling an entry after it was swapped through the heap cancels that entry's own key and value
+	 */
+	@Test
+	public void cancelSwappedEntryTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setCompactionThreshold(1);
+		Entry<Integer, String> ten = heap.insert(10, "ten");
+		Entry<Integer, String> one = heap.insert(1, "one");
+		Entry<Integer, String> five = heap.insert(5, "five");
+		Entry<Integer, String> seven = heap.insert(7, "seven");
+		// ten was swapped down by one and again by seven
+		heap.cancel(ten);
+		assertThat(heap.size(), is(3));
+		assertTrue(heap.min() == one);
+		heap.cancel(one);
+		assertTrue(heap.min() == five);
+		assertThat(heap.removeMin().getValue(), is("five"));
+		assertThat(heap.removeMin().getValue(), is("seven"));
+		assertTrue(heap.isEmpty());
+		assertTrue(heap.checkAndConvertEntry(ten).isCancelled());
+		assertThat(ten.getKey(), is(10));
+		assertTrue(seven.getValue() == "seven");
+
+		heap.setBottomUpSifting(true);
+		Entry<Integer, String> nine = heap.insert(9, "nine");
+		heap.insert(3, "three");
+		heap.insert(6, "six");
+		heap.replaceKey(nine, 8);
+		heap.cancel(nine);
+		assertThat(heap.removeMin().getValue(), is("three"));
+		assertThat(heap.removeMin().getValue(), is("six"));
+		assertTrue(heap.isEmpty());
+	}
+
+	/**
+	 * Tests that min and entries leave cancelled entries stored until a mutating operation removes them
+	 */
+	@Test
+	public void readPathsTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setCompactionThreshold(1);
+		for (int i = 0; i < 8; i++) {
+			Entry<Integer, String> entry = heap.insert(i, "v" + i);
+			if (i % 3 == 2) {
+				heap.cancel(entry);
+			}
+		}
+		assertThat(heap.getCancelledCount(), is(2));
+		assertThat(heap.entries().size(), is(6));
+		assertThat(heap.min().getKey(), is(0));
+		assertThat(heap.getCancelledCount(), is(2));
+		assertThat(heap.getCompactions(), is(0L));
+		heap.compact();
+		assertThat(heap.getCancelledCount(), is(0));
+		assertThat(heap.entries().size(), is(6));
+	}
+
+	/**
+	 * Tests that crossing the compaction threshold compacts the heap and keeps it in order
+	 */
+	@Test
+	public void compactionTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setCompactionThreshold(0.25);
+		Random random = new Random(34);
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		for (int i = 0; i < 400; i++) {
+			entries.add(heap.insert(random.nextInt(1000), "v"));
+		}
+		for (int i = 0; i < 300; i++) {
+			heap.cancel(entries.get(i));
+		}
+
+		assertTrue(heap.getCompactions() > 0);
+		assertTrue(heap.getCancelledFraction() <= 0.25);
+		int size = heap.size();
+		int previous = Integer.MIN_VALUE;
+		int removed = 0;
+		while (!heap.isEmpty()) {
+			int key = heap.removeMin().getKey();
+			assertTrue(key >= previous);
+			previous = key;
+			removed++;
+		}
+		assertThat(removed, is(size));
+		heap.compact();
+		assertThat(heap.getCancelledCount(), is(0));
+		assertTrue(heap.getCancelledFraction() == 0);
+	}
+
+	/**
+	 * Tests that an Invalid Entry Exception is raised when a cancelled entry is cancelled or removed again
+	 */
+	@Test(expected = InvalidEntryException.class)
+	public void cancelExceptionTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setCompactionThreshold(1);
+		heap.insert(1, "a");
+		Entry<Integer, String> entry = heap.insert(2, "b");
+		heap.cancel(entry);
+		heap.remove(entry);
+	}
+
+	/**
+	 * Tests that a small batch of key changes repairs the heap while comparing far fewer keys than a heapify
+	 */
+	@Test
+	public void replaceKeysSmallBatchTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		Random random = new Random(35);
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		for (int i = 0; i < 4096; i++) {
+			entries.add(heap.insert(random.nextInt(100000), "v"));
+		}
+		Map<Entry<Integer, String>, Integer> keys = new HashMap<Entry<Integer, String>, Integer>();
+		for (int i = 0; i < 20; i++) {
+			keys.put(entries.get(random.nextInt(entries.size())), random.nextInt(100000));
+		}
+		heap.resetComparisons();
+		heap.replaceKeys(keys);
+
+		assertTrue(heap.getComparisons() < 4096);
+		for (Map.Entry<Entry<Integer, String>, Integer> change : keys.entrySet()) {
+			assertThat(change.getKey().getKey(), is(change.getValue()));
+		}
+		this.assertDrainsInOrder(heap, 4096);
+	}
+
+	/**
+	 * Tests that repairing the paths of a small batch, in both sifting modes, leaves the same keys as one
+	 * replaceKey per entry while comparing fewer keys
+	 */
+	@Test
+	public void replaceKeysPathRepairTest(){
+		for (boolean bottomUp : new boolean[] {false, true}) {
+			MyHeap<Integer, String> batched = new MyHeap<Integer, String>(new IntegerComparator());
+			MyHeap<Integer, String> separate = new MyHeap<Integer, String>(new IntegerComparator());
+			batched.setBottomUpSifting(bottomUp);
+			separate.setBottomUpSifting(bottomUp);
+			Random random = new Random(37);
+			List<Entry<Integer, String>> batchedEntries = new ArrayList<Entry<Integer, String>>();
+			List<Entry<Integer, String>> separateEntries = new ArrayList<Entry<Integer, String>>();
+			for (int i = 0; i < 1 << 14; i++) {
+				int key = random.nextInt(1000000);
+				batchedEntries.add(batched.insert(key, "v"));
+				separateEntries.add(separate.insert(key, "v"));
+			}
+			Map<Entry<Integer, String>, Integer> keys = new LinkedHashMap<Entry<Integer, String>, Integer>();
+			List<Integer> changed = new ArrayList<Integer>();
+			for (int i = 0; i < 200; i++) {
+				int index = random.nextInt(batchedEntries.size());
+				int key = random.nextInt(1000000);
+				keys.put(batchedEntries.get(index), key);
+				changed.add(index);
+				changed.add(key);
+			}
+			batched.resetComparisons();
+			batched.replaceKeys(keys);
+			separate.resetComparisons();
+			for (int i = 0; i < changed.size(); i += 2) {
+				separate.replaceKey(separateEntries.get(changed.get(i)), changed.get(i + 1));
+			}
+
+			assertTrue(batched.getComparisons() < separate.getComparisons());
+			while (!separate.isEmpty()) {
+				assertThat(batched.removeMin().getKey(), is(separate.removeMin().getKey()));
+			}
+			assertTrue(batched.isEmpty());
+		}
+	}
+
+	/**
+	 * Tests that in stable mode a batch of equal keys leaves in the map's iteration order, for both batch sizes
+	 */
+	@Test
+	public void replaceKeysStableOrderTest(){
+		for (int batch : new int[] {3, 40}) {
+			MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+			heap.setStableOrdering(true);
+			List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+			for (int i = 0; i < 64; i++) {
+				entries.add(heap.insert(100 + i, "v" + i));
+			}
+			Map<Entry<Integer, String>, Integer> keys = new LinkedHashMap<Entry<Integer, String>, Integer>();
+			for (int i = batch - 1; i >= 0; i--) {
+				keys.put(entries.get(i * 64 / batch), 7);
+			}
+			heap.replaceKeys(keys);
+
+			for (Entry<Integer, String> entry : keys.keySet()) {
+				assertTrue(heap.removeMin() == entry);
+			}
+			this.assertDrainsInOrder(heap, 64 - batch);
+		}
+	}
+
+	/**
+	 * Tests that a large batch of key changes, including the root and the last entry, leaves the heap in order
+	 */
+	@Test
+	public void replaceKeysLargeBatchTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setBottomUpSifting(true);
+		Random random = new Random(36);
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		for (int i = 0; i < 1000; i++) {
+			entries.add(heap.insert(random.nextInt(100000), "v"));
+		}
+		Map<Entry<Integer, String>, Integer> keys = new HashMap<Entry<Integer, String>, Integer>();
+		for (int i = 0; i < 400; i++) {
+			keys.put(entries.get(random.nextInt(entries.size())), random.nextInt(100000));
+		}
+		keys.put(heap.min(), 100000);
+		keys.put(entries.get(entries.size() - 1), -1);
+		heap.replaceKeys(keys);
 
+		assertThat(heap.min().getKey(), is(-1));
+		this.assertDrainsInOrder(heap, 1000);
+	}
 
+	/**
+	 * Tests that an invalid key in a batch raises an Invalid Key Exception before any key is changed
+	 */
+	@Test
+	public void replaceKeysExceptionTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		Entry<Integer, String> one = heap.insert(1, "a");
+		Entry<Integer, String> two = heap.insert(2, "b");
+		Map<Entry<Integer, String>, Integer> keys = new LinkedHashMap<Entry<Integer, String>, Integer>();
+		keys.put(one, 5);
+		keys.put(two, null);
+		try {
+			heap.replaceKeys(keys);
+			fail("expected an InvalidKeyException");
+		} catch (InvalidKeyException e) {
+			assertThat(one.getKey(), is(1));
+			assertThat(two.getKey(), is(2));
+		}
+	}
+
+	/**
+	 * Tests countLessThan and kthSmallest against a sorted copy of the keys, with some entries cancelled
+	 */
+	@Test
+	public void orderStatisticsTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setCompactionThreshold(1);
+		Random random = new Random(38);
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		for (int i = 0; i < 500; i++) {
+			entries.add(heap.insert(random.nextInt(300), "v"));
+		}
+		Collections.shuffle(entries, random);
+		for (int i = 0; i < 100; i++) {
+			heap.cancel(entries.get(i));
+		}
+		List<Integer> keys = new ArrayList<Integer>();
+		for (Entry<Integer, String> entry : entries.subList(100, entries.size())) {
+			keys.add(entry.getKey());
+		}
+		Collections.sort(keys);
+
+		for (int bound = -1; bound <= 301; bound += 7) {
+			int expected = 0;
+			while (expected < keys.size() && keys.get(expected) < bound) {
+				expected++;
+			}
+			assertThat(heap.countLessThan(bound), is(expected));
+		}
+		for (int k = 1; k <= keys.size(); k += 13) {
+			assertThat(heap.kthSmallest(k).getKey(), is(keys.get(k - 1)));
+		}
+		assertThat(heap.kthSmallest(keys.size()).getKey(), is(keys.get(keys.size() - 1)));
+		assertThat(heap.size(), is(keys.size()));
+	}
+
+	/**
+	 * Tests that forEachLessThan visits exactly the smaller entries and prunes everything below the boundary
+	 */
+	@Test
+	public void forEachLessThanTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		for (int i = 0; i < 4096; i++) {
+			heap.insert(i, "v" + i);
+		}
+		final List<Integer> visited = new ArrayList<Integer>();
+		heap.resetComparisons();
+		heap.forEachLessThan(10, new Consumer<Entry<Integer, String>>() {
+			public void accept(Entry<Integer, String> entry) {
+				visited.add(entry.getKey());
+			}
+		});
+
+		Collections.sort(visited);
+		assertThat(visited, is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+		// each visited node and each pruned child costs one comparison
+		assertTrue(heap.getComparisons() <= 2 * 10 + 1);
+	}
+
+	/**
+	 * Tests that an Illegal Argument Exception is raised for a rank greater than the size
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void kthSmallestExceptionTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.insert(1, "a");
+		heap.kthSmallest(2);
+	}
+
+	/**
+	 * Tests that stable ordering returns entries with equal keys first in, first out, in both sifting modes
+	 */
+	@Test
+	public void stableOrderingTest(){
+		for (boolean bottomUp : new boolean[] {false, true}) {
+			MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+			heap.setStableOrdering(true);
+			heap.setBottomUpSifting(bottomUp);
+			Random random = new Random(40);
+			List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+			for (int i = 0; i < 1000; i++) {
+				entries.add(heap.insert(random.nextInt(5) - 2, Integer.toString(i)));
+			}
+			for (int i = 0; i < 50; i++) {
+				heap.remove(entries.get(900 + i));
+			}
+
+			int previousKey = Integer.MIN_VALUE;
+			int previousValue = -1;
+			while (!heap.isEmpty()) {
+				Entry<Integer, String> entry = heap.removeMin();
+				int value = Integer.parseInt(entry.getValue());
+				if (entry.getKey() == previousKey) {
+					assertTrue(value > previousValue);
+				} else {
+					assertTrue(entry.getKey() > previousKey);
+				}
+				previousKey = entry.getKey();
+				previousValue = value;
+			}
+		}
+	}
+
+	/**
+	 * Tests that an entry whose key is replaced goes behind the entries that already had the new key
+	 */
+	@Test
+	public void stableReplaceKeyTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.setStableOrdering(true);
+		heap.insert(5, "first");
+		heap.insert(1, "moved");
+		heap.insert(5, "second");
+		heap.replaceKey(heap.min(), 5);
+		heap.insert(5, "third");
+
+		assertThat(heap.removeMin().getValue(), is("first"));
+		assertThat(heap.removeMin().getValue(), is("second"));
+		assertThat(heap.removeMin().getValue(), is("moved"));
+		assertThat(heap.removeMin().getValue(), is("third"));
+	}
+
+	/**
+	 * Tests that stable ordering still orders keys by the heap's comparator and only breaks ties by insertion
+	 */
+	@Test
+	public void stableOrderingComparatorTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new Comparator<Integer>() {
+			public int compare(Integer one, Integer two) {
+				return two.compareTo(one);
+			}
+		});
+		heap.setStableOrdering(true);
+		heap.insert(1, "low");
+		heap.insert(9, "first");
+		heap.insert(5, "middle");
+		heap.insert(9, "second");
+
+		assertThat(heap.removeMin().getValue(), is("first"));
+		assertThat(heap.removeMin().getValue(), is("second"));
+		assertThat(heap.removeMin().getValue(), is("middle"));
+		assertThat(heap.removeMin().getValue(), is("low"));
+	}
+
+	/**
+	 * Tests that natural-order Integer and Long keys are packed with their sequence numbers, that a Long key outside
+	 * the int range switches back to comparing keys without reordering ties, and that other comparators never pack
+	 */
+	@Test
+	public void packedOrderingTest(){
+		MyHeap<Integer, String> packed = new MyHeap<Integer, String>(new IntegerComparator());
+		packed.setStableOrdering(true);
+		assertTrue(packed.isPackedOrdering());
+		for (int i = 0; i < 100; i++) {
+			packed.insert(i % 3 - 1, Integer.toString(i));
+		}
+		for (int first = 0; first < 3; first++) {
+			for (int i = first; i < 100; i += 3) {
+				assertThat(packed.removeMin().getValue(), is(Integer.toString(i)));
+			}
+		}
+
+		MyHeap<Long, String> heap = new MyHeap<Long, String>(Comparator.<Long>naturalOrder());
+		heap.setStableOrdering(true);
+		assertTrue(heap.isPackedOrdering());
+		for (int i = 0; i < 20; i++) {
+			heap.insert((long) (i % 2), Integer.toString(i));
+		}
+		heap.insert(1L << 40, "large");
+		heap.insert(-1L << 40, "small");
+		assertFalse(heap.isPackedOrdering());
+		heap.insert(0L, "20");
+		assertThat(heap.removeMin().getValue(), is("small"));
+		for (int i : new int[] {0, 2, 4, 6, 8, 10, 12, 14, 16, 18, 20, 1, 3, 5, 7, 9, 11, 13, 15, 17, 19}) {
+			assertThat(heap.removeMin().getValue(), is(Integer.toString(i)));
+		}
+		assertThat(heap.removeMin().getValue(), is("large"));
+
+		MyHeap<Integer, String> reversed = new MyHeap<Integer, String>(new IntegerComparator() {
+			public int compare(Integer one, Integer two) {
+				return super.compare(two, one);
+			}
+		});
+		reversed.setStableOrdering(true);
+		assertFalse(reversed.isPackedOrdering());
+	}
+
+	/**
+	 * Tests that an Illegal State Exception is raised when switching stable ordering on a non-empty heap
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void stableOrderingExceptionTest(){
+		MyHeap<Integer, String> heap = new MyHeap<Integer, String>(new IntegerComparator());
+		heap.insert(1, "a");
+		heap.setStableOrdering(true);
+	}
+
+	private void assertDrainsInOrder(MyHeap<Integer, String> heap, int size) {
+		assertThat(heap.size(), is(size));
+		int previous = Integer.MIN_VALUE;
+		while (!heap.isEmpty()) {
+			int key = heap.removeMin().getKey();
+			assertTrue(key >= previous);
+			previous = key;
+		}
+	}
+
+}
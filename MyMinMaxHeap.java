@@ -0,0 +1,455 @@
+package heap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import net.datastructures.*;
+
+/**
+ * A double-ended adaptable priority queue implemented as a min-max heap.
+ * The entries live in a single array laid out like a complete binary tree
+ * (the children of index i are 2i+1 and 2i+2). Even levels (the root is
+ * level 0) are min levels, so every entry there is no larger than any of its
+ * descendants; odd levels are max levels, so every entry there is no smaller
+ * than any of its descendants. The minimum is therefore always at the root
+ * and the maximum is one of the root's two children.
+ *
+ * The array is a MySegmentedArray, so growing allocates one chunk at a time
+ * and never copies the entries.
+ *
+ * Unlike MyHeap, entries are moved between array slots instead of having
+ * their keys and values swapped, so the entry returned by insert stays a
+ * valid handle to the same key/value pair for remove and replaceKey.
+ */
+
+public class MyMinMaxHeap<K,V> implements AdaptablePriorityQueue<K,V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int CHUNK_BITS = 12;
+
+	private Comparator<K> _comparator;
+	private MySegmentedArray<MyHeapEntry<K,V>> _heap;
+
+	/**
+	 * Creates an empty min-max heap with the given comparator.
+	 *
+	 * @param comparator to be used for heap keys
+	 */
+	public MyMinMaxHeap(Comparator<K> comparator) {
+		this(comparator, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty min-max heap with the given comparator, sizing the
+	 * chunk directory of the backing store for the expected capacity.
+	 *
+	 * @param comparator to be used for heap keys
+	 * @param capacity the number of entries the heap is expected to hold
+	 * @throws IllegalArgumentException if null comparator or a negative capacity is passed in
+	 */
+	public MyMinMaxHeap(Comparator<K> comparator, int capacity) throws IllegalArgumentException {
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator is null");
+		}
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity is negative");
+		}
+		_comparator = comparator;
+		_heap = new MySegmentedArray<MyHeapEntry<K,V>>(CHUNK_BITS, capacity);
+	}
+
+	/**
+	 * Sets the comparator used for comparing items in the heap to the
+	 * comparator passed in.
+	 *
+	 * @param comparator, the comparator to be used for heap keys
+	 * @throws IllegalStateException if priority queue is not empty
+	 * @throws IllegalArgumentException if null comparator is passed in
+	 */
+	public void setComparator(Comparator<K> comparator)
+			throws IllegalStateException, IllegalArgumentException {
+		if (!isEmpty()) {
+			throw new IllegalStateException("Not Empty");
+		}
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator is null");
+		}
+		_comparator = comparator;
+	}
+
+	/**
+	 * Returns the size of the heap.
+	 * This method must run in O(1) time.
+	 *
+	 * @return an int representing the number of entries stored
+	 */
+	public int size() {
+		return _heap.size();
+	}
+
+	/**
+	 * Returns whether the heap is empty.
+	 * This method must run in O(1) time.
+	 *
+	 * @return true if the heap is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _heap.size() == 0;
+	}
+
+	/**
+	 * Returns but does not remove the entry with minimum key.
+	 * This method must run in O(1) time.
+	 *
+	 * @return the entry with the minimum key in the heap
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		if (isEmpty()) {
+			throw new EmptyPriorityQueueException("Empty Heap");
+		}
+		return _heap.get(0);
+	}
+
+	/**
+	 * Returns but does not remove the entry with maximum key.
+	 * This method must run in O(1) time.
+	 *
+	 * @return the entry with the maximum key in the heap
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> max() throws EmptyPriorityQueueException {
+		if (isEmpty()) {
+			throw new EmptyPriorityQueueException("Empty Heap");
+		}
+		return _heap.get(this.maxIndex());
+	}
+
+	/**
+	 * Inserts a key-value pair and returns the entry created.
+	 * This method must run in O(log n) time.
+	 *
+	 * @param key to be used as the key the heap is sorting with
+	 * @param value stored with the associated key in the heap
+	 * @return the entry created using the key/value parameters
+	 * @throws InvalidKeyException if the key is not suitable for this heap
+	 */
+	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+		this.checkKey(key);
+		MyHeapEntry<K,V> insertableEntry = new MyHeapEntry<K,V>(key, value);
+		insertableEntry.setIndex(_heap.add(insertableEntry));
+		this.upHeap(insertableEntry.getIndex());
+		return insertableEntry;
+	}
+
+	/**
+	 * Removes and returns the entry with the minimum key.
+	 * This method must run in O(log n) time.
+	 *
+	 * @return the entry with the minimum key, now removed
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+		if (isEmpty()) {
+			throw new EmptyPriorityQueueException("The Heap is Empty");
+		}
+		return this.removeAt(0);
+	}
+
+	/**
+	 * Removes and returns the entry with the maximum key.
+	 * This method must run in O(log n) time.
+	 *
+	 * @return the entry with the maximum key, now removed
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> removeMax() throws EmptyPriorityQueueException {
+		if (isEmpty()) {
+			throw new EmptyPriorityQueueException("The Heap is Empty");
+		}
+		return this.removeAt(this.maxIndex());
+	}
+
+	/**
+	 * Removes and returns the given entry from the heap.
+	 * This method must run in O(log n) time.
+	 *
+	 * @param entry to be removed from the heap
+	 * @return the entry specified for removal by the parameter, now removed
+	 * @throws InvalidEntryException if the entry cannot be removed from this heap
+	 */
+	public Entry<K,V> remove(Entry<K,V> entry) throws InvalidEntryException {
+		MyHeapEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
+		return this.removeAt(checkedEntry.getIndex());
+	}
+
+	/**
+	 * Replaces the key of the given entry.
+	 * This method must run in O(log n) time.
+	 *
+	 * @param entry within which the key will be replaced
+	 * @param key to replace the existing key in the entry
+	 * @return the old key formerly associated with the entry
+	 * @throws InvalidEntryException if the entry is invalid
+	 * @throws InvalidKeyException if the key is invalid
+	 */
+	public K replaceKey(Entry<K,V> entry, K key) throws InvalidEntryException, InvalidKeyException {
+		MyHeapEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
+		this.checkKey(key);
+		K oldKey = checkedEntry.getKey();
+		checkedEntry.setKey(key);
+		this.downHeap(checkedEntry.getIndex());
+		this.upHeap(checkedEntry.getIndex());
+		return oldKey;
+	}
+
+	/**
+	 * Replaces the value of the given entry.
+	 * This method must run in O(1) time.
+	 *
+	 * @param entry within which the value will be replaced
+	 * @param value to replace the existing value in the entry
+	 * @return the old value formerly associated with the entry
+	 * @throws InvalidEntryException if the entry cannot have its value replaced
+	 */
+	public V replaceValue(Entry<K,V> entry, V value) throws InvalidEntryException {
+		MyHeapEntry<K,V> checkedEntry = this.checkAndConvertEntry(entry);
+		V oldValue = checkedEntry.getValue();
+		checkedEntry.setValue(value);
+		return oldValue;
+	}
+
+	/**
+	 * Returns a snapshot of the entries in array layout order, which is not
+	 * sorted order. Later changes to the heap do not affect the list.
+	 * This method runs in O(n) time.
+	 *
+	 * @return a list of the entries currently stored
+	 */
+	public List<Entry<K,V>> entries() {
+		int size = _heap.size();
+		List<Entry<K,V>> entries = new ArrayList<Entry<K,V>>(size);
+		for (int i = 0; i < size; i++) {
+			entries.add(_heap.get(i));
+		}
+		return entries;
+	}
+
+	/**
+	 * Adds an entry in the last array slot without moving it. This is only
+	 * correct when entries are added in the layout order of a valid min-max
+	 * heap, as when restoring a snapshot; it is how a restore avoids
+	 * re-heaping. This method runs in O(1) time.
+	 *
+	 * @param key of the entry to add
+	 * @param value of the entry to add
+	 * @return the entry created
+	 */
+	Entry<K,V> appendInLayoutOrder(K key, V value) {
+		MyHeapEntry<K,V> appendedEntry = new MyHeapEntry<K,V>(key, value);
+		appendedEntry.setIndex(_heap.add(appendedEntry));
+		return appendedEntry;
+	}
+
+	/**
+	 * Determines whether a given entry is currently stored in this heap and
+	 * converts it to a MyHeapEntry. Because entries remember their array
+	 * index, this check runs in O(1) time.
+	 *
+	 * @param entry to be checked for validity with respect to the heap
+	 * @return the entry cast as a MyHeapEntry if considered valid
+	 * @throws InvalidEntryException if the entry is not stored in this heap
+	 */
+	@SuppressWarnings("unchecked")
+	public MyHeapEntry<K,V> checkAndConvertEntry(Entry<K,V> entry)
+			throws InvalidEntryException {
+		if (entry == null || !(entry instanceof MyHeapEntry)) {
+			throw new InvalidEntryException("Invalid entry");
+		}
+		MyHeapEntry<K,V> checkedEntry = (MyHeapEntry<K,V>) entry;
+		int index = checkedEntry.getIndex();
+		if (index < 0 || index >= _heap.size() || _heap.get(index) != checkedEntry) {
+			throw new InvalidEntryException("Not in the heap");
+		}
+		return checkedEntry;
+	}
+
+	/**
+	 * @param key which is checked for use in this heap
+	 * @throws InvalidKeyException if the key is null or cannot be compared by the comparator
+	 */
+	private void checkKey(K key) throws InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		try {
+			_comparator.compare(key, key);
+		} catch (ClassCastException e) {
+			throw new InvalidKeyException("Key is not a valid object type");
+		}
+	}
+
+	/**
+	 * @return the index of the entry with the maximum key, which is the root
+	 * itself or the larger of the root's children
+	 */
+	private int maxIndex() {
+		int size = _heap.size();
+		if (size == 1) {
+			return 0;
+		}
+		if (size == 2 || this.compare(1, 2) >= 0) {
+			return 1;
+		}
+		return 2;
+	}
+
+	/**
+	 * @param index of the entry to remove
+	 * Removes the entry at the given index by moving the last entry into its slot and then
+	 * restoring the min-max order around that slot
+	 */
+	private MyHeapEntry<K,V> removeAt(int index) {
+		MyHeapEntry<K,V> removed = _heap.get(index);
+		MyHeapEntry<K,V> last = _heap.removeLast();
+		if (index != _heap.size()) {
+			this.place(last, index);
+			this.downHeap(index);
+			this.upHeap(last.getIndex());
+		}
+		removed.setIndex(-1);
+		return removed;
+	}
+
+	/**
+	 * @param index whose entry is checked to be moved up
+	 * Moves the entry at the given index up through the min levels or max levels above it,
+	 * depending on how it compares to its parent
+	 */
+	private void upHeap(int index) {
+		if (index == 0) {
+			return;
+		}
+		int parent = (index - 1) / 2;
+		if (this.isMinLevel(index)) {
+			if (this.compare(index, parent) > 0) {
+				this.swap(index, parent);
+				this.upHeapLevels(parent, false);
+			} else {
+				this.upHeapLevels(index, true);
+			}
+		} else {
+			if (this.compare(index, parent) < 0) {
+				this.swap(index, parent);
+				this.upHeapLevels(parent, true);
+			} else {
+				this.upHeapLevels(index, false);
+			}
+		}
+	}
+
+	/**
+	 * @param index whose entry is moved up by grandparents
+	 * @param minLevels true to move up through min levels, false to move up through max levels
+	 */
+	private void upHeapLevels(int index, boolean minLevels) {
+		int position = index;
+		while (position > 2) {
+			int grandparent = (((position - 1) / 2) - 1) / 2;
+			int comparison = this.compare(position, grandparent);
+			if (minLevels ? comparison < 0 : comparison > 0) {
+				this.swap(position, grandparent);
+				position = grandparent;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @param index whose entry is checked to be moved down
+	 * Moves the entry at the given index down through the min levels or max levels below it
+	 */
+	private void downHeap(int index) {
+		boolean minLevels = this.isMinLevel(index);
+		int position = index;
+		int size = _heap.size();
+		while (2 * position + 1 < size) {
+			int extreme = this.extremeDescendant(position, minLevels);
+			int comparison = this.compare(extreme, position);
+			if (minLevels ? comparison >= 0 : comparison <= 0) {
+				break;
+			}
+			this.swap(extreme, position);
+			if (extreme <= 2 * position + 2) {
+				// a child sits on the opposite kind of level, so nothing below it can be out of order
+				break;
+			}
+			int parent = (extreme - 1) / 2;
+			comparison = this.compare(extreme, parent);
+			if (minLevels ? comparison > 0 : comparison < 0) {
+				this.swap(extreme, parent);
+			}
+			position = extreme;
+		}
+	}
+
+	/**
+	 * @param index whose children and grandchildren are searched
+	 * @param smallest true to find the smallest descendant, false to find the largest
+	 * @return the index of the smallest or largest key among the children and grandchildren
+	 */
+	private int extremeDescendant(int index, boolean smallest) {
+		int best = 2 * index + 1;
+		int size = _heap.size();
+		if (best + 1 < size) {
+			best = this.extremeOf(best, best + 1, smallest);
+		}
+		// the four grandchildren are stored next to each other, so they are walked without a candidate array
+		int last = Math.min(size, 4 * index + 7);
+		for (int candidate = 4 * index + 3; candidate < last; candidate++) {
+			best = this.extremeOf(best, candidate, smallest);
+		}
+		return best;
+	}
+
+	/**
+	 * @return the candidate if its key is more extreme than the best so far, otherwise the best so far
+	 */
+	private int extremeOf(int best, int candidate, boolean smallest) {
+		int comparison = this.compare(candidate, best);
+		return (smallest ? comparison < 0 : comparison > 0) ? candidate : best;
+	}
+
+	/**
+	 * @return true if the given index is on an even (min) level of the tree
+	 */
+	private boolean isMinLevel(int index) {
+		return ((31 - Integer.numberOfLeadingZeros(index + 1)) & 1) == 0;
+	}
+
+	/**
+	 * @return the comparator's result on the keys stored at the two indices
+	 */
+	private int compare(int indexOne, int indexTwo) {
+		return _comparator.compare(_heap.get(indexOne).getKey(), _heap.get(indexTwo).getKey());
+	}
+
+	/**
+	 * Exchanges the entries stored at two indices, keeping each entry's index up to date
+	 */
+	private void swap(int indexOne, int indexTwo) {
+		MyHeapEntry<K,V> one = _heap.get(indexOne);
+		this.place(_heap.get(indexTwo), indexOne);
+		this.place(one, indexTwo);
+	}
+
+	/**
+	 * Stores the entry at the given index and records that index in the entry
+	 */
+	private void place(MyHeapEntry<K,V> entry, int index) {
+		_heap.set(index, entry);
+		entry.setIndex(index);
+	}
+}
@@ -0,0 +1,165 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the functionality of the MyMinMaxHeap implementation, in particular that both
+ * ends of the queue stay correct while entries are inserted, removed and re-keyed.
+ */
+public class MyMinMaxHeapTest {
+
+	/**
+	 * Tests that min and max are both recognized after a series of inserts
+	 */
+	@Test
+	public void minMaxStandardTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		heap.insert(11, "A");
+		heap.insert(64, "B");
+		heap.insert(13, "C");
+		heap.insert(44, "D");
+		heap.insert(16, "E");
+
+		assertThat(heap.min().getKey(), is(11));
+		assertThat(heap.max().getKey(), is(64));
+		assertThat(heap.size(), is(5));
+	}
+
+	/**
+	 * Tests that with a single entry, the min and the max are the same entry
+	 */
+	@Test
+	public void singleEntryTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		Entry<Integer, String> entry = heap.insert(5, "A");
+
+		assertTrue(heap.min() == entry);
+		assertTrue(heap.max() == entry);
+		assertTrue(heap.removeMax() == entry);
+		assertTrue(heap.isEmpty());
+	}
+
+	/**
+	 * Tests that an Empty Priority Queue exception is properly raised in an invalid max call
+	 */
+	@Test(expected = EmptyPriorityQueueException.class)
+	public void maxExceptionTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		heap.max();
+	}
+
+	/**
+	 * Tests that an Empty Priority Queue exception is properly raised in an invalid removeMax call
+	 */
+	@Test(expected = EmptyPriorityQueueException.class)
+	public void removeMaxExceptionTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		heap.removeMax();
+	}
+
+	/**
+	 * Test that an Invalid Key Exception is properly raised in an invalid insert call
+	 */
+	@Test(expected = InvalidKeyException.class)
+	public void insertExceptionTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		heap.insert(null, "A");
+	}
+
+	/**
+	 * Tests that an Invalid Entry Exception is raised when removing an entry that was already removed
+	 */
+	@Test(expected = InvalidEntryException.class)
+	public void removeTwiceExceptionTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		Entry<Integer, String> entry = heap.insert(1, "A");
+		heap.insert(2, "B");
+		heap.remove(entry);
+		heap.remove(entry);
+	}
+
+	/**
+	 * Tests that entries keep their key/value pairs, so they can be used as handles after the heap reorders
+	 */
+	@Test
+	public void handlesStayStableTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		Entry<Integer, String> entry = heap.insert(12, "ABC");
+		Entry<Integer, String> entry2 = heap.insert(6, "DEF");
+		Entry<Integer, String> entry3 = heap.insert(18, "GHI");
+		heap.insert(1, "PQR");
+
+		assertThat(entry2.getValue(), is("DEF"));
+		assertThat(heap.replaceKey(entry3, 0), is(18));
+		assertTrue(heap.min() == entry3);
+		heap.replaceKey(entry2, 100);
+		assertTrue(heap.max() == entry2);
+		assertTrue(heap.remove(entry) == entry);
+		assertThat(heap.size(), is(3));
+	}
+
+	/**
+	 * Tests that draining alternately from both ends returns keys in sorted order from the outside in
+	 */
+	@Test
+	public void alternateDrainTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator(), 1);
+		List<Integer> keys = new ArrayList<Integer>();
+		Random random = new Random(16);
+		for (int i = 0; i < 500; i++) {
+			int key = random.nextInt(200) - 100;
+			keys.add(key);
+			heap.insert(key, "v" + i);
+		}
+		Collections.sort(keys);
+
+		int low = 0;
+		int high = keys.size() - 1;
+		while (!heap.isEmpty()) {
+			assertThat(heap.removeMin().getKey(), is(keys.get(low++)));
+			if (!heap.isEmpty()) {
+				assertThat(heap.removeMax().getKey(), is(keys.get(high--)));
+			}
+		}
+	}
+
+	/**
+	 * Tests the heap against a sorted list while random entries are removed and re-keyed
+	 */
+	@Test
+	public void randomRemoveAndReplaceKeyTest() {
+		MyMinMaxHeap<Integer, String> heap = new MyMinMaxHeap<Integer, String>(new IntegerComparator());
+		List<Entry<Integer, String>> entries = new ArrayList<Entry<Integer, String>>();
+		Random random = new Random(32);
+		for (int i = 0; i < 300; i++) {
+			entries.add(heap.insert(random.nextInt(1000), "v" + i));
+		}
+		for (int i = 0; i < 200; i++) {
+			Entry<Integer, String> entry = entries.get(random.nextInt(entries.size()));
+			if (i % 2 == 0) {
+				heap.remove(entry);
+				entries.remove(entry);
+			} else {
+				heap.replaceKey(entry, random.nextInt(1000));
+			}
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for (Entry<Integer, String> remaining : entries) {
+				min = Math.min(min, remaining.getKey());
+				max = Math.max(max, remaining.getKey());
+			}
+			assertThat(heap.min().getKey(), is(min));
+			assertThat(heap.max().getKey(), is(max));
+		}
+		assertThat(heap.size(), is(entries.size()));
+	}
+}
@@ -0,0 +1,408 @@
+package heap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.datastructures.*;
+
+/**
+ * A relaxed concurrent priority queue in the style of a MultiQueue. The
+ * entries are spread over c * p sub-heaps (p being the expected number of
+ * threads and c the relaxation factor), each guarded by its own lock.
+ * insert locks one random sub-heap; removeMin looks at the minima of two
+ * random sub-heaps and removes from the one with the smaller key. Threads
+ * therefore almost never wait on each other, at the cost of removeMin
+ * returning an entry that is only close to the minimum: the expected rank
+ * error grows linearly with the number of sub-heaps, so c is the knob that
+ * trades order for throughput. Each sub-heap is a plain array binary heap,
+ * since nothing ever needs its maximum. MyMultiQueueBenchmark measures the
+ * throughput against a single lock-protected heap.
+ *
+ * The observed rank error can be sampled with setSampleInterval. A sampled
+ * removal counts how many sub-heap minima were smaller than the key it
+ * returned, which is a cheap lower bound on the true rank error.
+ */
+
+public class MyMultiQueue<K,V> implements PriorityQueue<K,V> {
+
+	private Comparator<K> _comparator;
+	private SubHeap<K,V>[] _subHeaps;
+	private AtomicInteger _size;
+
+	private volatile int _sampleInterval;
+	private AtomicLong _removals;
+	private AtomicLong _samples;
+	private AtomicLong _rankErrorSum;
+	private AtomicLong _maxRankError;
+
+	/**
+	 * Creates an empty queue with c * threads sub-heaps.
+	 *
+	 * @param comparator to be used for keys
+	 * @param threads the number of threads expected to use the queue at once
+	 * @param c the number of sub-heaps per thread; larger values scale better but relax the order more
+	 * @throws IllegalArgumentException if null comparator is passed in or threads or c is not positive
+	 */
+	@SuppressWarnings("unchecked")
+	public MyMultiQueue(Comparator<K> comparator, int threads, int c) throws IllegalArgumentException {
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator is null");
+		}
+		if (threads < 1 || c < 1) {
+			throw new IllegalArgumentException("threads and c must be positive");
+		}
+		_comparator = comparator;
+		_subHeaps = (SubHeap<K,V>[]) new SubHeap<?,?>[threads * c];
+		for (int i = 0; i < _subHeaps.length; i++) {
+			_subHeaps[i] = new SubHeap<K,V>(comparator);
+		}
+		_size = new AtomicInteger();
+		_removals = new AtomicLong();
+		_samples = new AtomicLong();
+		_rankErrorSum = new AtomicLong();
+		_maxRankError = new AtomicLong();
+	}
+
+	/**
+	 * Returns the number of entries stored. Under concurrent use this is a
+	 * momentary value.
+	 *
+	 * @return an int representing the number of entries stored
+	 */
+	public int size() {
+		return _size.get();
+	}
+
+	/**
+	 * Returns whether the queue is empty.
+	 *
+	 * @return true if the queue is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _size.get() == 0;
+	}
+
+	/**
+	 * @return the number of sub-heaps the entries are spread over
+	 */
+	public int subHeapCount() {
+		return _subHeaps.length;
+	}
+
+	/**
+	 * Returns but does not remove the entry with the smallest key among the
+	 * sub-heap minima. This method runs in O(c * p) time and takes each
+	 * sub-heap's lock in turn, so it is exact only when no other thread is
+	 * modifying the queue.
+	 *
+	 * @return the entry with the minimum key
+	 * @throws EmptyPriorityQueueException if the queue is empty
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		Entry<K,V> min = null;
+		for (SubHeap<K,V> subHeap : _subHeaps) {
+			subHeap._lock.lock();
+			try {
+				if (!subHeap._heap.isEmpty() && (min == null
+						|| _comparator.compare(subHeap._heap.min().getKey(), min.getKey()) < 0)) {
+					min = subHeap._heap.min();
+				}
+			} finally {
+				subHeap._lock.unlock();
+			}
+		}
+		if (min == null) {
+			throw new EmptyPriorityQueueException("Empty Queue");
+		}
+		return min;
+	}
+
+	/**
+	 * Inserts a key-value pair into a random sub-heap and returns the entry
+	 * created. This method runs in O(log n) expected time.
+	 *
+	 * @param key to be used as the key the queue is sorting with
+	 * @param value stored with the associated key
+	 * @return the entry created using the key/value parameters
+	 * @throws InvalidKeyException if the key is not suitable for this queue
+	 */
+	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (true) {
+			SubHeap<K,V> subHeap = _subHeaps[random.nextInt(_subHeaps.length)];
+			if (subHeap._lock.tryLock()) {
+				try {
+					Entry<K,V> entry = subHeap._heap.insert(key, value);
+					subHeap.refreshTop();
+					_size.incrementAndGet();
+					return entry;
+				} finally {
+					subHeap._lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns an entry whose key is close to the minimum: the
+	 * smaller of the minima of two randomly chosen sub-heaps. This method
+	 * runs in O(log n) expected time.
+	 *
+	 * @return an entry with a near-minimum key, now removed
+	 * @throws EmptyPriorityQueueException if the queue is empty
+	 */
+	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int misses = 0;
+		while (true) {
+			if (misses >= _subHeaps.length) {
+				// the random choices keep landing on empty or busy sub-heaps, so sweep them all
+				Entry<K,V> entry = this.removeFromAny(random);
+				if (entry != null) {
+					return entry;
+				}
+				if (_size.get() == 0) {
+					throw new EmptyPriorityQueueException("Empty Queue");
+				}
+				misses = 0;
+			}
+			SubHeap<K,V> first = _subHeaps[random.nextInt(_subHeaps.length)];
+			SubHeap<K,V> second = _subHeaps[random.nextInt(_subHeaps.length)];
+			K firstTop = first._top;
+			K secondTop = second._top;
+			SubHeap<K,V> chosen = first;
+			if (firstTop == null || (secondTop != null && _comparator.compare(secondTop, firstTop) < 0)) {
+				chosen = second;
+			}
+			if (chosen._top == null || !chosen._lock.tryLock()) {
+				misses++;
+				continue;
+			}
+			Entry<K,V> entry;
+			try {
+				if (chosen._heap.isEmpty()) {
+					misses++;
+					continue;
+				}
+				entry = chosen._heap.removeMin();
+				chosen.refreshTop();
+			} finally {
+				chosen._lock.unlock();
+			}
+			this.removed(entry);
+			return entry;
+		}
+	}
+
+	/**
+	 * Sets how often removals are sampled for rank error. An interval of n
+	 * samples every n-th removal; 0 turns sampling off, which is the default.
+	 *
+	 * @param interval the number of removals between samples
+	 * @throws IllegalArgumentException if the interval is negative
+	 */
+	public void setSampleInterval(int interval) throws IllegalArgumentException {
+		if (interval < 0) {
+			throw new IllegalArgumentException("interval is negative");
+		}
+		_sampleInterval = interval;
+	}
+
+	/**
+	 * @return the number of removals that were sampled for rank error
+	 */
+	public long getRankErrorSamples() {
+		return _samples.get();
+	}
+
+	/**
+	 * @return the mean observed rank error over the sampled removals, or 0 if nothing was sampled
+	 */
+	public double getMeanRankError() {
+		long samples = _samples.get();
+		return samples == 0 ? 0 : (double) _rankErrorSum.get() / samples;
+	}
+
+	/**
+	 * @return the largest observed rank error over the sampled removals
+	 */
+	public long getMaxRankError() {
+		return _maxRankError.get();
+	}
+
+	/**
+	 * Clears the rank error statistics
+	 */
+	public void resetRankErrorStats() {
+		_removals.set(0);
+		_samples.set(0);
+		_rankErrorSum.set(0);
+		_maxRankError.set(0);
+	}
+
+	/**
+	 * Sweeps the sub-heaps from a random offset, so that threads which fall back to a sweep at the same time
+	 * start in different places. The first pass skips sub-heaps whose lock is held; only if it finds nothing
+	 * does a second pass wait for each lock.
+	 *
+	 * @return an entry removed from the first non-empty sub-heap, or null if every sub-heap was empty
+	 */
+	private Entry<K,V> removeFromAny(ThreadLocalRandom random) {
+		int offset = random.nextInt(_subHeaps.length);
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < _subHeaps.length; i++) {
+				SubHeap<K,V> subHeap = _subHeaps[(offset + i) % _subHeaps.length];
+				if (subHeap._top == null) {
+					continue;
+				}
+				if (pass == 0) {
+					if (!subHeap._lock.tryLock()) {
+						continue;
+					}
+				} else {
+					subHeap._lock.lock();
+				}
+				Entry<K,V> entry = null;
+				try {
+					if (!subHeap._heap.isEmpty()) {
+						entry = subHeap._heap.removeMin();
+						subHeap.refreshTop();
+					}
+				} finally {
+					subHeap._lock.unlock();
+				}
+				if (entry != null) {
+					this.removed(entry);
+					return entry;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param entry which was just removed
+	 * Updates the size and, on sampled removals, the rank error statistics
+	 */
+	private void removed(Entry<K,V> entry) {
+		_size.decrementAndGet();
+		int interval = _sampleInterval;
+		if (interval == 0 || _removals.incrementAndGet() % interval != 0) {
+			return;
+		}
+		long rankError = 0;
+		for (SubHeap<K,V> subHeap : _subHeaps) {
+			K top = subHeap._top;
+			if (top != null && _comparator.compare(top, entry.getKey()) < 0) {
+				rankError++;
+			}
+		}
+		_samples.incrementAndGet();
+		_rankErrorSum.addAndGet(rankError);
+		long max = _maxRankError.get();
+		while (rankError > max && !_maxRankError.compareAndSet(max, rankError)) {
+			max = _maxRankError.get();
+		}
+	}
+
+	/**
+	 * One lock-protected sub-heap. The minimum key is published in a volatile
+	 * field so removeMin can compare two sub-heaps without locking either.
+	 */
+	private static class SubHeap<K,V> {
+
+		private final ReentrantLock _lock;
+		private final BinaryHeap<K,V> _heap;
+		private volatile K _top;
+
+		private SubHeap(Comparator<K> comparator) {
+			_lock = new ReentrantLock();
+			_heap = new BinaryHeap<K,V>(comparator);
+		}
+
+		/**
+		 * Republishes the minimum key; must be called with the lock held
+		 */
+		private void refreshTop() {
+			_top = _heap.isEmpty() ? null : _heap.min().getKey();
+		}
+	}
+
+	/**
+	 * A plain array binary heap for one sub-heap. Entries are only ever
+	 * inserted and removed from the top, so they are not tracked as handles.
+	 */
+	private static class BinaryHeap<K,V> {
+
+		private final Comparator<K> _comparator;
+		private final ArrayList<MyHeapEntry<K,V>> _entries;
+
+		private BinaryHeap(Comparator<K> comparator) {
+			_comparator = comparator;
+			_entries = new ArrayList<MyHeapEntry<K,V>>();
+		}
+
+		private boolean isEmpty() {
+			return _entries.isEmpty();
+		}
+
+		private MyHeapEntry<K,V> min() {
+			return _entries.get(0);
+		}
+
+		/**
+		 * Adds the entry at the end and moves its larger parents down until it fits. This method runs in
+		 * O(log n) time.
+		 */
+		private Entry<K,V> insert(K key, V value) {
+			MyHeapEntry<K,V> entry = new MyHeapEntry<K,V>(key, value);
+			_entries.add(entry);
+			int hole = _entries.size() - 1;
+			while (hole > 0) {
+				int parent = (hole - 1) / 2;
+				if (_comparator.compare(key, _entries.get(parent).getKey()) >= 0) {
+					break;
+				}
+				_entries.set(hole, _entries.get(parent));
+				hole = parent;
+			}
+			_entries.set(hole, entry);
+			return entry;
+		}
+
+		/**
+		 * Takes out the root, then moves the smaller child up into the hole until the last entry fits there.
+		 * This method runs in O(log n) time.
+		 */
+		private Entry<K,V> removeMin() {
+			MyHeapEntry<K,V> min = _entries.get(0);
+			MyHeapEntry<K,V> last = _entries.remove(_entries.size() - 1);
+			int size = _entries.size();
+			if (size == 0) {
+				return min;
+			}
+			int hole = 0;
+			while (2 * hole + 1 < size) {
+				int child = 2 * hole + 1;
+				if (child + 1 < size
+						&& _comparator.compare(_entries.get(child + 1).getKey(), _entries.get(child).getKey()) < 0) {
+					child++;
+				}
+				if (_comparator.compare(_entries.get(child).getKey(), last.getKey()) >= 0) {
+					break;
+				}
+				_entries.set(hole, _entries.get(child));
+				hole = child;
+			}
+			_entries.set(hole, last);
+			return min;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package heap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+import net.datastructures.*;
+
+/**
+ * Measures how MyMultiQueue's throughput scales with the number of threads,
+ * against one heap behind one lock. Every thread repeatedly inserts a
+ * random key and removes a near-minimum entry, with a fixed number of
+ * entries kept in the queue, which is the access pattern of a parallel
+ * work list.
+ *
+ * Run main to print operations per second for every backend at 1, 2, 4,
+ * ... threads up to the number of processors.
+ */
+
+public class MyMultiQueueBenchmark {
+
+	private static final int KEY_RANGE = 1 << 30;
+
+	/**
+	 * Orders the benchmark's keys
+	 */
+	public static final Comparator<Integer> KEY_ORDER = new Comparator<Integer>() {
+		public int compare(Integer one, Integer two) {
+			return Integer.compare(one, two);
+		}
+	};
+
+	private MyMultiQueueBenchmark() {
+	}
+
+	/**
+	 * @return a factory for each backend by name, given the number of threads
+	 */
+	public static Map<String,IntFunction<PriorityQueue<Integer,Integer>>> backends() {
+		Map<String,IntFunction<PriorityQueue<Integer,Integer>>> backends =
+				new LinkedHashMap<String,IntFunction<PriorityQueue<Integer,Integer>>>();
+		backends.put("locked heap", new IntFunction<PriorityQueue<Integer,Integer>>() {
+			public PriorityQueue<Integer,Integer> apply(int threads) {
+				return new LockedHeap<Integer,Integer>(KEY_ORDER);
+			}
+		});
+		backends.put("multiqueue c=2", new IntFunction<PriorityQueue<Integer,Integer>>() {
+			public PriorityQueue<Integer,Integer> apply(int threads) {
+				return new MyMultiQueue<Integer,Integer>(KEY_ORDER, threads, 2);
+			}
+		});
+		backends.put("multiqueue c=4", new IntFunction<PriorityQueue<Integer,Integer>>() {
+			public PriorityQueue<Integer,Integer> apply(int threads) {
+				return new MyMultiQueue<Integer,Integer>(KEY_ORDER, threads, 4);
+			}
+		});
+		return backends;
+	}
+
+	/**
+	 * Measures one backend: the queue is filled with the given number of
+	 * entries, then every thread runs its share of insert and removeMin
+	 * pairs at once.
+	 *
+	 * @param backend which creates the queue for a number of threads
+	 * @param threads the number of threads to run
+	 * @param pending the number of entries kept in the queue
+	 * @param operations the number of insert and removeMin pairs per thread
+	 * @return the operations (inserts plus removals) per second over all threads
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	public static double measure(IntFunction<PriorityQueue<Integer,Integer>> backend, int threads, int pending,
+			final int operations) throws InterruptedException {
+		final PriorityQueue<Integer,Integer> queue = backend.apply(threads);
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < pending; i++) {
+			queue.insert(random.nextInt(KEY_RANGE), i);
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(new Thread(new Runnable() {
+				public void run() {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					try {
+						start.await();
+						for (int i = 0; i < operations; i++) {
+							queue.insert(random.nextInt(KEY_RANGE), i);
+							queue.removeMin();
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}));
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = Math.max(1, System.nanoTime() - begin);
+		return 2.0 * operations * threads * 1e9 / elapsed;
+	}
+
+	/**
+	 * Prints the operations per second of every backend at 1, 2, 4, ... threads.
+	 *
+	 * @param args optionally, the number of insert and removeMin pairs per thread and the number of entries kept
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int pending = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int processors = Runtime.getRuntime().availableProcessors();
+		Map<String,IntFunction<PriorityQueue<Integer,Integer>>> backends = backends();
+		for (int doubling = 1; doubling < 2 * processors; doubling *= 2) {
+			int threads = Math.min(doubling, processors);
+			System.out.println(threads + " threads:");
+			for (Map.Entry<String,IntFunction<PriorityQueue<Integer,Integer>>> backend : backends.entrySet()) {
+				measure(backend.getValue(), threads, pending, operations / 10);
+				double rate = measure(backend.getValue(), threads, pending, operations);
+				System.out.printf("    %-15s %,15.0f ops/sec%n", backend.getKey(), rate);
+			}
+		}
+	}
+
+	/**
+	 * The baseline: one MyMinMaxHeap with every operation under one lock
+	 */
+	private static class LockedHeap<K,V> implements PriorityQueue<K,V> {
+
+		private final ReentrantLock _lock;
+		private final MyMinMaxHeap<K,V> _heap;
+
+		private LockedHeap(Comparator<K> comparator) {
+			_lock = new ReentrantLock();
+			_heap = new MyMinMaxHeap<K,V>(comparator);
+		}
+
+		public int size() {
+			_lock.lock();
+			try {
+				return _heap.size();
+			} finally {
+				_lock.unlock();
+			}
+		}
+
+		public boolean isEmpty() {
+			return this.size() == 0;
+		}
+
+		public Entry<K,V> min() throws EmptyPriorityQueueException {
+			_lock.lock();
+			try {
+				return _heap.min();
+			} finally {
+				_lock.unlock();
+			}
+		}
+
+		public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+			_lock.lock();
+			try {
+				return _heap.insert(key, value);
+			} finally {
+				_lock.unlock();
+			}
+		}
+
+		public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+			_lock.lock();
+			try {
+				return _heap.removeMin();
+			} finally {
+				_lock.unlock();
+			}
+		}
+	}
+}
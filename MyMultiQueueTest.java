@@ -0,0 +1,133 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the functionality of the MyMultiQueue implementation. With a single sub-heap the queue
+ * must behave exactly like a heap; with more sub-heaps only the relaxed guarantees are checked.
+ */
+public class MyMultiQueueTest {
+
+	/**
+	 * Tests that one thread with one sub-heap per thread gives strict priority order
+	 */
+	@Test
+	public void singleSubHeapIsExactTest() {
+		MyMultiQueue<Integer, String> queue = new MyMultiQueue<Integer, String>(new IntegerComparator(), 1, 1);
+		queue.insert(11, "A");
+		queue.insert(64, "B");
+		queue.insert(13, "C");
+		queue.insert(16, "D");
+
+		assertThat(queue.min().getKey(), is(11));
+		assertThat(queue.removeMin().getKey(), is(11));
+		assertThat(queue.removeMin().getKey(), is(13));
+		assertThat(queue.removeMin().getKey(), is(16));
+		assertThat(queue.removeMin().getKey(), is(64));
+		assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * Tests that an Empty Priority Queue exception is properly raised in an invalid removeMin call
+	 */
+	@Test(expected = EmptyPriorityQueueException.class)
+	public void removeMinExceptionTest() {
+		MyMultiQueue<Integer, String> queue = new MyMultiQueue<Integer, String>(new IntegerComparator(), 4, 2);
+		queue.insert(1, "A");
+		queue.removeMin();
+		queue.removeMin();
+	}
+
+	/**
+	 * Tests that the rank error is sampled and never exceeds the number of sub-heaps
+	 */
+	@Test
+	public void rankErrorSamplingTest() {
+		MyMultiQueue<Integer, String> queue = new MyMultiQueue<Integer, String>(new IntegerComparator(), 4, 2);
+		queue.setSampleInterval(1);
+		for (int i = 0; i < 1000; i++) {
+			queue.insert(i, "v");
+		}
+		while (!queue.isEmpty()) {
+			queue.removeMin();
+		}
+
+		assertThat(queue.getRankErrorSamples(), is(1000L));
+		assertTrue(queue.getMaxRankError() < queue.subHeapCount());
+		assertTrue(queue.getMeanRankError() <= queue.getMaxRankError());
+	}
+
+	/**
+	 * Tests that concurrent producers and consumers neither lose nor duplicate entries
+	 */
+	@Test
+	public void concurrentInsertRemoveTest() throws InterruptedException {
+		final MyMultiQueue<Integer, String> queue = new MyMultiQueue<Integer, String>(new IntegerComparator(), 4, 2);
+		final AtomicInteger removed = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t * 10000;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						queue.insert(offset + i, "v");
+						if (i % 2 == 1) {
+							queue.removeMin();
+							removed.incrementAndGet();
+						}
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(queue.size(), is(40000 - removed.get()));
+		int drained = 0;
+		while (!queue.isEmpty()) {
+			queue.removeMin();
+			drained++;
+		}
+		assertThat(drained, is(20000));
+	}
+
+	/**
+	 * Tests that entries in a few of many sub-heaps are still found once the random choices keep missing
+	 */
+	@Test
+	public void sparseRemoveTest() {
+		MyMultiQueue<Integer, String> queue = new MyMultiQueue<Integer, String>(new IntegerComparator(), 16, 4);
+		for (int round = 0; round < 100; round++) {
+			queue.insert(round, "A");
+			queue.insert(round + 1, "B");
+			queue.removeMin();
+			queue.removeMin();
+			assertTrue(queue.isEmpty());
+		}
+	}
+
+	/**
+	 * Tests that the benchmark runs every backend with several threads
+	 */
+	@Test
+	public void benchmarkTest() throws InterruptedException {
+		Map<String,IntFunction<PriorityQueue<Integer,Integer>>> backends = MyMultiQueueBenchmark.backends();
+		for (IntFunction<PriorityQueue<Integer,Integer>> backend : backends.values()) {
+			assertTrue(MyMultiQueueBenchmark.measure(backend, 3, 1000, 2000) > 0);
+		}
+	}
+}
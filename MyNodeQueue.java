@@ -0,0 +1,42 @@
+package heap;
+
+/**
+ * A priority queue of graph nodes keyed by tentative distance, the only
+ * queue operations a shortest path search needs. Nodes are ints from 0 to
+ * one less than the node count the queue was created for, and each node is
+ * in the queue at most once: pushing a queued node again lowers its key,
+ * which is Dijkstra's decrease-key.
+ *
+ * Searches with non-negative edge weights (and, for A*, a consistent
+ * heuristic) never push a key smaller than the last key popped. Backends
+ * may rely on that: MyRadixHeap does, and MyShortestPaths guarantees it.
+ */
+
+public interface MyNodeQueue {
+
+	/**
+	 * @return true if no node is queued; false otherwise
+	 */
+	public boolean isEmpty();
+
+	/**
+	 * Queues a node, or lowers its key if it is already queued.
+	 *
+	 * @param node to queue
+	 * @param key of the node, not larger than its current key if it is queued
+	 */
+	public void push(int node, long key);
+
+	/**
+	 * Removes the node with the smallest key.
+	 *
+	 * @return the node removed
+	 * @throws IllegalStateException if the queue is empty
+	 */
+	public int pop() throws IllegalStateException;
+
+	/**
+	 * Removes every queued node, so the queue can be reused for another search
+	 */
+	public void clear();
+}
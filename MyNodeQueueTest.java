@@ -0,0 +1,182 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class tests the MyNodeQueue backends, MyDaryHeap, MyRadixHeap and MyAdaptableNodeQueue, on the monotone
+ * push and decrease-key workload of a shortest path search.
+ */
+public class MyNodeQueueTest {
+
+	private static final int NODES = 2000;
+
+	/**
+	 * Tests the indexed heap with arities 2, 3 and 4
+	 */
+	@Test
+	public void daryHeapTest() {
+		for (int arity = 2; arity <= 4; arity++) {
+			this.checkMonotoneWorkload(new MyDaryHeap(NODES, arity));
+		}
+	}
+
+	/**
+	 * Tests the radix heap, including stale copies left behind by decrease-keys
+	 */
+	@Test
+	public void radixHeapTest() {
+		this.checkMonotoneWorkload(new MyRadixHeap(NODES));
+	}
+
+	/**
+	 * Tests that a node popped and pushed again at the key of one of its stale copies is popped exactly once
+	 */
+	@Test
+	public void radixHeapRepushTest() {
+		MyRadixHeap heap = new MyRadixHeap(4);
+		heap.push(0, 7);
+		heap.push(0, 5);
+		heap.push(1, 9);
+		assertThat(heap.pop(), is(0));
+		heap.push(0, 7);
+		assertThat(heap.size(), is(2));
+		assertThat(heap.pop(), is(0));
+		assertThat(heap.pop(), is(1));
+		assertTrue(heap.isEmpty());
+
+		heap.push(2, 12);
+		heap.push(2, 10);
+		assertThat(heap.pop(), is(2));
+		heap.push(2, 12);
+		heap.push(3, 12);
+		assertThat(heap.pop() + heap.pop(), is(5));
+		assertTrue(heap.isEmpty());
+		heap.push(3, 20);
+		assertThat(heap.pop(), is(3));
+		assertTrue(heap.isEmpty());
+	}
+
+	/**
+	 * Tests the adapter over the binary heap, the min-max heap and the pairing heap
+	 */
+	@Test
+	public void adaptableNodeQueueTest() {
+		this.checkMonotoneWorkload(new MyAdaptableNodeQueue(
+				new MyHeap<Long,Integer>(MyGraphBenchmark.DISTANCE_ORDER), NODES));
+		this.checkMonotoneWorkload(new MyAdaptableNodeQueue(
+				new MyMinMaxHeap<Long,Integer>(MyGraphBenchmark.DISTANCE_ORDER), NODES));
+		this.checkMonotoneWorkload(new MyAdaptableNodeQueue(
+				new MyPairingHeap<Long,Integer>(MyGraphBenchmark.DISTANCE_ORDER), NODES));
+	}
+
+	/**
+	 * Tests that pushing a larger key for a queued node keeps the smaller one, and that clear empties the queue
+	 */
+	@Test
+	public void pushAndClearTest() {
+		MyNodeQueue[] queues = {new MyDaryHeap(10, 2), new MyRadixHeap(10),
+				new MyAdaptableNodeQueue(new MyPairingHeap<Long,Integer>(MyGraphBenchmark.DISTANCE_ORDER), 10)};
+		for (MyNodeQueue queue : queues) {
+			queue.push(3, 5);
+			queue.push(4, 7);
+			queue.push(3, 9);
+			queue.push(4, 6);
+			assertThat(queue.pop(), is(3));
+			assertThat(queue.pop(), is(4));
+			assertTrue(queue.isEmpty());
+
+			queue.push(1, 8);
+			queue.push(2, 9);
+			queue.clear();
+			assertTrue(queue.isEmpty());
+			queue.push(2, 1);
+			assertThat(queue.pop(), is(2));
+			assertTrue(queue.isEmpty());
+		}
+	}
+
+	/**
+	 * Tests the exceptions of the backends
+	 */
+	@Test
+	public void exceptionTest() {
+		MyNodeQueue[] queues = {new MyDaryHeap(10, 2), new MyRadixHeap(10),
+				new MyAdaptableNodeQueue(new MyMinMaxHeap<Long,Integer>(MyGraphBenchmark.DISTANCE_ORDER), 10)};
+		for (MyNodeQueue queue : queues) {
+			try {
+				queue.pop();
+				fail("popping an empty queue should throw");
+			} catch (IllegalStateException e) {
+			}
+		}
+
+		MyRadixHeap radix = new MyRadixHeap(10);
+		radix.push(0, 10);
+		radix.pop();
+		try {
+			radix.push(1, 9);
+			fail("a key below the last one popped should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+
+		try {
+			new MyDaryHeap(10, 1);
+			fail("an arity below 2 should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new MyAdaptableNodeQueue(null, 10);
+			fail("a null queue should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Runs pushes, decrease-keys and pops with keys never below the last key popped, and checks every pop
+	 * against a brute-force scan of the expected keys
+	 */
+	private void checkMonotoneWorkload(MyNodeQueue queue) {
+		Random random = new Random(42);
+		long[] keys = new long[NODES];
+		boolean[] queued = new boolean[NODES];
+		int size = 0;
+		long last = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (size > 0 && random.nextInt(3) == 0) {
+				int node = queue.pop();
+				assertTrue(queued[node]);
+				for (int other = 0; other < NODES; other++) {
+					assertFalse(queued[other] && keys[other] < keys[node]);
+				}
+				queued[node] = false;
+				size--;
+				last = keys[node];
+			} else {
+				int node = random.nextInt(NODES);
+				long key = last + random.nextInt(1 << random.nextInt(20));
+				if (!queued[node]) {
+					queued[node] = true;
+					keys[node] = key;
+					size++;
+				} else {
+					keys[node] = Math.min(keys[node], key);
+				}
+				queue.push(node, key);
+			}
+			assertThat(queue.isEmpty(), is(size == 0));
+		}
+		while (size > 0) {
+			int node = queue.pop();
+			assertTrue(queued[node] && keys[node] >= last);
+			queued[node] = false;
+			last = keys[node];
+			size--;
+		}
+		assertTrue(queue.isEmpty());
+	}
+}
@@ -0,0 +1,323 @@
+package heap;
+
+import java.util.Comparator;
+
+import net.datastructures.*;
+
+/**
+ * An adaptable priority queue implemented as a pairing heap: a heap-ordered
+ * tree of any shape, where each node keeps its first child and its next
+ * sibling. insert and a key decrease just link a tree under or over the
+ * root with one comparison, in O(1) time. removeMin pairs up the root's
+ * children from left to right and then links the pairs from right to left,
+ * which takes O(log n) amortized time. Removing an arbitrary entry or
+ * raising its key detaches the entry's subtree and repairs it the same way.
+ *
+ * Each node also points back at its parent (if it is the first child) or
+ * its previous sibling, so a subtree is detached in O(1). Nodes are never
+ * copied, so the entry returned by insert stays a valid handle for as long
+ * as it is in the heap.
+ */
+
+public class MyPairingHeap<K,V> implements AdaptablePriorityQueue<K,V> {
+
+	private final Comparator<K> _comparator;
+	private Node<K,V> _root;
+	private int _size;
+
+	/**
+	 * Creates an empty pairing heap with the given comparator.
+	 *
+	 * @param comparator to be used for heap keys
+	 * @throws IllegalArgumentException if null comparator is passed in
+	 */
+	public MyPairingHeap(Comparator<K> comparator) throws IllegalArgumentException {
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator is null");
+		}
+		_comparator = comparator;
+		_root = null;
+		_size = 0;
+	}
+
+	/**
+	 * Returns the size of the heap. This method runs in O(1) time.
+	 *
+	 * @return an int representing the number of entries stored
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Returns whether the heap is empty. This method runs in O(1) time.
+	 *
+	 * @return true if the heap is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * Returns but does not remove the entry with minimum key.
+	 * This method runs in O(1) time.
+	 *
+	 * @return the entry with the minimum key in the heap
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		if (_root == null) {
+			throw new EmptyPriorityQueueException("Empty Heap");
+		}
+		return _root;
+	}
+
+	/**
+	 * Inserts a key-value pair and returns the entry created.
+	 * This method runs in O(1) time.
+	 *
+	 * @param key to be used as the key the heap is sorting with
+	 * @param value stored with the associated key in the heap
+	 * @return the entry created using the key/value parameters
+	 * @throws InvalidKeyException if the key is null or cannot be compared by the comparator
+	 */
+	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+		this.checkKey(key);
+		Node<K,V> node = new Node<K,V>(this, key, value);
+		_root = this.link(_root, node);
+		_size++;
+		return node;
+	}
+
+	/**
+	 * Removes and returns the entry with the minimum key.
+	 * This method runs in O(log n) amortized time.
+	 *
+	 * @return the entry with the minimum key, now removed
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+		if (_root == null) {
+			throw new EmptyPriorityQueueException("The Heap is Empty");
+		}
+		Node<K,V> removed = _root;
+		_root = this.combineChildren(removed);
+		this.release(removed);
+		return removed;
+	}
+
+	/**
+	 * Removes and returns the given entry from the heap.
+	 * This method runs in O(log n) amortized time.
+	 *
+	 * @param entry to be removed from the heap
+	 * @return the entry, now removed
+	 * @throws InvalidEntryException if the entry is not in this heap
+	 */
+	public Entry<K,V> remove(Entry<K,V> entry) throws InvalidEntryException {
+		Node<K,V> node = this.checkAndConvertEntry(entry);
+		if (node == _root) {
+			return this.removeMin();
+		}
+		this.detach(node);
+		_root = this.link(_root, this.combineChildren(node));
+		this.release(node);
+		return node;
+	}
+
+	/**
+	 * Replaces the key of the given entry. A smaller key takes O(1) time;
+	 * a larger one takes O(log n) amortized time.
+	 *
+	 * @param entry within which the key will be replaced
+	 * @param key to replace the existing key in the entry
+	 * @return the old key formerly associated with the entry
+	 * @throws InvalidEntryException if the entry is not in this heap
+	 * @throws InvalidKeyException if the key is invalid
+	 */
+	public K replaceKey(Entry<K,V> entry, K key) throws InvalidEntryException, InvalidKeyException {
+		Node<K,V> node = this.checkAndConvertEntry(entry);
+		this.checkKey(key);
+		K oldKey = node._key;
+		if (_comparator.compare(key, oldKey) <= 0) {
+			node._key = key;
+			if (node != _root) {
+				this.detach(node);
+				_root = this.link(_root, node);
+			}
+			return oldKey;
+		}
+		// a larger key may break order with the node's children, so they are repaired without it
+		Node<K,V> children = this.combineChildren(node);
+		if (node == _root) {
+			_root = children;
+		} else {
+			this.detach(node);
+			_root = this.link(_root, children);
+		}
+		node._child = null;
+		node._key = key;
+		_root = this.link(_root, node);
+		return oldKey;
+	}
+
+	/**
+	 * Replaces the value of the given entry. This method runs in O(1) time.
+	 *
+	 * @param entry within which the value will be replaced
+	 * @param value to replace the existing value in the entry
+	 * @return the old value formerly associated with the entry
+	 * @throws InvalidEntryException if the entry is not in this heap
+	 */
+	public V replaceValue(Entry<K,V> entry, V value) throws InvalidEntryException {
+		Node<K,V> node = this.checkAndConvertEntry(entry);
+		V oldValue = node._value;
+		node._value = value;
+		return oldValue;
+	}
+
+	/**
+	 * @param entry which is checked for validity with respect to this heap
+	 * @return the entry cast as a node of this heap
+	 * @throws InvalidEntryException if the entry is not currently stored in this heap
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<K,V> checkAndConvertEntry(Entry<K,V> entry) throws InvalidEntryException {
+		if (!(entry instanceof Node) || ((Node<K,V>) entry)._owner != this) {
+			throw new InvalidEntryException("Invalid entry");
+		}
+		return (Node<K,V>) entry;
+	}
+
+	/**
+	 * @throws InvalidKeyException if the key is null or cannot be compared by the comparator
+	 */
+	private void checkKey(K key) throws InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		try {
+			_comparator.compare(key, key);
+		} catch (ClassCastException e) {
+			throw new InvalidKeyException("Key is not a valid object type");
+		}
+	}
+
+	/**
+	 * Links two detached trees by making the one with the larger root the first child of the other
+	 *
+	 * @return the root of the linked tree
+	 */
+	private Node<K,V> link(Node<K,V> one, Node<K,V> two) {
+		if (one == null) {
+			return two;
+		}
+		if (two == null) {
+			return one;
+		}
+		if (_comparator.compare(two._key, one._key) < 0) {
+			Node<K,V> smaller = two;
+			two = one;
+			one = smaller;
+		}
+		two._previous = one;
+		two._sibling = one._child;
+		if (one._child != null) {
+			one._child._previous = two;
+		}
+		one._child = two;
+		one._previous = null;
+		one._sibling = null;
+		return one;
+	}
+
+	/**
+	 * Unlinks a node, with its subtree, from its parent or previous sibling
+	 */
+	private void detach(Node<K,V> node) {
+		if (node._previous._child == node) {
+			node._previous._child = node._sibling;
+		} else {
+			node._previous._sibling = node._sibling;
+		}
+		if (node._sibling != null) {
+			node._sibling._previous = node._previous;
+		}
+		node._previous = null;
+		node._sibling = null;
+	}
+
+	/**
+	 * Combines the children of a node into one tree with the two-pass rule: adjacent children are linked in
+	 * pairs from left to right, then the pairs are linked into one tree from right to left. The pairs are
+	 * chained through their sibling pointers, so nothing is allocated.
+	 *
+	 * @return the root of the combined tree, or null if the node has no children
+	 */
+	private Node<K,V> combineChildren(Node<K,V> node) {
+		Node<K,V> child = node._child;
+		node._child = null;
+		Node<K,V> pairs = null;
+		while (child != null) {
+			Node<K,V> first = child;
+			Node<K,V> second = first._sibling;
+			child = second == null ? null : second._sibling;
+			first._sibling = null;
+			if (second != null) {
+				second._sibling = null;
+			}
+			Node<K,V> pair = this.link(first, second);
+			pair._sibling = pairs;
+			pairs = pair;
+		}
+		Node<K,V> combined = null;
+		while (pairs != null) {
+			Node<K,V> next = pairs._sibling;
+			pairs._sibling = null;
+			combined = this.link(combined, pairs);
+			pairs = next;
+		}
+		if (combined != null) {
+			combined._previous = null;
+		}
+		return combined;
+	}
+
+	/**
+	 * Clears a removed node's links and ownership, so it no longer counts as an entry of this heap
+	 */
+	private void release(Node<K,V> node) {
+		node._owner = null;
+		node._child = null;
+		node._sibling = null;
+		node._previous = null;
+		_size--;
+	}
+
+	/**
+	 * A heap node, which is also the entry handed out for its key and value
+	 */
+	private static class Node<K,V> implements Entry<K,V> {
+
+		private MyPairingHeap<K,V> _owner;
+		private K _key;
+		private V _value;
+		private Node<K,V> _child;
+		private Node<K,V> _sibling;
+		private Node<K,V> _previous;
+
+		private Node(MyPairingHeap<K,V> owner, K key, V value) {
+			_owner = owner;
+			_key = key;
+			_value = value;
+		}
+
+		public K getKey() {
+			return _key;
+		}
+
+		public V getValue() {
+			return _value;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the MyPairingHeap implementation, in particular that entries stay valid handles through
+ * removals and key changes in both directions.
+ */
+public class MyPairingHeapTest {
+
+	/**
+	 * Tests random inserts, removals and key changes against a sorted list of the expected keys
+	 */
+	@Test
+	public void randomOperationsTest() {
+		MyPairingHeap<Integer, Integer> heap = new MyPairingHeap<Integer, Integer>(new IntegerComparator());
+		Random random = new Random(41);
+		List<Entry<Integer, Integer>> entries = new ArrayList<Entry<Integer, Integer>>();
+		for (int i = 0; i < 5000; i++) {
+			int operation = random.nextInt(10);
+			if (entries.isEmpty() || operation < 4) {
+				entries.add(heap.insert(random.nextInt(10000), i));
+			} else if (operation < 6) {
+				Entry<Integer, Integer> min = heap.removeMin();
+				assertThat(min.getKey(), is(this.smallestKey(entries)));
+				entries.remove(min);
+			} else if (operation < 7) {
+				heap.remove(entries.remove(random.nextInt(entries.size())));
+			} else {
+				Entry<Integer, Integer> entry = entries.get(random.nextInt(entries.size()));
+				int key = entry.getKey();
+				assertThat(heap.replaceKey(entry, random.nextInt(10000)), is(key));
+			}
+			assertThat(heap.size(), is(entries.size()));
+		}
+
+		List<Integer> keys = new ArrayList<Integer>();
+		for (Entry<Integer, Integer> entry : entries) {
+			keys.add(entry.getKey());
+		}
+		Collections.sort(keys);
+		for (int key : keys) {
+			assertThat(heap.removeMin().getKey(), is(key));
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	/**
+	 * Tests that an Invalid Entry Exception is raised for an entry that was already removed
+	 */
+	@Test(expected = InvalidEntryException.class)
+	public void removeTwiceExceptionTest() {
+		MyPairingHeap<Integer, String> heap = new MyPairingHeap<Integer, String>(new IntegerComparator());
+		heap.insert(1, "a");
+		Entry<Integer, String> entry = heap.insert(2, "b");
+		heap.remove(entry);
+		heap.remove(entry);
+	}
+
+	/**
+	 * Tests that an Empty Priority Queue Exception is raised when removing from an empty heap
+	 */
+	@Test(expected = EmptyPriorityQueueException.class)
+	public void removeMinExceptionTest() {
+		new MyPairingHeap<Integer, String>(new IntegerComparator()).removeMin();
+	}
+
+	private int smallestKey(List<Entry<Integer, Integer>> entries) {
+		int smallest = Integer.MAX_VALUE;
+		for (Entry<Integer, Integer> entry : entries) {
+			smallest = Math.min(smallest, entry.getKey());
+		}
+		return smallest;
+	}
+}
@@ -0,0 +1,200 @@
+package heap;
+
+import java.util.Comparator;
+
+import net.datastructures.*;
+
+/**
+ * An immutable priority queue implemented as a persistent leftist heap.
+ * No operation changes a heap: insert, removeMin and merge return a new
+ * heap, and every older version stays valid. A new version only copies the
+ * nodes on the right spine it merged along, which is O(log n) nodes, and
+ * shares every other node with the version it came from.
+ *
+ * Every node stores its rank, the length of its right spine, and a node's
+ * left child never has a smaller rank than its right child. The right spine
+ * is therefore at most log(n + 1) long, and merging walks only right
+ * spines, so insert, removeMin and merge run in O(log n) time.
+ *
+ * Nodes are never modified after they are built and all their fields are
+ * final, so a heap can be handed to any number of threads and read without
+ * locking. MyPublishedHeap builds a mutable queue on top of this.
+ */
+
+public class MyPersistentHeap<K,V> {
+
+	private final Comparator<K> _comparator;
+	private final Node<K,V> _root;
+	private final int _size;
+
+	/**
+	 * Creates an empty persistent heap with the given comparator.
+	 *
+	 * @param comparator to be used for heap keys
+	 * @throws IllegalArgumentException if null comparator is passed in
+	 */
+	public MyPersistentHeap(Comparator<K> comparator) throws IllegalArgumentException {
+		this(comparator, null, 0);
+		if (comparator == null) {
+			throw new IllegalArgumentException("comparator is null");
+		}
+	}
+
+	private MyPersistentHeap(Comparator<K> comparator, Node<K,V> root, int size) {
+		_comparator = comparator;
+		_root = root;
+		_size = size;
+	}
+
+	/**
+	 * @return the comparator used for this heap's keys
+	 */
+	public Comparator<K> getComparator() {
+		return _comparator;
+	}
+
+	/**
+	 * Returns the size of the heap. This method runs in O(1) time.
+	 *
+	 * @return the number of entries stored
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Returns whether the heap is empty. This method runs in O(1) time.
+	 *
+	 * @return true if the heap is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _root == null;
+	}
+
+	/**
+	 * Returns the entry with minimum key. This method runs in O(1) time.
+	 *
+	 * @return the entry with the minimum key in the heap
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		if (_root == null) {
+			throw new EmptyPriorityQueueException("Empty Heap");
+		}
+		return _root;
+	}
+
+	/**
+	 * Returns a heap holding this heap's entries and the given key-value
+	 * pair. This heap is left unchanged. This method runs in O(log n) time.
+	 *
+	 * @param key of the new entry
+	 * @param value of the new entry
+	 * @return the new version of the heap
+	 * @throws InvalidKeyException if the key is null or cannot be compared by the comparator
+	 */
+	public MyPersistentHeap<K,V> insert(K key, V value) throws InvalidKeyException {
+		if (key == null) {
+			throw new InvalidKeyException("Key is null");
+		}
+		try {
+			_comparator.compare(key, key);
+		} catch (ClassCastException e) {
+			throw new InvalidKeyException("Key is not a valid object type");
+		}
+		Node<K,V> node = new Node<K,V>(key, value, null, null);
+		return new MyPersistentHeap<K,V>(_comparator, this.merge(_root, node), _size + 1);
+	}
+
+	/**
+	 * Returns a heap holding this heap's entries except the one with the
+	 * minimum key, which is min(). This heap is left unchanged. This method
+	 * runs in O(log n) time.
+	 *
+	 * @return the new version of the heap
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public MyPersistentHeap<K,V> removeMin() throws EmptyPriorityQueueException {
+		if (_root == null) {
+			throw new EmptyPriorityQueueException("Empty Heap");
+		}
+		return new MyPersistentHeap<K,V>(_comparator, this.merge(_root._left, _root._right), _size - 1);
+	}
+
+	/**
+	 * Returns a heap holding the entries of both heaps. Neither heap is
+	 * changed. This method runs in O(log n) time.
+	 *
+	 * @param other heap whose entries are merged in
+	 * @return the merged heap
+	 * @throws IllegalArgumentException if the other heap uses a different comparator
+	 */
+	public MyPersistentHeap<K,V> merge(MyPersistentHeap<K,V> other) throws IllegalArgumentException {
+		if (other._comparator != _comparator) {
+			throw new IllegalArgumentException("Heaps use different comparators");
+		}
+		return new MyPersistentHeap<K,V>(_comparator, this.merge(_root, other._root), _size + other._size);
+	}
+
+	/**
+	 * Merges two leftist heaps along their right spines, building new nodes on the way back up and reusing
+	 * every left subtree as it is
+	 */
+	private Node<K,V> merge(Node<K,V> one, Node<K,V> two) {
+		if (one == null) {
+			return two;
+		}
+		if (two == null) {
+			return one;
+		}
+		if (_comparator.compare(two._key, one._key) < 0) {
+			Node<K,V> smaller = two;
+			two = one;
+			one = smaller;
+		}
+		return new Node<K,V>(one._key, one._value, one._left, this.merge(one._right, two));
+	}
+
+	/**
+	 * @return the rank of the node, which is 0 for a missing node
+	 */
+	private static int rank(Node<?,?> node) {
+		return node == null ? 0 : node._rank;
+	}
+
+	/**
+	 * An immutable heap node, which is also the entry handed out for its key and value
+	 */
+	private static class Node<K,V> implements Entry<K,V> {
+
+		private final K _key;
+		private final V _value;
+		private final Node<K,V> _left;
+		private final Node<K,V> _right;
+		private final int _rank;
+
+		/**
+		 * Builds a node from two children, putting the one with the larger rank on the left
+		 */
+		private Node(K key, V value, Node<K,V> one, Node<K,V> two) {
+			_key = key;
+			_value = value;
+			if (rank(one) >= rank(two)) {
+				_left = one;
+				_right = two;
+			} else {
+				_left = two;
+				_right = one;
+			}
+			_rank = rank(_right) + 1;
+		}
+
+		public K getKey() {
+			return _key;
+		}
+
+		public V getValue() {
+			return _value;
+		}
+	}
+}
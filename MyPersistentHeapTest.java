@@ -0,0 +1,159 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the MyPersistentHeap implementation and the MyPublishedHeap built on it, in particular that
+ * old versions never change and that readers see consistent snapshots while writers run.
+ */
+public class MyPersistentHeapTest {
+
+	/**
+	 * Tests that entries come out in order and that every older version keeps its contents
+	 */
+	@Test
+	public void versionsTest() {
+		MyPersistentHeap<Integer, String> empty = new MyPersistentHeap<Integer, String>(new IntegerComparator());
+		MyPersistentHeap<Integer, String> heap = empty;
+		List<MyPersistentHeap<Integer, String>> versions = new ArrayList<MyPersistentHeap<Integer, String>>();
+		List<Integer> keys = new ArrayList<Integer>();
+		Random random = new Random(39);
+		for (int i = 0; i < 300; i++) {
+			versions.add(heap);
+			int key = random.nextInt(1000);
+			keys.add(key);
+			heap = heap.insert(key, "v" + key);
+		}
+
+		for (int i = 0; i < versions.size(); i++) {
+			MyPersistentHeap<Integer, String> version = versions.get(i);
+			assertThat(version.size(), is(i));
+			if (i > 0) {
+				assertThat(version.min().getKey(), is(Collections.min(keys.subList(0, i))));
+			}
+		}
+		Collections.sort(keys);
+		MyPersistentHeap<Integer, String> drained = heap;
+		for (int key : keys) {
+			assertThat(drained.min().getKey(), is(key));
+			assertThat(drained.min().getValue(), is("v" + key));
+			drained = drained.removeMin();
+		}
+		assertTrue(drained.isEmpty());
+		assertThat(heap.size(), is(300));
+		assertTrue(empty.isEmpty());
+	}
+
+	/**
+	 * Tests that merging two heaps gives every entry of both and leaves them unchanged
+	 */
+	@Test
+	public void mergeTest() {
+		IntegerComparator comparator = new IntegerComparator();
+		MyPersistentHeap<Integer, String> odd = new MyPersistentHeap<Integer, String>(comparator);
+		MyPersistentHeap<Integer, String> even = new MyPersistentHeap<Integer, String>(comparator);
+		for (int i = 0; i < 50; i++) {
+			odd = odd.insert(2 * i + 1, "odd");
+			even = even.insert(2 * i, "even");
+		}
+		MyPersistentHeap<Integer, String> merged = odd.merge(even);
+
+		assertThat(merged.size(), is(100));
+		for (int i = 0; i < 100; i++) {
+			assertThat(merged.min().getKey(), is(i));
+			merged = merged.removeMin();
+		}
+		assertThat(odd.min().getKey(), is(1));
+		assertThat(even.size(), is(50));
+	}
+
+	/**
+	 * Tests that an Empty Priority Queue Exception is raised when removing from an empty heap
+	 */
+	@Test(expected = EmptyPriorityQueueException.class)
+	public void removeMinExceptionTest() {
+		new MyPersistentHeap<Integer, String>(new IntegerComparator()).insert(1, "a").removeMin().removeMin();
+	}
+
+	/**
+	 * Tests that an Invalid Key Exception is raised for a null key
+	 */
+	@Test(expected = InvalidKeyException.class)
+	public void insertExceptionTest() {
+		new MyPersistentHeap<Integer, String>(new IntegerComparator()).insert(null, "a");
+	}
+
+	/**
+	 * Tests that concurrent writers neither lose nor duplicate entries, while a reader's snapshots always stay
+	 * consistent with themselves
+	 */
+	@Test
+	public void publishedConcurrentTest() throws InterruptedException {
+		final MyPublishedHeap<Integer, String> queue = new MyPublishedHeap<Integer, String>(new IntegerComparator());
+		final Map<Integer, Boolean> removed = new ConcurrentHashMap<Integer, Boolean>();
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final AtomicBoolean consistent = new AtomicBoolean(true);
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				while (writing.get()) {
+					MyPersistentHeap<Integer, String> snapshot = queue.snapshot();
+					int size = snapshot.size();
+					int previous = Integer.MIN_VALUE;
+					for (int i = 0; i < Math.min(size, 20); i++) {
+						if (snapshot.min().getKey() < previous) {
+							consistent.set(false);
+						}
+						previous = snapshot.min().getKey();
+						snapshot = snapshot.removeMin();
+					}
+					if (snapshot.size() != Math.max(0, size - 20)) {
+						consistent.set(false);
+					}
+				}
+			}
+		});
+		List<Thread> writers = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t * 5000;
+			writers.add(new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 5000; i++) {
+						queue.insert(offset + i, "v");
+						if (i % 2 == 1) {
+							removed.put(queue.removeMin().getKey(), Boolean.TRUE);
+						}
+					}
+				}
+			}));
+		}
+		reader.start();
+		for (Thread writer : writers) {
+			writer.start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		writing.set(false);
+		reader.join();
+
+		assertTrue(consistent.get());
+		assertThat(removed.size(), is(10000));
+		assertThat(queue.size(), is(10000));
+		while (!queue.isEmpty()) {
+			assertTrue(removed.put(queue.removeMin().getKey(), Boolean.TRUE) == null);
+		}
+		assertThat(removed.size(), is(20000));
+	}
+}
@@ -0,0 +1,102 @@
+package heap;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.datastructures.*;
+
+/**
+ * A mutable priority queue whose current contents are a MyPersistentHeap
+ * published through a single AtomicReference. Writers build the next
+ * version from the current one and install it with compareAndSet, retrying
+ * if another writer got there first, so updates are lock-free and each
+ * costs O(log n) per attempt.
+ *
+ * Readers never coordinate with writers. snapshot() is one volatile read,
+ * and the version it returns never changes, so a monitoring thread can
+ * look at min, size or merge it into a report while writers carry on.
+ */
+
+public class MyPublishedHeap<K,V> implements PriorityQueue<K,V> {
+
+	private final AtomicReference<MyPersistentHeap<K,V>> _current;
+
+	/**
+	 * Creates an empty published heap with the given comparator.
+	 *
+	 * @param comparator to be used for heap keys
+	 * @throws IllegalArgumentException if null comparator is passed in
+	 */
+	public MyPublishedHeap(Comparator<K> comparator) throws IllegalArgumentException {
+		_current = new AtomicReference<MyPersistentHeap<K,V>>(new MyPersistentHeap<K,V>(comparator));
+	}
+
+	/**
+	 * Returns the current version of the heap, which later updates leave
+	 * unchanged. This method runs in O(1) time.
+	 *
+	 * @return an immutable snapshot of the heap
+	 */
+	public MyPersistentHeap<K,V> snapshot() {
+		return _current.get();
+	}
+
+	/**
+	 * @return the number of entries in the current version
+	 */
+	public int size() {
+		return _current.get().size();
+	}
+
+	/**
+	 * @return true if the current version is empty; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _current.get().isEmpty();
+	}
+
+	/**
+	 * Returns but does not remove the entry with minimum key.
+	 * This method runs in O(1) time.
+	 *
+	 * @return the entry with the minimum key in the current version
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		return _current.get().min();
+	}
+
+	/**
+	 * Inserts a key-value pair and publishes the new version.
+	 * This method runs in O(log n) time per attempt.
+	 *
+	 * @param key to be used as the key the heap is sorting with
+	 * @param value stored with the associated key in the heap
+	 * @return an entry holding the key and value
+	 * @throws InvalidKeyException if the key is null or cannot be compared by the comparator
+	 */
+	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+		while (true) {
+			MyPersistentHeap<K,V> current = _current.get();
+			if (_current.compareAndSet(current, current.insert(key, value))) {
+				return new MyHeapEntry<K,V>(key, value);
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the entry with the minimum key, publishing the new
+	 * version. This method runs in O(log n) time per attempt.
+	 *
+	 * @return the entry with the minimum key, now removed
+	 * @throws EmptyPriorityQueueException if the heap is empty
+	 */
+	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+		while (true) {
+			MyPersistentHeap<K,V> current = _current.get();
+			if (_current.compareAndSet(current, current.removeMin())) {
+				return current.min();
+			}
+		}
+	}
+}
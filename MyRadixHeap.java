@@ -0,0 +1,198 @@
+package heap;
+
+import java.util.Arrays;
+
+/**
+ * A radix heap of graph nodes (Ahuja, Mehlhorn, Orlin and Tarjan, 1990),
+ * a monotone priority queue: every key pushed must be at least the last key
+ * popped, which Dijkstra's algorithm guarantees. Bucket i holds the keys
+ * whose highest bit differing from the last popped key is bit i - 1, and
+ * bucket 0 holds keys equal to it. pop takes from bucket 0, and when that
+ * is empty it finds the smallest key in the first non-empty bucket, makes
+ * it the last popped key and redistributes that bucket, whose keys then all
+ * fall into lower buckets. Each key moves down at most 64 times, so pop
+ * runs in O(log C) amortized time for keys spanning a range of C, and push
+ * runs in O(1) time with no comparisons against other keys.
+ *
+ * A decrease-key pushes a second copy of the node into a lower bucket and
+ * leaves the old copy where it is. Every copy carries the node's push count
+ * at the time it was made, and only the copy with the node's current count
+ * is live; the others are stale and are dropped when they are reached. A
+ * key alone could not tell them apart, since a node popped and pushed again
+ * at an old key would bring its stale copy back to life.
+ */
+
+public class MyRadixHeap implements MyNodeQueue {
+
+	private static final int BUCKETS = 65;
+
+	private final int[][] _nodes;
+	private final long[][] _bucketKeys;
+	private final int[][] _bucketVersions;
+	private final int[] _counts;
+	private final long[] _keys;
+	private final int[] _versions;
+	private final boolean[] _queued;
+	private long _last;
+	private int _size;
+
+	/**
+	 * Creates an empty radix heap for the nodes of a graph.
+	 *
+	 * @param nodes the number of nodes that may be queued
+	 * @throws IllegalArgumentException if the node count is negative
+	 */
+	public MyRadixHeap(int nodes) throws IllegalArgumentException {
+		if (nodes < 0) {
+			throw new IllegalArgumentException("Invalid node count");
+		}
+		_nodes = new int[BUCKETS][16];
+		_bucketKeys = new long[BUCKETS][16];
+		_bucketVersions = new int[BUCKETS][16];
+		_counts = new int[BUCKETS];
+		_keys = new long[nodes];
+		_versions = new int[nodes];
+		_queued = new boolean[nodes];
+		_last = Long.MIN_VALUE;
+		_size = 0;
+	}
+
+	/**
+	 * Returns whether the heap is empty. This method runs in O(1) time.
+	 *
+	 * @return true if no node is queued; false otherwise
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * @return the number of nodes queued, not counting stale copies
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Queues a node or lowers its key. This method runs in O(1) amortized time.
+	 *
+	 * @param node to queue
+	 * @param key of the node
+	 * @throws IllegalArgumentException if the key is smaller than the last key popped
+	 */
+	public void push(int node, long key) throws IllegalArgumentException {
+		if (key < _last) {
+			throw new IllegalArgumentException("Key is smaller than the last key popped");
+		}
+		if (_queued[node]) {
+			if (key >= _keys[node]) {
+				return;
+			}
+		} else {
+			_queued[node] = true;
+			_size++;
+		}
+		_keys[node] = key;
+		_versions[node]++;
+		this.append(this.bucketOf(key), node, key, _versions[node]);
+	}
+
+	/**
+	 * Removes the node with the smallest key. This method runs in O(log C) amortized time.
+	 *
+	 * @return the node removed
+	 * @throws IllegalStateException if the heap is empty
+	 */
+	public int pop() throws IllegalStateException {
+		if (_size == 0) {
+			throw new IllegalStateException("The Heap is Empty");
+		}
+		while (true) {
+			while (_counts[0] > 0) {
+				int index = --_counts[0];
+				int node = _nodes[0][index];
+				if (this.isLive(node, _bucketVersions[0][index])) {
+					_queued[node] = false;
+					_size--;
+					return node;
+				}
+			}
+			this.refill();
+		}
+	}
+
+	/**
+	 * Removes every queued node. This method runs in O(n) time for the n copies stored.
+	 */
+	public void clear() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			for (int i = 0; i < _counts[bucket]; i++) {
+				_queued[_nodes[bucket][i]] = false;
+			}
+			_counts[bucket] = 0;
+		}
+		_last = Long.MIN_VALUE;
+		_size = 0;
+	}
+
+	/**
+	 * Finds the first non-empty bucket, makes its smallest live key the last
+	 * popped key and redistributes its live copies into lower buckets
+	 */
+	private void refill() {
+		int bucket = 1;
+		long min = Long.MAX_VALUE;
+		for (; bucket < BUCKETS; bucket++) {
+			for (int i = 0; i < _counts[bucket]; i++) {
+				if (this.isLive(_nodes[bucket][i], _bucketVersions[bucket][i])) {
+					min = Math.min(min, _bucketKeys[bucket][i]);
+				}
+			}
+			if (min != Long.MAX_VALUE) {
+				break;
+			}
+			_counts[bucket] = 0;
+		}
+		_last = min;
+		int count = _counts[bucket];
+		_counts[bucket] = 0;
+		int[] nodes = _nodes[bucket];
+		long[] keys = _bucketKeys[bucket];
+		int[] versions = _bucketVersions[bucket];
+		for (int i = 0; i < count; i++) {
+			if (this.isLive(nodes[i], versions[i])) {
+				this.append(this.bucketOf(keys[i]), nodes[i], keys[i], versions[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return whether a stored copy of a node is the one made by the node's latest push
+	 */
+	private boolean isLive(int node, int version) {
+		return _queued[node] && _versions[node] == version;
+	}
+
+	/**
+	 * @return the bucket of a key relative to the last popped key
+	 */
+	private int bucketOf(long key) {
+		return key == _last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ _last);
+	}
+
+	/**
+	 * Adds a copy of a node to a bucket, growing the bucket if it is full
+	 */
+	private void append(int bucket, int node, long key, int version) {
+		int count = _counts[bucket];
+		if (count == _nodes[bucket].length) {
+			_nodes[bucket] = Arrays.copyOf(_nodes[bucket], 2 * count);
+			_bucketKeys[bucket] = Arrays.copyOf(_bucketKeys[bucket], 2 * count);
+			_bucketVersions[bucket] = Arrays.copyOf(_bucketVersions[bucket], 2 * count);
+		}
+		_nodes[bucket][count] = node;
+		_bucketKeys[bucket][count] = key;
+		_bucketVersions[bucket][count] = version;
+		_counts[bucket] = count + 1;
+	}
+}
@@ -0,0 +1,129 @@
+package heap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Reads back what MyRecordWriter wrote, through large sequential reads from a
+ * FileChannel. The reader never reads past the number of bytes it was given,
+ * so a file can end with a trailer that the caller reads itself, and it can
+ * keep a running CRC32 of every byte read.
+ */
+
+class MyRecordReader {
+
+	private final FileChannel _channel;
+	private final ByteBuffer _buffer;
+	private final CRC32 _checksum;
+	private long _unread;
+
+	/**
+	 * @param channel to read from, starting at its current position
+	 * @param length the number of bytes that belong to the records
+	 * @param bufferSize the number of bytes requested from the channel at a time
+	 */
+	MyRecordReader(FileChannel channel, long length, int bufferSize) {
+		this(channel, length, ByteBuffer.allocateDirect(bufferSize), true);
+	}
+
+	/**
+	 * @param channel to read from, starting at its current position
+	 * @param length the number of bytes that belong to the records
+	 * @param buffer which the reader fills from the channel, cleared first; the caller may reuse it once
+	 *        the reader is no longer used
+	 * @param checksummed whether to keep a CRC32 of the bytes read
+	 */
+	MyRecordReader(FileChannel channel, long length, ByteBuffer buffer, boolean checksummed) {
+		_channel = channel;
+		_buffer = buffer;
+		_buffer.clear();
+		_buffer.limit(0);
+		_checksum = checksummed ? new CRC32() : null;
+		_unread = length;
+	}
+
+	/**
+	 * @return true if there are bytes left that have not been read
+	 */
+	boolean hasRemaining() {
+		return _buffer.hasRemaining() || _unread > 0;
+	}
+
+	/**
+	 * @return the CRC32 of every byte read from the channel so far
+	 * @throws IllegalStateException if the reader does not keep a checksum
+	 */
+	long checksum() throws IllegalStateException {
+		if (_checksum == null) {
+			throw new IllegalStateException("reader keeps no checksum");
+		}
+		return _checksum.getValue();
+	}
+
+	/**
+	 * Reads a length-prefixed object written by MyRecordWriter.writeObject
+	 */
+	<T> T readObject(MyCodec<T> codec) throws IOException {
+		int length = this.require(4).getInt();
+		if (length < 0) {
+			return null;
+		}
+		ByteBuffer buffer = this.require(length);
+		int start = buffer.position();
+		T object = codec.read(buffer, length);
+		buffer.position(start + length);
+		return object;
+	}
+
+	/**
+	 * @return a buffer with at least the given number of bytes available to read
+	 * @throws IOException if the records end first
+	 */
+	ByteBuffer require(int bytes) throws IOException {
+		if (_buffer.remaining() >= bytes) {
+			return _buffer;
+		}
+		if (bytes > _buffer.remaining() + _unread) {
+			throw new IOException("Records are truncated");
+		}
+		if (bytes <= _buffer.capacity()) {
+			_buffer.compact();
+			while (_buffer.position() < bytes) {
+				this.fill(_buffer);
+			}
+			_buffer.flip();
+			return _buffer;
+		}
+		// too large for the shared buffer, so it gets a buffer of its own
+		ByteBuffer large = ByteBuffer.allocate(bytes);
+		large.put(_buffer);
+		while (large.hasRemaining()) {
+			this.fill(large);
+		}
+		large.flip();
+		return large;
+	}
+
+	/**
+	 * Reads from the channel into the buffer without going past the records
+	 */
+	private void fill(ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		buffer.limit((int) Math.min(limit, start + _unread));
+		int read = _channel.read(buffer);
+		buffer.limit(limit);
+		if (read < 0) {
+			throw new IOException("Records are truncated");
+		}
+		_unread -= read;
+		if (_checksum != null) {
+			ByteBuffer readBytes = buffer.duplicate();
+			readBytes.position(start);
+			readBytes.limit(start + read);
+			_checksum.update(readBytes);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package heap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Buffers length-prefixed objects into large sequential writes to a
+ * FileChannel, optionally keeping a running CRC32 of every byte written.
+ * Shared by MyHeapSnapshot, which stores the checksum, and the run files of
+ * MyExternalHeap, which are only ever read back by the heap that wrote them
+ * and skip it; MyRecordReader reads the records back.
+ */
+
+class MyRecordWriter {
+
+	private final FileChannel _channel;
+	private final ByteBuffer _buffer;
+	private final CRC32 _checksum;
+
+	/**
+	 * @param channel to write to, starting at its current position, keeping a checksum
+	 * @param bufferSize the number of bytes collected before each write
+	 */
+	MyRecordWriter(FileChannel channel, int bufferSize) {
+		this(channel, ByteBuffer.allocateDirect(bufferSize), true);
+	}
+
+	/**
+	 * @param channel to write to, starting at its current position
+	 * @param buffer collecting the bytes before each write, cleared first; the caller may reuse it once this
+	 *        writer is flushed
+	 * @param checksummed whether to keep a CRC32 of the bytes written
+	 */
+	MyRecordWriter(FileChannel channel, ByteBuffer buffer, boolean checksummed) {
+		_channel = channel;
+		_buffer = buffer;
+		_buffer.clear();
+		_checksum = checksummed ? new CRC32() : null;
+	}
+
+	/**
+	 * @return the buffer, flushed first if fewer than the given number of bytes are left in it
+	 */
+	ByteBuffer reserve(int bytes) throws IOException {
+		if (_buffer.remaining() < bytes) {
+			this.flush();
+		}
+		return _buffer;
+	}
+
+	/**
+	 * Writes the object's length and bytes, or a length of -1 for null
+	 */
+	<T> void writeObject(T object, MyCodec<T> codec) throws IOException {
+		if (object == null) {
+			this.reserve(4).putInt(-1);
+			return;
+		}
+		int size = codec.size(object);
+		if (size + 4 <= _buffer.capacity()) {
+			ByteBuffer buffer = this.reserve(size + 4);
+			buffer.putInt(size);
+			codec.write(object, buffer);
+			return;
+		}
+		// too large for the shared buffer, so it gets a buffer of its own
+		this.flush();
+		ByteBuffer large = ByteBuffer.allocate(size + 4);
+		large.putInt(size);
+		codec.write(object, large);
+		large.flip();
+		this.drain(large);
+	}
+
+	/**
+	 * Writes out the buffered bytes
+	 */
+	void flush() throws IOException {
+		_buffer.flip();
+		this.drain(_buffer);
+		_buffer.clear();
+	}
+
+	/**
+	 * @return the CRC32 of every byte flushed so far
+	 * @throws IllegalStateException if the writer does not keep a checksum
+	 */
+	long checksum() throws IllegalStateException {
+		if (_checksum == null) {
+			throw new IllegalStateException("writer keeps no checksum");
+		}
+		return _checksum.getValue();
+	}
+
+	/**
+	 * Adds the buffer's remaining bytes to the checksum, if kept, and writes them all to the channel
+	 */
+	private void drain(ByteBuffer buffer) throws IOException {
+		if (_checksum != null) {
+			_checksum.update(buffer.duplicate());
+		}
+		while (buffer.hasRemaining()) {
+			_channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package heap;
+
+/**
+ * A growable array stored as fixed-size chunks, meant as the backing store
+ * of an array-laid-out complete binary tree. Index i lives in chunk
+ * i >>> chunkBits at offset i & (chunkSize - 1), so get and set cost one
+ * shift and one mask more than a plain array.
+ *
+ * Growing past the last chunk allocates exactly one new chunk; elements
+ * are never copied, so adding at the last slot is O(1) worst case apart
+ * from the chunk directory. That directory holds one pointer per chunk
+ * and doubles when it fills, so it copies n / chunkSize pointers at most
+ * and stays small even for 100M-element trees.
+ *
+ * Removing at the last slot is also O(1). When the array shrinks below a
+ * chunk boundary, the chunk it just left is kept as a spare, and it is only
+ * released once the array shrinks past the next boundary down. A queue that
+ * hovers around a boundary therefore does not allocate and free the same
+ * chunk over and over, while a sustained drain gives its memory back.
+ */
+
+public class MySegmentedArray<E> {
+
+	private static final int DEFAULT_CHUNK_BITS = 12;
+
+	private final int _chunkBits;
+	private final int _chunkMask;
+	private Object[][] _chunks;
+	private int _chunkCount;
+	private int _size;
+
+	/**
+	 * Creates an empty array with chunks of 4096 elements.
+	 */
+	public MySegmentedArray() {
+		this(DEFAULT_CHUNK_BITS, 0);
+	}
+
+	/**
+	 * Creates an empty array with chunks of 2^chunkBits elements and a chunk
+	 * directory large enough for the expected number of elements.
+	 *
+	 * @param chunkBits the base-2 logarithm of the chunk size, from 1 to 30
+	 * @param expectedSize the number of elements the directory is sized for
+	 * @throws IllegalArgumentException if chunkBits is out of range or expectedSize is negative
+	 */
+	public MySegmentedArray(int chunkBits, int expectedSize) throws IllegalArgumentException {
+		if (chunkBits < 1 || chunkBits > 30) {
+			throw new IllegalArgumentException("chunkBits must be between 1 and 30");
+		}
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("expectedSize is negative");
+		}
+		_chunkBits = chunkBits;
+		_chunkMask = (1 << chunkBits) - 1;
+		_chunks = new Object[Math.max(4, (int) (((long) expectedSize + _chunkMask) >>> chunkBits))][];
+		_chunkCount = 0;
+		_size = 0;
+	}
+
+	/**
+	 * @return the number of elements stored
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * @return the number of chunks currently allocated, including a spare one
+	 */
+	public int chunkCount() {
+		return _chunkCount;
+	}
+
+	/**
+	 * Returns the element at the given index. This method runs in O(1) time.
+	 *
+	 * @param index of the element, which must be less than size()
+	 * @return the element at that index
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		return (E) _chunks[index >>> _chunkBits][index & _chunkMask];
+	}
+
+	/**
+	 * Replaces the element at the given index. This method runs in O(1) time.
+	 *
+	 * @param index of the element, which must be less than size()
+	 * @param element to store at that index
+	 */
+	public void set(int index, E element) {
+		_chunks[index >>> _chunkBits][index & _chunkMask] = element;
+	}
+
+	/**
+	 * Appends an element after the last one, allocating a chunk if the last
+	 * one is full. This method runs in O(1) time, apart from the occasional
+	 * doubling of the chunk directory.
+	 *
+	 * @param element to append
+	 * @return the index the element was stored at
+	 * @throws IllegalStateException if the array already holds Integer.MAX_VALUE elements
+	 */
+	public int add(E element) throws IllegalStateException {
+		if (_size == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Array is full");
+		}
+		int chunk = _size >>> _chunkBits;
+		if (chunk == _chunkCount) {
+			if (chunk == _chunks.length) {
+				Object[][] larger = new Object[_chunks.length * 2][];
+				System.arraycopy(_chunks, 0, larger, 0, _chunkCount);
+				_chunks = larger;
+			}
+			_chunks[chunk] = new Object[_chunkMask + 1];
+			_chunkCount++;
+		}
+		int index = _size;
+		_chunks[chunk][index & _chunkMask] = element;
+		_size++;
+		return index;
+	}
+
+	/**
+	 * Removes and returns the last element, releasing the spare chunk once
+	 * the array has shrunk a full chunk below it. This method runs in O(1) time.
+	 *
+	 * @return the element formerly stored last
+	 * @throws IllegalStateException if the array is empty
+	 */
+	public E removeLast() throws IllegalStateException {
+		if (_size == 0) {
+			throw new IllegalStateException("Array is empty");
+		}
+		_size--;
+		E element = this.get(_size);
+		this.set(_size, null);
+		// chunks in use, plus one spare kept against a quick refill
+		int keep = ((_size + _chunkMask) >>> _chunkBits) + 1;
+		if (_chunkCount > keep) {
+			_chunkCount--;
+			_chunks[_chunkCount] = null;
+		}
+		return element;
+	}
+}
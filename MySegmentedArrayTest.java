@@ -0,0 +1,112 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class tests the MySegmentedArray implementation with tiny chunks, so that chunk boundaries are crossed
+ * after only a few elements.
+ */
+public class MySegmentedArrayTest {
+
+	/**
+	 * Tests that elements are stored and replaced across chunk boundaries
+	 */
+	@Test
+	public void addGetSetTest() {
+		MySegmentedArray<Integer> array = new MySegmentedArray<Integer>(2, 0);
+		for (int i = 0; i < 50; i++) {
+			assertThat(array.add(i), is(i));
+		}
+		assertThat(array.size(), is(50));
+		for (int i = 0; i < 50; i++) {
+			assertThat(array.get(i), is(i));
+			array.set(i, -i);
+		}
+		for (int i = 49; i >= 0; i--) {
+			assertThat(array.removeLast(), is(-i));
+		}
+		assertThat(array.size(), is(0));
+	}
+
+	/**
+	 * Tests that chunks are allocated one at a time, that a spare chunk is kept while shrinking, and that it is
+	 * released once the array shrinks past the next boundary
+	 */
+	@Test
+	public void chunkAllocationTest() {
+		MySegmentedArray<String> array = new MySegmentedArray<String>(2, 0);
+		assertThat(array.chunkCount(), is(0));
+		array.add("a");
+		assertThat(array.chunkCount(), is(1));
+		for (int i = 1; i < 8; i++) {
+			array.add("a");
+		}
+		assertThat(array.chunkCount(), is(2));
+		array.add("a");
+		assertThat(array.chunkCount(), is(3));
+
+		// back down to 8: the third chunk is kept as the spare
+		array.removeLast();
+		assertThat(array.chunkCount(), is(3));
+		// hovering around the boundary reuses the spare
+		array.add("a");
+		array.removeLast();
+		array.add("a");
+		array.removeLast();
+		assertThat(array.chunkCount(), is(3));
+		// the second chunk empties, so the third is released and the second becomes the spare
+		for (int i = 0; i < 4; i++) {
+			array.removeLast();
+		}
+		assertThat(array.chunkCount(), is(2));
+		for (int i = 0; i < 4; i++) {
+			array.removeLast();
+		}
+		assertThat(array.chunkCount(), is(1));
+	}
+
+	/**
+	 * Tests that an Illegal State Exception is raised when removing from an empty array
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void removeLastExceptionTest() {
+		MySegmentedArray<String> array = new MySegmentedArray<String>();
+		array.add("a");
+		array.removeLast();
+		array.removeLast();
+	}
+
+	/**
+	 * Tests that an Illegal Argument Exception is raised for an out-of-range chunk size
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void chunkBitsExceptionTest() {
+		new MySegmentedArray<String>(0, 10);
+	}
+
+	/**
+	 * Tests a min-max heap large enough to span several chunks of its backing store
+	 */
+	@Test
+	public void largeMinMaxHeapTest() {
+		MyMinMaxHeap<Integer, Integer> heap = new MyMinMaxHeap<Integer, Integer>(new IntegerComparator());
+		Random random = new Random(33);
+		for (int i = 0; i < 20000; i++) {
+			heap.insert(random.nextInt(100000), i);
+		}
+		int low = Integer.MIN_VALUE;
+		int high = Integer.MAX_VALUE;
+		while (heap.size() > 1) {
+			int min = heap.removeMin().getKey();
+			int max = heap.removeMax().getKey();
+			assertTrue(min >= low && max <= high && min <= max);
+			low = min;
+			high = max;
+		}
+	}
+}
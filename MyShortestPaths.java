@@ -0,0 +1,333 @@
+package heap;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Shortest path searches on a MyGraph: Dijkstra's algorithm, A* and
+ * bidirectional Dijkstra, each running on a pluggable MyNodeQueue so the
+ * fastest queue can be picked for a graph's shape (MyGraphBenchmark
+ * measures them). Edge weights are non-negative, so a node's distance is
+ * final once it is popped, and a search never pushes a key smaller than the
+ * last one it popped.
+ *
+ * An instance is made for one graph and reuses its distance arrays and
+ * queues from search to search. A search records the nodes it reaches, and
+ * the next search resets only those, so a short query on a huge graph costs
+ * time proportional to the part of the graph it explores, not to the whole
+ * graph. An instance is not thread-safe; use one per thread.
+ */
+
+public class MyShortestPaths {
+
+	/**
+	 * The distance returned for a node that cannot be reached
+	 */
+	public static final long UNREACHABLE = Long.MAX_VALUE;
+
+	private final MyGraph _graph;
+	private final IntFunction<MyNodeQueue> _queues;
+	private Frontier _forward;
+	private Frontier _backward;
+	private int _meetForward;
+	private int _meetBackward;
+	private int _settled;
+
+	/**
+	 * Creates a searcher for a graph.
+	 *
+	 * @param graph to search
+	 * @param queues creates an empty node queue for a given number of nodes
+	 * @throws IllegalArgumentException if the graph or queue factory is null
+	 */
+	public MyShortestPaths(MyGraph graph, IntFunction<MyNodeQueue> queues) throws IllegalArgumentException {
+		if (graph == null || queues == null) {
+			throw new IllegalArgumentException("graph and queues must not be null");
+		}
+		_graph = graph;
+		_queues = queues;
+		_meetForward = -1;
+		_meetBackward = -1;
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm from a source to every node.
+	 * This method runs in O(n + m) time plus the cost of the queue operations.
+	 *
+	 * @param source node to start from
+	 * @return the distance of every node from the source, UNREACHABLE for those it cannot reach
+	 * @throws IllegalArgumentException if the source is not a node
+	 */
+	public long[] distancesFrom(int source) throws IllegalArgumentException {
+		this.checkNode(source);
+		Frontier forward = this.forward();
+		this.start(forward, source, null);
+		_meetForward = -1;
+		_meetBackward = -1;
+		while (!forward._queue.isEmpty()) {
+			forward.scan(forward._queue.pop(), null, null);
+		}
+		_settled = forward._settled;
+		return Arrays.copyOf(forward._distances, _graph.nodeCount());
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm from a source until the target is reached.
+	 *
+	 * @param source node to start from
+	 * @param target node to reach
+	 * @return the length of a shortest path, or UNREACHABLE if there is none
+	 * @throws IllegalArgumentException if the source or target is not a node
+	 */
+	public long distance(int source, int target) throws IllegalArgumentException {
+		return this.aStarDistance(source, target, null);
+	}
+
+	/**
+	 * Runs A* from a source until the target is reached: nodes are popped in
+	 * order of their distance plus the heuristic's estimate of their distance
+	 * to the target, so the search heads towards the target. The heuristic
+	 * must be consistent (its estimate for a node is never more than an
+	 * edge's weight plus its estimate for the edge's target, and 0 for the
+	 * target itself), as MyGraph.gridHeuristic is; otherwise the path found
+	 * may not be shortest and MyRadixHeap rejects the keys.
+	 *
+	 * @param source node to start from
+	 * @param target node to reach
+	 * @param heuristic estimates the distance from a node to the target; null runs plain Dijkstra
+	 * @return the length of a shortest path, or UNREACHABLE if there is none
+	 * @throws IllegalArgumentException if the source or target is not a node
+	 */
+	public long aStarDistance(int source, int target, IntToLongFunction heuristic) throws IllegalArgumentException {
+		this.checkNode(source);
+		this.checkNode(target);
+		Frontier forward = this.forward();
+		this.start(forward, source, heuristic);
+		_meetForward = -1;
+		_meetBackward = -1;
+		long distance = UNREACHABLE;
+		while (!forward._queue.isEmpty()) {
+			int node = forward._queue.pop();
+			if (node == target) {
+				distance = forward._distances[node];
+				_meetForward = node;
+				break;
+			}
+			forward.scan(node, heuristic, null);
+		}
+		_settled = forward._settled;
+		return distance;
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm from the source and, on the reversed graph,
+	 * from the target, alternating between them. Whenever a search reaches a
+	 * node the other has reached, the two halves make a path, and the
+	 * shortest such path is kept. The searches stop when the distances they
+	 * last popped add up to at least that path's length, since no path
+	 * through an unpopped node can be shorter. Each search covers a ball
+	 * about half the radius, which on road-like graphs settles about half as
+	 * many nodes as one search.
+	 *
+	 * @param source node to start from
+	 * @param target node to reach
+	 * @return the length of a shortest path, or UNREACHABLE if there is none
+	 * @throws IllegalArgumentException if the source or target is not a node
+	 */
+	public long bidirectionalDistance(int source, int target) throws IllegalArgumentException {
+		this.checkNode(source);
+		this.checkNode(target);
+		Frontier forward = this.forward();
+		Frontier backward = this.backward();
+		this.start(forward, source, null);
+		this.start(backward, target, null);
+		_meetForward = source == target ? source : -1;
+		_meetBackward = _meetForward;
+		long best = source == target ? 0 : UNREACHABLE;
+		boolean forwardTurn = true;
+		while (!forward._queue.isEmpty() && !backward._queue.isEmpty()
+				&& forward._last + backward._last < best) {
+			Frontier current = forwardTurn ? forward : backward;
+			Frontier other = forwardTurn ? backward : forward;
+			int node = current._queue.pop();
+			current._last = current._distances[node];
+			long length = current.scan(node, null, other);
+			if (length < best) {
+				best = length;
+				_meetForward = forwardTurn ? current._meetNear : current._meetFar;
+				_meetBackward = forwardTurn ? current._meetFar : current._meetNear;
+			}
+			forwardTurn = !forwardTurn;
+		}
+		_settled = forward._settled + backward._settled;
+		return best;
+	}
+
+	/**
+	 * Returns a shortest path found by the last distance, aStarDistance or
+	 * bidirectionalDistance call. This method runs in O(p) time for a path of p nodes.
+	 *
+	 * @return the nodes of the path from source to target, or an empty array if there was none
+	 */
+	public int[] lastPath() {
+		if (_meetForward < 0) {
+			return new int[0];
+		}
+		// when both searches met at one node, the backward half starts after it
+		int backwardStart = _meetBackward == _meetForward ? _backward._parents[_meetForward] : _meetBackward;
+		int forwardLength = 0;
+		for (int node = _meetForward; node >= 0; node = _forward._parents[node]) {
+			forwardLength++;
+		}
+		int backwardLength = 0;
+		for (int node = backwardStart; node >= 0; node = _backward._parents[node]) {
+			backwardLength++;
+		}
+		int[] path = new int[forwardLength + backwardLength];
+		int index = forwardLength;
+		for (int node = _meetForward; node >= 0; node = _forward._parents[node]) {
+			path[--index] = node;
+		}
+		index = forwardLength;
+		for (int node = backwardStart; node >= 0; node = _backward._parents[node]) {
+			path[index++] = node;
+		}
+		return path;
+	}
+
+	/**
+	 * @return the number of nodes the last search settled, over both directions for a bidirectional search
+	 */
+	public int getSettled() {
+		return _settled;
+	}
+
+	/**
+	 * @return the graph searched
+	 */
+	public MyGraph getGraph() {
+		return _graph;
+	}
+
+	/**
+	 * @return the forward search state, created on first use
+	 */
+	private Frontier forward() {
+		if (_forward == null) {
+			_forward = new Frontier(_graph, _queues.apply(_graph.nodeCount()));
+		}
+		return _forward;
+	}
+
+	/**
+	 * @return the backward search state on the reversed graph, created on first use
+	 */
+	private Frontier backward() {
+		if (_backward == null) {
+			_backward = new Frontier(_graph.reverse(), _queues.apply(_graph.nodeCount()));
+		}
+		return _backward;
+	}
+
+	/**
+	 * Resets a search and queues its start node
+	 */
+	private void start(Frontier frontier, int node, IntToLongFunction heuristic) {
+		frontier.reset();
+		frontier.reach(node, 0, -1, heuristic == null ? 0 : heuristic.applyAsLong(node));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the node is not in the graph
+	 */
+	private void checkNode(int node) throws IllegalArgumentException {
+		if (node < 0 || node >= _graph.nodeCount()) {
+			throw new IllegalArgumentException("Node is not in the graph");
+		}
+	}
+
+	/**
+	 * The state of one search direction: tentative distances and parents,
+	 * the queue, and the list of nodes reached, which reset clears
+	 */
+	private static class Frontier {
+
+		private final MyGraph _graph;
+		private final MyNodeQueue _queue;
+		private final long[] _distances;
+		private final int[] _parents;
+		private final int[] _reached;
+		private int _reachedCount;
+		private int _settled;
+		private long _last;
+		private int _meetNear;
+		private int _meetFar;
+
+		private Frontier(MyGraph graph, MyNodeQueue queue) {
+			_graph = graph;
+			_queue = queue;
+			_distances = new long[graph.nodeCount()];
+			Arrays.fill(_distances, UNREACHABLE);
+			_parents = new int[graph.nodeCount()];
+			_reached = new int[graph.nodeCount()];
+		}
+
+		/**
+		 * Forgets the nodes reached by the previous search and empties the queue
+		 */
+		private void reset() {
+			for (int i = 0; i < _reachedCount; i++) {
+				_distances[_reached[i]] = UNREACHABLE;
+			}
+			_reachedCount = 0;
+			_settled = 0;
+			_last = 0;
+			_queue.clear();
+		}
+
+		/**
+		 * Records a shorter distance to a node and queues it with the given key
+		 */
+		private void reach(int node, long distance, int parent, long key) {
+			if (_distances[node] == UNREACHABLE) {
+				_reached[_reachedCount++] = node;
+			}
+			_distances[node] = distance;
+			_parents[node] = parent;
+			_queue.push(node, key);
+		}
+
+		/**
+		 * Relaxes the edges of a popped node. If another search is given, each
+		 * edge into a node that search has reached closes a path, and the
+		 * shortest one is returned, with its ends in meetNear and meetFar.
+		 *
+		 * @return the length of the shortest path closed, or UNREACHABLE
+		 */
+		private long scan(int node, IntToLongFunction heuristic, Frontier other) {
+			_settled++;
+			long distance = _distances[node];
+			long best = UNREACHABLE;
+			if (other != null && other._distances[node] != UNREACHABLE) {
+				best = distance + other._distances[node];
+				_meetNear = node;
+				_meetFar = node;
+			}
+			for (int edge = _graph.firstEdge(node), end = _graph.endEdge(node); edge < end; edge++) {
+				int next = _graph.target(edge);
+				long through = distance + _graph.weight(edge);
+				if (through < _distances[next]) {
+					this.reach(next, through, node, heuristic == null ? through : through + heuristic.applyAsLong(next));
+				}
+				if (other != null && other._distances[next] != UNREACHABLE
+						&& through + other._distances[next] < best) {
+					best = through + other._distances[next];
+					_meetNear = node;
+					_meetFar = next;
+				}
+			}
+			return best;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import org.junit.Test;
+
+/**
+ * This class tests MyGraph and the searches of MyShortestPaths, with every queue backend, against
+ * Bellman-Ford distances on small graphs.
+ */
+public class MyShortestPathsTest {
+
+	/**
+	 * Tests building a graph from edges, its CSR layout and its reverse
+	 */
+	@Test
+	public void graphTest() {
+		MyGraph graph = MyGraph.fromEdges(4, new int[] {2, 0, 0, 1}, new int[] {3, 1, 2, 3}, new int[] {5, 1, 4, 2});
+		assertThat(graph.nodeCount(), is(4));
+		assertThat(graph.edgeCount(), is(4));
+		assertThat(graph.endEdge(0) - graph.firstEdge(0), is(2));
+		assertThat(graph.target(graph.firstEdge(1)), is(3));
+		assertThat(graph.weight(graph.firstEdge(2)), is(5));
+		assertThat(graph.endEdge(3) - graph.firstEdge(3), is(0));
+
+		MyGraph reverse = graph.reverse();
+		assertThat(reverse.endEdge(3) - reverse.firstEdge(3), is(2));
+		assertThat(reverse.endEdge(0) - reverse.firstEdge(0), is(0));
+		assertSame(graph, reverse.reverse());
+
+		MyGraph grid = MyGraph.grid(30, 20, 7);
+		assertThat(grid.nodeCount(), is(600));
+		for (int u = 0; u < grid.nodeCount(); u++) {
+			for (int e = grid.firstEdge(u); e < grid.endEdge(u); e++) {
+				int v = grid.target(e);
+				assertThat(Math.abs(u % 30 - v % 30) + Math.abs(u / 30 - v / 30), is(1));
+				assertTrue(grid.weight(e) >= MyGraph.GRID_MIN_WEIGHT);
+			}
+		}
+		assertThat(MyGraph.grid(30, 20, 7).edgeCount(), is(grid.edgeCount()));
+	}
+
+	/**
+	 * Tests every search with every backend on random grids and random sparse graphs
+	 */
+	@Test
+	public void searchTest() {
+		Random random = new Random(42);
+		MyGraph[] graphs = {MyGraph.grid(25, 20, 1), MyGraph.grid(1, 50, 2), this.randomGraph(random, 300, 900)};
+		for (Map.Entry<String,IntFunction<MyNodeQueue>> backend : MyGraphBenchmark.backends().entrySet()) {
+			for (MyGraph graph : graphs) {
+				MyShortestPaths paths = new MyShortestPaths(graph, backend.getValue());
+				for (int query = 0; query < 20; query++) {
+					int source = random.nextInt(graph.nodeCount());
+					long[] expected = this.bellmanFord(graph, source);
+					assertTrue(backend.getKey(), Arrays.equals(paths.distancesFrom(source), expected));
+
+					int target = query == 0 ? source : random.nextInt(graph.nodeCount());
+					assertThat(paths.distance(source, target), is(expected[target]));
+					this.checkPath(graph, paths.lastPath(), source, target, expected[target]);
+					assertThat(paths.bidirectionalDistance(source, target), is(expected[target]));
+					this.checkPath(graph, paths.lastPath(), source, target, expected[target]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests A* with the grid heuristic, which must find the same distances while settling fewer nodes
+	 */
+	@Test
+	public void aStarTest() {
+		MyGraph grid = MyGraph.grid(40, 40, 3);
+		Random random = new Random(43);
+		for (Map.Entry<String,IntFunction<MyNodeQueue>> backend : MyGraphBenchmark.backends().entrySet()) {
+			MyShortestPaths paths = new MyShortestPaths(grid, backend.getValue());
+			long dijkstraSettled = 0;
+			long aStarSettled = 0;
+			for (int query = 0; query < 30; query++) {
+				int source = random.nextInt(grid.nodeCount());
+				int target = random.nextInt(grid.nodeCount());
+				long distance = paths.distance(source, target);
+				dijkstraSettled += paths.getSettled();
+				assertThat(paths.aStarDistance(source, target, MyGraph.gridHeuristic(40, target)), is(distance));
+				aStarSettled += paths.getSettled();
+				this.checkPath(grid, paths.lastPath(), source, target, distance);
+			}
+			assertTrue(backend.getKey(), aStarSettled < dijkstraSettled);
+		}
+	}
+
+	/**
+	 * Tests searches between nodes with no path, and the exceptions for nodes outside the graph
+	 */
+	@Test
+	public void unreachableAndExceptionTest() {
+		MyGraph graph = MyGraph.fromEdges(3, new int[] {0}, new int[] {1}, new int[] {4});
+		MyShortestPaths paths = new MyShortestPaths(graph, MyGraphBenchmark.backends().get("radix heap"));
+		assertThat(paths.distance(1, 0), is(MyShortestPaths.UNREACHABLE));
+		assertThat(paths.lastPath().length, is(0));
+		assertThat(paths.bidirectionalDistance(0, 2), is(MyShortestPaths.UNREACHABLE));
+		assertThat(paths.bidirectionalDistance(0, 1), is(4L));
+		assertThat(paths.distancesFrom(2)[0], is(MyShortestPaths.UNREACHABLE));
+		// distancesFrom finds no single path, so the path of the search before it is forgotten
+		assertThat(paths.lastPath().length, is(0));
+
+		try {
+			paths.distance(0, 3);
+			fail("a target outside the graph should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			MyGraph.fromEdges(2, new int[] {0}, new int[] {1}, new int[] {-1});
+			fail("a negative weight should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new MyGraph(new int[] {0, 2}, new int[] {0}, new int[] {1});
+			fail("offsets past the last edge should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * @return a graph with random edges, some of weight 0
+	 */
+	private MyGraph randomGraph(Random random, int nodes, int edges) {
+		int[] from = new int[edges];
+		int[] to = new int[edges];
+		int[] weights = new int[edges];
+		for (int i = 0; i < edges; i++) {
+			from[i] = random.nextInt(nodes);
+			to[i] = random.nextInt(nodes);
+			weights[i] = random.nextInt(50);
+		}
+		return MyGraph.fromEdges(nodes, from, to, weights);
+	}
+
+	/**
+	 * @return the distances from a source computed by Bellman-Ford
+	 */
+	private long[] bellmanFord(MyGraph graph, int source) {
+		long[] distances = new long[graph.nodeCount()];
+		Arrays.fill(distances, MyShortestPaths.UNREACHABLE);
+		distances[source] = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int u = 0; u < graph.nodeCount(); u++) {
+				if (distances[u] == MyShortestPaths.UNREACHABLE) {
+					continue;
+				}
+				for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					if (distances[u] + graph.weight(e) < distances[graph.target(e)]) {
+						distances[graph.target(e)] = distances[u] + graph.weight(e);
+						changed = true;
+					}
+				}
+			}
+		}
+		return distances;
+	}
+
+	/**
+	 * Checks that a path runs from source to target along edges of the graph and has the expected length
+	 */
+	private void checkPath(MyGraph graph, int[] path, int source, int target, long length) {
+		if (length == MyShortestPaths.UNREACHABLE) {
+			assertThat(path.length, is(0));
+			return;
+		}
+		assertThat(path[0], is(source));
+		assertThat(path[path.length - 1], is(target));
+		long total = 0;
+		for (int i = 0; i + 1 < path.length; i++) {
+			long best = Long.MAX_VALUE;
+			for (int e = graph.firstEdge(path[i]); e < graph.endEdge(path[i]); e++) {
+				if (graph.target(e) == path[i + 1]) {
+					best = Math.min(best, graph.weight(e));
+				}
+			}
+			assertTrue(best != Long.MAX_VALUE);
+			total += best;
+		}
+		assertThat(total, is(length));
+	}
+}
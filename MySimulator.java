@@ -0,0 +1,222 @@
+package heap;
+
+import net.datastructures.*;
+
+/**
+ * A discrete-event simulation kernel. Events are Runnables scheduled at
+ * long timestamps on a pluggable event list, which is any adaptable
+ * priority queue keyed by time whose entries stay valid handles while they
+ * are stored: MyMinMaxHeap, MyPairingHeap and MyCalendarQueue all qualify,
+ * and MyEventListBenchmark measures which is fastest for a workload.
+ * schedule returns the event's entry in the event list, which reschedule
+ * and cancel take back.
+ *
+ * step advances the clock to the earliest pending timestamp and runs every
+ * event due at that time as one batch, including events that the batch
+ * itself schedules for the same time. Events due at the same time run in
+ * the order the event list returns them; MyCalendarQueue returns them in
+ * the order they were scheduled.
+ *
+ * The kernel counts the events and batches it runs and the time spent
+ * running them, which gives its throughput in events per second.
+ */
+
+public class MySimulator {
+
+	private final AdaptablePriorityQueue<Long,Runnable> _events;
+	private long _now;
+	private long _eventsRun;
+	private long _batchesRun;
+	private long _runNanos;
+
+	/**
+	 * Creates a simulator with its clock at time 0.
+	 *
+	 * @param events the empty event list to schedule on
+	 * @throws IllegalArgumentException if the event list is null or not empty
+	 */
+	public MySimulator(AdaptablePriorityQueue<Long,Runnable> events) throws IllegalArgumentException {
+		if (events == null || !events.isEmpty()) {
+			throw new IllegalArgumentException("event list must be empty");
+		}
+		_events = events;
+		_now = 0;
+	}
+
+	/**
+	 * @return the current simulation time
+	 */
+	public long now() {
+		return _now;
+	}
+
+	/**
+	 * @return the number of events waiting to run
+	 */
+	public int pending() {
+		return _events.size();
+	}
+
+	/**
+	 * Schedules an event. This method costs one event list insert.
+	 *
+	 * @param time at which the event runs, which must not be in the past
+	 * @param event to run
+	 * @return the event's entry, a handle for reschedule and cancel
+	 * @throws IllegalArgumentException if the time is in the past or the event is null
+	 */
+	public Entry<Long,Runnable> schedule(long time, Runnable event) throws IllegalArgumentException {
+		this.checkTime(time);
+		if (event == null) {
+			throw new IllegalArgumentException("event is null");
+		}
+		return _events.insert(time, event);
+	}
+
+	/**
+	 * Schedules an event after a delay from now.
+	 *
+	 * @param delay after which the event runs
+	 * @param event to run
+	 * @return the event's entry, a handle for reschedule and cancel
+	 * @throws IllegalArgumentException if the delay is negative or the event is null
+	 */
+	public Entry<Long,Runnable> scheduleAfter(long delay, Runnable event) throws IllegalArgumentException {
+		if (delay < 0) {
+			throw new IllegalArgumentException("delay is negative");
+		}
+		return this.schedule(_now + delay, event);
+	}
+
+	/**
+	 * Moves a pending event to a new time. This method costs one event list replaceKey.
+	 *
+	 * @param event the entry returned when the event was scheduled
+	 * @param time at which the event now runs, which must not be in the past
+	 * @return the time the event was scheduled at before
+	 * @throws InvalidEntryException if the event is not pending
+	 * @throws IllegalArgumentException if the time is in the past
+	 */
+	public long reschedule(Entry<Long,Runnable> event, long time)
+			throws InvalidEntryException, IllegalArgumentException {
+		this.checkTime(time);
+		return _events.replaceKey(event, time);
+	}
+
+	/**
+	 * Cancels a pending event. This method costs one event list remove.
+	 *
+	 * @param event the entry returned when the event was scheduled
+	 * @throws InvalidEntryException if the event is not pending
+	 */
+	public void cancel(Entry<Long,Runnable> event) throws InvalidEntryException {
+		_events.remove(event);
+	}
+
+	/**
+	 * Advances the clock to the earliest pending time and runs every event
+	 * due then, including those the batch schedules for the same time.
+	 *
+	 * @return the number of events run, or 0 if nothing was pending
+	 */
+	public int step() {
+		if (_events.isEmpty()) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		int run = this.runBatch();
+		_runNanos += System.nanoTime() - start;
+		return run;
+	}
+
+	/**
+	 * Runs batches until no event is pending or the next one is after the
+	 * given time, then leaves the clock at that time (or where it is, if the
+	 * last batch ran later).
+	 *
+	 * @param time to run until, inclusive
+	 * @return the number of events run
+	 */
+	public long runUntil(long time) {
+		long start = System.nanoTime();
+		long run = 0;
+		while (!_events.isEmpty() && _events.min().getKey() <= time) {
+			run += this.runBatch();
+		}
+		_now = Math.max(_now, time);
+		_runNanos += System.nanoTime() - start;
+		return run;
+	}
+
+	/**
+	 * Runs batches until no event is pending.
+	 *
+	 * @return the number of events run
+	 */
+	public long run() {
+		long start = System.nanoTime();
+		long run = 0;
+		while (!_events.isEmpty()) {
+			run += this.runBatch();
+		}
+		_runNanos += System.nanoTime() - start;
+		return run;
+	}
+
+	/**
+	 * @return the number of events run since the simulator was created or the counters were reset
+	 */
+	public long getEventsRun() {
+		return _eventsRun;
+	}
+
+	/**
+	 * @return the number of same-time batches run since the simulator was created or the counters were reset
+	 */
+	public long getBatchesRun() {
+		return _batchesRun;
+	}
+
+	/**
+	 * @return the events run per second of wall-clock time spent in step, runUntil and run
+	 */
+	public double getEventsPerSecond() {
+		return _runNanos == 0 ? 0 : _eventsRun * 1e9 / _runNanos;
+	}
+
+	/**
+	 * Resets the event, batch and timing counters to zero
+	 */
+	public void resetCounters() {
+		_eventsRun = 0;
+		_batchesRun = 0;
+		_runNanos = 0;
+	}
+
+	/**
+	 * Advances the clock to the earliest pending time and runs the events due then
+	 *
+	 * @return the number of events run
+	 */
+	private int runBatch() {
+		long time = _events.min().getKey();
+		_now = time;
+		int run = 0;
+		while (!_events.isEmpty() && _events.min().getKey() == time) {
+			_events.removeMin().getValue().run();
+			run++;
+		}
+		_eventsRun += run;
+		_batchesRun++;
+		return run;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the time is before the current time
+	 */
+	private void checkTime(long time) throws IllegalArgumentException {
+		if (time < _now) {
+			throw new IllegalArgumentException("time is in the past");
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests the MySimulator kernel on every event list backend, and the benchmark that chooses between
+ * them.
+ */
+public class MySimulatorTest {
+
+	/**
+	 * Tests that events run in time order, that the clock follows them, and that reschedule and cancel work
+	 */
+	@Test
+	public void scheduleRescheduleCancelTest() {
+		for (Supplier<AdaptablePriorityQueue<Long, Runnable>> backend : MyEventListBenchmark.backends().values()) {
+			final MySimulator simulator = new MySimulator(backend.get());
+			final List<String> log = new ArrayList<String>();
+			simulator.schedule(30, this.logger(simulator, log, "c"));
+			Entry<Long, Runnable> moved = simulator.schedule(10, this.logger(simulator, log, "moved"));
+			Entry<Long, Runnable> cancelled = simulator.schedule(20, this.logger(simulator, log, "cancelled"));
+			simulator.schedule(15, this.logger(simulator, log, "b"));
+			simulator.reschedule(moved, 40);
+			simulator.cancel(cancelled);
+
+			assertThat(simulator.run(), is(3L));
+			assertThat(log.toString(), is("[b@15, c@30, moved@40]"));
+			assertThat(simulator.now(), is(40L));
+			assertThat(simulator.getEventsRun(), is(3L));
+		}
+	}
+
+	/**
+	 * Tests that every event due at one time runs in one batch, including those the batch schedules itself
+	 */
+	@Test
+	public void sameTimeBatchTest() {
+		for (Supplier<AdaptablePriorityQueue<Long, Runnable>> backend : MyEventListBenchmark.backends().values()) {
+			final MySimulator simulator = new MySimulator(backend.get());
+			final List<String> log = new ArrayList<String>();
+			for (int i = 0; i < 3; i++) {
+				simulator.schedule(5, this.logger(simulator, log, "first"));
+			}
+			simulator.schedule(5, new Runnable() {
+				public void run() {
+					simulator.scheduleAfter(0, MySimulatorTest.this.logger(simulator, log, "same"));
+					simulator.scheduleAfter(1, MySimulatorTest.this.logger(simulator, log, "later"));
+				}
+			});
+
+			assertThat(simulator.step(), is(5));
+			assertThat(log.size(), is(4));
+			assertThat(simulator.pending(), is(1));
+			assertThat(simulator.runUntil(100), is(1L));
+			assertThat(simulator.now(), is(100L));
+			assertThat(simulator.getBatchesRun(), is(2L));
+		}
+	}
+
+	/**
+	 * Tests that an Illegal Argument Exception is raised when scheduling in the past
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void scheduleInPastExceptionTest() {
+		MySimulator simulator = new MySimulator(new MyCalendarQueue<Runnable>());
+		simulator.runUntil(10);
+		simulator.schedule(5, this.logger(simulator, new ArrayList<String>(), "late"));
+	}
+
+	/**
+	 * Tests that the benchmark measures every backend and names one of them as the fastest
+	 */
+	@Test
+	public void benchmarkTest() {
+		Map<String, Supplier<AdaptablePriorityQueue<Long, Runnable>>> backends = MyEventListBenchmark.backends();
+		for (Supplier<AdaptablePriorityQueue<Long, Runnable>> backend : backends.values()) {
+			assertTrue(MyEventListBenchmark.measure(backend, 100, 10000, 1) > 0);
+		}
+		assertTrue(backends.containsKey(MyEventListBenchmark.fastest(backends, 100, 10000)));
+	}
+
+	private Runnable logger(final MySimulator simulator, final List<String> log, final String name) {
+		return new Runnable() {
+			public void run() {
+				log.add(name + "@" + simulator.now());
+			}
+		};
+	}
+}
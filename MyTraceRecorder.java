@@ -0,0 +1,299 @@
+package heap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import net.datastructures.*;
+
+/**
+ * Records every operation on an adaptable priority queue to a compact
+ * binary trace file, which MyTraceReplayer replays on any other queue to
+ * compare them on real traffic. The recorder passes each call straight
+ * through to the wrapped queue and returns its results unchanged, so it can
+ * be dropped in front of a production queue.
+ *
+ * Each record is an operation code, the nanoseconds since the previous
+ * record and, where the operation has them, the entry and the key. Entries
+ * are numbered in insert order and written as how many inserts ago they
+ * were made, and keys are written as the difference from the previous key
+ * recorded, both as varints, so a typical record takes 3 to 6 bytes. Keys
+ * must be mapped to longs, which is the identity for Long and Integer keys.
+ * Values are not recorded. Operations that throw are not recorded.
+ *
+ * Records are encoded on the calling thread into a buffer, and full buffers
+ * are written by a background thread (see MyTraceWriter), so the caller
+ * only waits on the disk if the writer falls a whole pool of buffers
+ * behind. close must be called to finish the trace; a trace without its
+ * end record is rejected by the replayer as truncated.
+ */
+
+public class MyTraceRecorder<K,V> implements AdaptablePriorityQueue<K,V> {
+
+	static final int MAGIC = 0x48545243;
+	static final byte VERSION = 1;
+
+	static final byte INSERT = 1;
+	static final byte MIN = 2;
+	static final byte REMOVE_MIN = 3;
+	static final byte REMOVE = 4;
+	static final byte REPLACE_KEY = 5;
+	static final byte REPLACE_VALUE = 6;
+	static final byte END = 7;
+
+	private static final int MAX_RECORD_SIZE = 32;
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_BUFFERS = 4;
+
+	private final AdaptablePriorityQueue<K,V> _queue;
+	private final ToLongFunction<? super K> _keyBits;
+	private final MyTraceWriter _writer;
+	private final Map<Entry<K,V>,Long> _ids;
+	private long _nextId;
+	private long _lastKey;
+	private long _lastNanos;
+	private long _recorded;
+	private boolean _closed;
+
+	/**
+	 * Starts recording a queue with four 64 KB buffers.
+	 *
+	 * @param queue the queue to record, which should be empty so every entry in it is known
+	 * @param keyBits maps a key to the long written to the trace
+	 * @param trace the file to write, replacing any file of that name
+	 * @throws IOException if the trace file cannot be created
+	 * @throws IllegalArgumentException if the queue or key mapping is null
+	 */
+	public MyTraceRecorder(AdaptablePriorityQueue<K,V> queue, ToLongFunction<? super K> keyBits, Path trace)
+			throws IOException, IllegalArgumentException {
+		this(queue, keyBits, trace, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS);
+	}
+
+	/**
+	 * Starts recording a queue.
+	 *
+	 * @param queue the queue to record, which should be empty so every entry in it is known
+	 * @param keyBits maps a key to the long written to the trace
+	 * @param trace the file to write, replacing any file of that name
+	 * @param bufferSize the size of each buffer, at least 64 bytes
+	 * @param buffers the number of buffers, at least 2
+	 * @throws IOException if the trace file cannot be created
+	 * @throws IllegalArgumentException if an argument is null or out of range
+	 */
+	public MyTraceRecorder(AdaptablePriorityQueue<K,V> queue, ToLongFunction<? super K> keyBits, Path trace,
+			int bufferSize, int buffers) throws IOException, IllegalArgumentException {
+		if (queue == null || keyBits == null || trace == null) {
+			throw new IllegalArgumentException("queue, key mapping and trace must not be null");
+		}
+		if (bufferSize < 2 * MAX_RECORD_SIZE || buffers < 2) {
+			throw new IllegalArgumentException("buffers are too small or too few");
+		}
+		_queue = queue;
+		_keyBits = keyBits;
+		_ids = new IdentityHashMap<Entry<K,V>,Long>();
+		_writer = new MyTraceWriter(trace, bufferSize, buffers);
+		ByteBuffer header = _writer.reserve(5);
+		header.putInt(MAGIC);
+		header.put(VERSION);
+		_lastNanos = System.nanoTime();
+	}
+
+	/**
+	 * @return the size of the wrapped queue
+	 */
+	public int size() {
+		return _queue.size();
+	}
+
+	/**
+	 * @return whether the wrapped queue is empty
+	 */
+	public boolean isEmpty() {
+		return _queue.isEmpty();
+	}
+
+	/**
+	 * Records and returns the wrapped queue's min.
+	 *
+	 * @return the entry with the minimum key
+	 * @throws EmptyPriorityQueueException if the queue is empty
+	 * @throws UncheckedIOException if the trace cannot be written
+	 * @throws IllegalStateException if the recorder is closed
+	 */
+	public Entry<K,V> min() throws EmptyPriorityQueueException {
+		this.checkOpen();
+		Entry<K,V> min = _queue.min();
+		this.begin(MIN);
+		return min;
+	}
+
+	/**
+	 * Records and performs an insert on the wrapped queue.
+	 *
+	 * @param key to be used as the key the queue is sorting with
+	 * @param value stored with the associated key
+	 * @return the entry created by the wrapped queue
+	 * @throws InvalidKeyException if the wrapped queue rejects the key
+	 * @throws UncheckedIOException if the trace cannot be written
+	 * @throws IllegalStateException if the recorder is closed
+	 */
+	public Entry<K,V> insert(K key, V value) throws InvalidKeyException {
+		this.checkOpen();
+		Entry<K,V> entry = _queue.insert(key, value);
+		_ids.put(entry, _nextId++);
+		this.putKey(this.begin(INSERT), key);
+		return entry;
+	}
+
+	/**
+	 * Records and performs a removeMin on the wrapped queue.
+	 *
+	 * @return the entry removed
+	 * @throws EmptyPriorityQueueException if the queue is empty
+	 * @throws UncheckedIOException if the trace cannot be written
+	 * @throws IllegalStateException if the recorder is closed
+	 */
+	public Entry<K,V> removeMin() throws EmptyPriorityQueueException {
+		this.checkOpen();
+		Entry<K,V> removed = _queue.removeMin();
+		_ids.remove(removed);
+		this.begin(REMOVE_MIN);
+		return removed;
+	}
+
+	/**
+	 * Records and performs a remove on the wrapped queue.
+	 *
+	 * @param entry to be removed
+	 * @return the entry removed
+	 * @throws InvalidEntryException if the wrapped queue rejects the entry
+	 * @throws UncheckedIOException if the trace cannot be written
+	 * @throws IllegalStateException if the recorder is closed
+	 */
+	public Entry<K,V> remove(Entry<K,V> entry) throws InvalidEntryException {
+		this.checkOpen();
+		Entry<K,V> removed = _queue.remove(entry);
+		long age = this.age(_ids.remove(entry));
+		MyTraceWriter.putVarLong(this.begin(REMOVE), age);
+		return removed;
+	}
+
+	/**
+	 * Records and performs a replaceKey on the wrapped queue.
+	 *
+	 * @param entry within which the key will be replaced
+	 * @param key to replace the existing key in the entry
+	 * @return the old key
+	 * @throws InvalidEntryException if the wrapped queue rejects the entry
+	 * @throws InvalidKeyException if the wrapped queue rejects the key
+	 * @throws UncheckedIOException if the trace cannot be written
+	 * @throws IllegalStateException if the recorder is closed
+	 */
+	public K replaceKey(Entry<K,V> entry, K key) throws InvalidEntryException, InvalidKeyException {
+		this.checkOpen();
+		K oldKey = _queue.replaceKey(entry, key);
+		ByteBuffer buffer = this.begin(REPLACE_KEY);
+		MyTraceWriter.putVarLong(buffer, this.age(_ids.get(entry)));
+		this.putKey(buffer, key);
+		return oldKey;
+	}
+
+	/**
+	 * Records and performs a replaceValue on the wrapped queue.
+	 *
+	 * @param entry within which the value will be replaced
+	 * @param value to replace the existing value in the entry
+	 * @return the old value
+	 * @throws InvalidEntryException if the wrapped queue rejects the entry
+	 * @throws UncheckedIOException if the trace cannot be written
+	 * @throws IllegalStateException if the recorder is closed
+	 */
+	public V replaceValue(Entry<K,V> entry, V value) throws InvalidEntryException {
+		this.checkOpen();
+		V oldValue = _queue.replaceValue(entry, value);
+		MyTraceWriter.putVarLong(this.begin(REPLACE_VALUE), this.age(_ids.get(entry)));
+		return oldValue;
+	}
+
+	/**
+	 * @return the number of operations recorded
+	 */
+	public long getRecorded() {
+		return _recorded;
+	}
+
+	/**
+	 * @return the number of times recording waited for the writer thread to free a buffer
+	 */
+	public long getStalls() {
+		return _writer.getStalls();
+	}
+
+	/**
+	 * Writes the end record, waits for the trace to reach the file and
+	 * closes it. The recorder must not be used afterwards, though the wrapped
+	 * queue can be; closing twice does nothing.
+	 *
+	 * @throws IOException if the trace cannot be written or closed
+	 */
+	public void close() throws IOException {
+		if (_closed) {
+			return;
+		}
+		_closed = true;
+		try {
+			ByteBuffer buffer = _writer.reserve(MAX_RECORD_SIZE);
+			buffer.put(END);
+			MyTraceWriter.putVarLong(buffer, _recorded);
+		} catch (UncheckedIOException e) {
+			_writer.close();
+			throw e.getCause();
+		}
+		_writer.close();
+	}
+
+	/**
+	 * @throws IllegalStateException if the recorder is closed
+	 */
+	private void checkOpen() throws IllegalStateException {
+		if (_closed) {
+			throw new IllegalStateException("recorder is closed");
+		}
+	}
+
+	/**
+	 * Starts a record with its operation code and the time since the previous record
+	 *
+	 * @return the buffer to write the rest of the record to
+	 */
+	private ByteBuffer begin(byte operation) {
+		long now = System.nanoTime();
+		ByteBuffer buffer = _writer.reserve(MAX_RECORD_SIZE);
+		buffer.put(operation);
+		MyTraceWriter.putVarLong(buffer, Math.max(0, now - _lastNanos));
+		_lastNanos = now;
+		_recorded++;
+		return buffer;
+	}
+
+	/**
+	 * Writes a key as the zigzag-encoded difference from the previous key
+	 */
+	private void putKey(ByteBuffer buffer, K key) {
+		long bits = _keyBits.applyAsLong(key);
+		long delta = bits - _lastKey;
+		MyTraceWriter.putVarLong(buffer, (delta << 1) ^ (delta >> 63));
+		_lastKey = bits;
+	}
+
+	/**
+	 * @return how many inserts ago an entry was made, or 0 for an entry this recorder did not see inserted
+	 */
+	private long age(Long id) {
+		return id == null ? 0 : _nextId - id;
+	}
+}
@@ -0,0 +1,244 @@
+package heap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import net.datastructures.*;
+import org.junit.Test;
+
+/**
+ * This class tests that MyTraceRecorder records a queue's operations faithfully and that MyTraceReplayer replays
+ * them on other queues.
+ */
+public class MyTraceRecorderTest {
+
+	private static final ToLongFunction<Long> KEY_BITS = new ToLongFunction<Long>() {
+		public long applyAsLong(Long key) {
+			return key;
+		}
+	};
+
+	private static final LongFunction<Long> KEYS = new LongFunction<Long>() {
+		public Long apply(long bits) {
+			return bits;
+		}
+	};
+
+	private static final ToLongFunction<Integer> INT_KEY_BITS = new ToLongFunction<Integer>() {
+		public long applyAsLong(Integer key) {
+			return key;
+		}
+	};
+
+	private static final LongFunction<Integer> INT_KEYS = new LongFunction<Integer>() {
+		public Integer apply(long bits) {
+			return (int) bits;
+		}
+	};
+
+	/**
+	 * Tests that a recorded workload replayed on every backend leaves the same keys as the recorded queue, with
+	 * small buffers so the writer thread is handed many of them
+	 */
+	@Test
+	public void recordReplayTest() throws IOException {
+		Path trace = this.temporaryFile();
+		List<Long> expected = this.record(new MyMinMaxHeap<Long,String>(MyTraceReplayer.KEY_ORDER), KEY_BITS, KEYS,
+				trace, 43);
+
+		for (AdaptablePriorityQueue<Long,Integer> queue : this.backends()) {
+			MyTraceReplayer.Report report = MyTraceReplayer.replay(trace, queue, KEYS);
+			assertThat(report.getOperations(), is(20000));
+			assertThat(report.getSkipped(), is(0));
+			assertThat(this.drain(queue), is(expected));
+		}
+	}
+
+	/**
+	 * Tests that a workload recorded on a MyHeap replays onto a MyHeap and a pairing heap without skipping an
+	 * operation and leaves the same keys
+	 */
+	@Test
+	public void heapRecordReplayTest() throws IOException {
+		Path trace = this.temporaryFile();
+		List<Integer> expected = this.record(new MyHeap<Integer,String>(new IntegerComparator()), INT_KEY_BITS,
+				INT_KEYS, trace, 44);
+
+		List<AdaptablePriorityQueue<Integer,Integer>> queues = new ArrayList<AdaptablePriorityQueue<Integer,Integer>>();
+		queues.add(new MyHeap<Integer,Integer>(new IntegerComparator()));
+		queues.add(new MyPairingHeap<Integer,Integer>(new IntegerComparator()));
+		for (AdaptablePriorityQueue<Integer,Integer> queue : queues) {
+			MyTraceReplayer.Report report = MyTraceReplayer.replay(trace, queue, INT_KEYS);
+			assertThat(report.getOperations(), is(20000));
+			assertThat(report.getSkipped(), is(0));
+			assertThat(this.drain(queue), is(expected));
+		}
+	}
+
+	/**
+	 * Tests that the report's percentiles are ordered and its rates are positive
+	 */
+	@Test
+	public void reportTest() throws IOException {
+		Path trace = this.temporaryFile();
+		MyTraceRecorder<Long,Integer> recorder = new MyTraceRecorder<Long,Integer>(
+				new MyPairingHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER), KEY_BITS, trace);
+		for (int i = 0; i < 1000; i++) {
+			recorder.insert((long) (i * 7919 % 1000), i);
+		}
+		while (!recorder.isEmpty()) {
+			recorder.removeMin();
+		}
+		recorder.close();
+
+		MyTraceReplayer.Report report = MyTraceReplayer.replay(trace, new MyCalendarQueue<Integer>(), KEYS);
+		assertThat(report.getOperations(), is(2000));
+		assertTrue(report.getLatencyNanos(0) <= report.getLatencyNanos(0.5));
+		assertTrue(report.getLatencyNanos(0.5) <= report.getLatencyNanos(0.99));
+		assertTrue(report.getLatencyNanos(0.99) <= report.getLatencyNanos(1));
+		assertTrue(report.getOperationsPerSecond() > 0);
+		assertTrue(report.getRecordedOperationsPerSecond() > 0);
+		assertTrue(report.getAllocatedBytes() >= -1);
+		assertTrue(report.toString().contains("2,000 ops"));
+	}
+
+	/**
+	 * Tests that operations on entries that are already gone are skipped, not failed
+	 */
+	@Test
+	public void skippedOperationsTest() throws IOException {
+		Path trace = this.temporaryFile();
+		MyPairingHeap<Long,Integer> heap = new MyPairingHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER);
+		Entry<Long,Integer> outside = heap.insert(5L, 0);
+		MyTraceRecorder<Long,Integer> recorder = new MyTraceRecorder<Long,Integer>(heap, KEY_BITS, trace);
+		recorder.insert(7L, 1);
+		recorder.replaceKey(outside, 3L);
+		recorder.remove(outside);
+		recorder.removeMin();
+		recorder.close();
+
+		MyTraceReplayer.Report report = MyTraceReplayer.replay(trace,
+				new MyMinMaxHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER), KEYS);
+		assertThat(report.getOperations(), is(4));
+		assertThat(report.getSkipped(), is(2));
+	}
+
+	/**
+	 * Tests that truncated and foreign files are rejected, as are bad arguments and use after close
+	 */
+	@Test
+	public void exceptionTest() throws IOException {
+		Path trace = this.temporaryFile();
+		MyTraceRecorder<Long,Integer> recorder = new MyTraceRecorder<Long,Integer>(
+				new MyPairingHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER), KEY_BITS, trace);
+		for (int i = 0; i < 100; i++) {
+			recorder.insert((long) i, i);
+		}
+		recorder.close();
+		try {
+			recorder.insert(1L, 1);
+			fail("a closed recorder should reject operations");
+		} catch (IllegalStateException e) {
+		}
+
+		FileChannel channel = FileChannel.open(trace, StandardOpenOption.WRITE);
+		channel.truncate(channel.size() - 2);
+		channel.close();
+		try {
+			MyTraceReplayer.replay(trace, new MyPairingHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER), KEYS);
+			fail("a truncated trace should be rejected");
+		} catch (IOException e) {
+		}
+
+		Files.write(trace, new byte[] {1, 2, 3, 4, 5, 6});
+		try {
+			MyTraceReplayer.replay(trace, new MyPairingHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER), KEYS);
+			fail("a file that is not a trace should be rejected");
+		} catch (IOException e) {
+		}
+
+		MyPairingHeap<Long,Integer> full = new MyPairingHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER);
+		full.insert(1L, 1);
+		try {
+			MyTraceReplayer.replay(trace, full, KEYS);
+			fail("a queue that is not empty should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new MyTraceRecorder<Long,Integer>(full, KEY_BITS, trace, 16, 2);
+			fail("buffers that are too small should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Records 20000 random operations on the queue, removing, rekeying and revaluing stored entries, into the
+	 * trace with small buffers. Keys are drawn between -500000 and 1000000.
+	 *
+	 * @return the keys left in the queue, in order
+	 */
+	private <K> List<K> record(AdaptablePriorityQueue<K,String> queue, ToLongFunction<K> keyBits, LongFunction<K> keys,
+			Path trace, long seed) throws IOException {
+		MyTraceRecorder<K,String> recorder = new MyTraceRecorder<K,String>(queue, keyBits, trace, 256, 2);
+		Random random = new Random(seed);
+		List<Entry<K,String>> entries = new ArrayList<Entry<K,String>>();
+		for (int i = 0; i < 20000; i++) {
+			int operation = random.nextInt(10);
+			if (entries.isEmpty() || operation < 4) {
+				entries.add(recorder.insert(keys.apply(random.nextInt(1000000) - 500000), "v" + i));
+			} else if (operation < 6) {
+				entries.remove(recorder.removeMin());
+			} else if (operation < 7) {
+				recorder.remove(entries.remove(random.nextInt(entries.size())));
+			} else if (operation < 8) {
+				recorder.replaceKey(entries.get(random.nextInt(entries.size())), keys.apply(random.nextInt(1000000)));
+			} else if (operation < 9) {
+				recorder.replaceValue(entries.get(random.nextInt(entries.size())), "w" + i);
+			} else {
+				assertSame(queue.min(), recorder.min());
+			}
+			assertThat(recorder.size(), is(queue.size()));
+		}
+		recorder.close();
+		recorder.close();
+		assertThat(recorder.getRecorded(), is(20000L));
+		return this.drain(queue);
+	}
+
+	/**
+	 * @return one empty queue of each replay backend
+	 */
+	private List<AdaptablePriorityQueue<Long,Integer>> backends() {
+		List<AdaptablePriorityQueue<Long,Integer>> queues = new ArrayList<AdaptablePriorityQueue<Long,Integer>>();
+		queues.add(new MyMinMaxHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER));
+		queues.add(new MyHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER));
+		queues.add(new MyPairingHeap<Long,Integer>(MyTraceReplayer.KEY_ORDER));
+		queues.add(new MyCalendarQueue<Integer>());
+		return queues;
+	}
+
+	private <K,V> List<K> drain(AdaptablePriorityQueue<K,V> queue) {
+		List<K> keys = new ArrayList<K>();
+		while (!queue.isEmpty()) {
+			keys.add(queue.removeMin().getKey());
+		}
+		return keys;
+	}
+
+	private Path temporaryFile() throws IOException {
+		Path file = Files.createTempFile("heap", ".trace");
+		file.toFile().deleteOnExit();
+		return file;
+	}
+}
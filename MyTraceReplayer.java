@@ -0,0 +1,381 @@
+package heap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import net.datastructures.*;
+
+/**
+ * Replays a trace written by MyTraceRecorder on any adaptable priority
+ * queue and reports its throughput, the latency percentiles of its
+ * operations and the bytes it allocated. The trace is decoded into arrays
+ * and every key and value object is created before the clock starts, so
+ * the measurement covers only the queue's own work: one nanoTime pair per
+ * operation and the queue call in between.
+ *
+ * The queue's values are the entry numbers of the trace, which is how
+ * removeMin tells the replayer which entry left. An operation on an entry
+ * that is no longer in the queue or a min or removeMin on an empty queue is
+ * skipped and counted. Allocation is read from the HotSpot per-thread allocation
+ * counter and reported as -1 on JVMs without one.
+ *
+ * Run main with a trace file to replay it on every queue in backends, with
+ * Long keys.
+ */
+
+public class MyTraceReplayer {
+
+	/**
+	 * Orders the Long keys main replays with
+	 */
+	public static final Comparator<Long> KEY_ORDER = new Comparator<Long>() {
+		public int compare(Long one, Long two) {
+			return Long.compare(one, two);
+		}
+	};
+
+	private MyTraceReplayer() {
+	}
+
+	/**
+	 * @return a factory for each queue main replays on, by name
+	 */
+	public static Map<String,Supplier<AdaptablePriorityQueue<Long,Integer>>> backends() {
+		Map<String,Supplier<AdaptablePriorityQueue<Long,Integer>>> backends =
+				new LinkedHashMap<String,Supplier<AdaptablePriorityQueue<Long,Integer>>>();
+		backends.put("min-max heap", new Supplier<AdaptablePriorityQueue<Long,Integer>>() {
+			public AdaptablePriorityQueue<Long,Integer> get() {
+				return new MyMinMaxHeap<Long,Integer>(KEY_ORDER);
+			}
+		});
+		backends.put("binary heap", new Supplier<AdaptablePriorityQueue<Long,Integer>>() {
+			public AdaptablePriorityQueue<Long,Integer> get() {
+				return new MyHeap<Long,Integer>(KEY_ORDER);
+			}
+		});
+		backends.put("pairing heap", new Supplier<AdaptablePriorityQueue<Long,Integer>>() {
+			public AdaptablePriorityQueue<Long,Integer> get() {
+				return new MyPairingHeap<Long,Integer>(KEY_ORDER);
+			}
+		});
+		backends.put("calendar queue", new Supplier<AdaptablePriorityQueue<Long,Integer>>() {
+			public AdaptablePriorityQueue<Long,Integer> get() {
+				return new MyCalendarQueue<Integer>();
+			}
+		});
+		return backends;
+	}
+
+	/**
+	 * Replays a trace on a queue. This method runs in O(t log t) time plus
+	 * the queue's work for a trace of t operations.
+	 *
+	 * @param trace the file written by MyTraceRecorder
+	 * @param queue the empty queue to replay on
+	 * @param keys maps the longs in the trace back to keys
+	 * @return the measurements
+	 * @throws IOException if the trace cannot be read, is not a trace, or is truncated
+	 * @throws IllegalArgumentException if the queue is null or not empty, or the key mapping is null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K> Report replay(Path trace, AdaptablePriorityQueue<K,Integer> queue, LongFunction<K> keys)
+			throws IOException, IllegalArgumentException {
+		if (queue == null || !queue.isEmpty() || keys == null) {
+			throw new IllegalArgumentException("queue must be empty");
+		}
+		Trace decoded = Trace.read(trace);
+		int count = decoded._count;
+		Object[] keyObjects = new Object[count];
+		for (int i = 0; i < count; i++) {
+			byte operation = decoded._operations[i];
+			if (operation == MyTraceRecorder.INSERT || operation == MyTraceRecorder.REPLACE_KEY) {
+				keyObjects[i] = keys.apply(decoded._keys[i]);
+			}
+		}
+		Integer[] values = new Integer[decoded._inserts];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		Entry<K,Integer>[] handles = (Entry<K,Integer>[]) new Entry<?,?>[decoded._inserts];
+		long[] latencies = new long[count];
+		int skipped = 0;
+		int inserted = 0;
+
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			long operationStart = System.nanoTime();
+			int id = decoded._ids[i];
+			Entry<K,Integer> handle = id >= 0 ? handles[id] : null;
+			switch (decoded._operations[i]) {
+			case MyTraceRecorder.INSERT:
+				handles[inserted] = queue.insert((K) keyObjects[i], values[inserted]);
+				inserted++;
+				break;
+			case MyTraceRecorder.MIN:
+				if (queue.isEmpty()) {
+					skipped++;
+				} else {
+					queue.min();
+				}
+				break;
+			case MyTraceRecorder.REMOVE_MIN:
+				if (queue.isEmpty()) {
+					skipped++;
+				} else {
+					handles[queue.removeMin().getValue()] = null;
+				}
+				break;
+			case MyTraceRecorder.REMOVE:
+				if (handle == null) {
+					skipped++;
+				} else {
+					queue.remove(handle);
+					handles[id] = null;
+				}
+				break;
+			case MyTraceRecorder.REPLACE_KEY:
+				if (handle == null) {
+					skipped++;
+				} else {
+					queue.replaceKey(handle, (K) keyObjects[i]);
+				}
+				break;
+			default:
+				if (handle == null) {
+					skipped++;
+				} else {
+					queue.replaceValue(handle, values[id]);
+				}
+				break;
+			}
+			latencies[i] = System.nanoTime() - operationStart;
+		}
+		long nanos = System.nanoTime() - start;
+		long allocatedAfter = allocatedBytes();
+
+		Arrays.sort(latencies);
+		long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+		return new Report(count, skipped, nanos, decoded._recordedNanos, latencies, allocated);
+	}
+
+	/**
+	 * Replays a trace on every backend, each after a warm-up replay, and prints the reports.
+	 *
+	 * @param args the trace file to replay
+	 * @throws IOException if the trace cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("usage: MyTraceReplayer <trace file>");
+			return;
+		}
+		Path trace = Paths.get(args[0]);
+		LongFunction<Long> keys = new LongFunction<Long>() {
+			public Long apply(long bits) {
+				return bits;
+			}
+		};
+		for (Map.Entry<String,Supplier<AdaptablePriorityQueue<Long,Integer>>> backend : backends().entrySet()) {
+			replay(trace, backend.getValue().get(), keys);
+			System.out.println(backend.getKey() + ": " + replay(trace, backend.getValue().get(), keys));
+		}
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread so far, or -1 if the JVM does not count them
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * The measurements of one replay
+	 */
+	public static class Report {
+
+		private final int _operations;
+		private final int _skipped;
+		private final long _nanos;
+		private final long _recordedNanos;
+		private final long[] _latencies;
+		private final long _allocatedBytes;
+
+		private Report(int operations, int skipped, long nanos, long recordedNanos, long[] latencies,
+				long allocatedBytes) {
+			_operations = operations;
+			_skipped = skipped;
+			_nanos = nanos;
+			_recordedNanos = recordedNanos;
+			_latencies = latencies;
+			_allocatedBytes = allocatedBytes;
+		}
+
+		/**
+		 * @return the number of operations in the trace
+		 */
+		public int getOperations() {
+			return _operations;
+		}
+
+		/**
+		 * @return the number of operations skipped because their entry was gone or the queue was empty
+		 */
+		public int getSkipped() {
+			return _skipped;
+		}
+
+		/**
+		 * @return the operations replayed per second
+		 */
+		public double getOperationsPerSecond() {
+			return _nanos == 0 ? 0 : _operations * 1e9 / _nanos;
+		}
+
+		/**
+		 * @return the operations per second of the recorded traffic, from the times in the trace
+		 */
+		public double getRecordedOperationsPerSecond() {
+			return _recordedNanos == 0 ? 0 : _operations * 1e9 / _recordedNanos;
+		}
+
+		/**
+		 * @param quantile between 0 and 1, such as 0.99 for the 99th percentile
+		 * @return the latency of an operation at that quantile, in nanoseconds
+		 * @throws IllegalArgumentException if the quantile is out of range or the trace was empty
+		 */
+		public long getLatencyNanos(double quantile) throws IllegalArgumentException {
+			if (!(quantile >= 0 && quantile <= 1) || _latencies.length == 0) {
+				throw new IllegalArgumentException("quantile must be between 0 and 1");
+			}
+			return _latencies[(int) Math.min(_latencies.length - 1, Math.floor(quantile * _latencies.length))];
+		}
+
+		/**
+		 * @return the bytes allocated during the replay, or -1 if the JVM does not count them
+		 */
+		public long getAllocatedBytes() {
+			return _allocatedBytes;
+		}
+
+		/**
+		 * @return the throughput, percentiles and allocation on one line
+		 */
+		public String toString() {
+			if (_operations == 0) {
+				return "empty trace";
+			}
+			return String.format("%,d ops (%,d skipped), %,.0f ops/sec (recorded %,.0f), "
+					+ "p50 %,d ns, p99 %,d ns, p99.9 %,d ns, max %,d ns, %,d bytes allocated",
+					_operations, _skipped, this.getOperationsPerSecond(), this.getRecordedOperationsPerSecond(),
+					this.getLatencyNanos(0.5), this.getLatencyNanos(0.99), this.getLatencyNanos(0.999),
+					this.getLatencyNanos(1), _allocatedBytes);
+		}
+	}
+
+	/**
+	 * A trace decoded into parallel arrays: the operation, the entry number
+	 * (-1 if none or unknown) and the key of every record
+	 */
+	private static class Trace {
+
+		private byte[] _operations = new byte[1024];
+		private int[] _ids = new int[1024];
+		private long[] _keys = new long[1024];
+		private int _count;
+		private int _inserts;
+		private long _recordedNanos;
+
+		/**
+		 * @throws IOException if the file cannot be read, is not a trace, or is truncated
+		 */
+		private static Trace read(Path file) throws IOException {
+			Trace trace = new Trace();
+			DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+			try {
+				if (data.readInt() != MyTraceRecorder.MAGIC || data.readByte() != MyTraceRecorder.VERSION) {
+					throw new IOException("not a trace file");
+				}
+				long key = 0;
+				while (true) {
+					int operation = data.read();
+					if (operation < 0) {
+						throw new IOException("trace is truncated");
+					}
+					if (operation == MyTraceRecorder.END) {
+						if (readVarLong(data) != trace._count) {
+							throw new IOException("trace is corrupt");
+						}
+						return trace;
+					}
+					if (operation < MyTraceRecorder.INSERT || operation > MyTraceRecorder.REPLACE_VALUE) {
+						throw new IOException("unknown trace record " + operation);
+					}
+					trace._recordedNanos += readVarLong(data);
+					int id = -1;
+					if (operation == MyTraceRecorder.INSERT) {
+						id = trace._inserts++;
+					} else if (operation >= MyTraceRecorder.REMOVE) {
+						long age = readVarLong(data);
+						id = age == 0 || age > trace._inserts ? -1 : (int) (trace._inserts - age);
+					}
+					if (operation == MyTraceRecorder.INSERT || operation == MyTraceRecorder.REPLACE_KEY) {
+						long delta = readVarLong(data);
+						key += (delta >>> 1) ^ -(delta & 1);
+					}
+					trace.add((byte) operation, operation == MyTraceRecorder.INSERT ? -1 : id, key);
+				}
+			} catch (EOFException e) {
+				throw new IOException("trace is truncated");
+			} finally {
+				data.close();
+			}
+		}
+
+		/**
+		 * Appends a record, growing the arrays if they are full
+		 */
+		private void add(byte operation, int id, long key) {
+			if (_count == _operations.length) {
+				_operations = Arrays.copyOf(_operations, 2 * _count);
+				_ids = Arrays.copyOf(_ids, 2 * _count);
+				_keys = Arrays.copyOf(_keys, 2 * _count);
+			}
+			_operations[_count] = operation;
+			_ids[_count] = id;
+			_keys[_count] = key;
+			_count++;
+		}
+
+		/**
+		 * @return an unsigned varint written by MyTraceWriter.putVarLong
+		 */
+		private static long readVarLong(DataInputStream data) throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = data.readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("trace is corrupt");
+		}
+	}
+}
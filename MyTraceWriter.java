@@ -0,0 +1,156 @@
+package heap;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a trace file from a background thread. The recording thread fills
+ * one buffer at a time and hands each full buffer to the writer thread,
+ * taking an empty one from a fixed pool in exchange, so recording never
+ * waits for the disk unless every buffer in the pool is waiting to be
+ * written. That wait (a stall) is counted, and memory stays bounded by the
+ * pool. Used by MyTraceRecorder.
+ */
+
+class MyTraceWriter {
+
+	private final FileChannel _channel;
+	private final ExecutorService _writer;
+	private final BlockingQueue<ByteBuffer> _free;
+	private ByteBuffer _buffer;
+	private volatile IOException _failure;
+	private long _stalls;
+	private long _bytes;
+
+	/**
+	 * @param file to create, replacing any file of that name
+	 * @param bufferSize the number of bytes collected before each hand-off to the writer thread
+	 * @param buffers the number of buffers in the pool, at least 2
+	 */
+	MyTraceWriter(Path file, int bufferSize, int buffers) throws IOException {
+		_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		_free = new ArrayBlockingQueue<ByteBuffer>(buffers);
+		for (int i = 1; i < buffers; i++) {
+			_free.add(ByteBuffer.allocateDirect(bufferSize));
+		}
+		_buffer = ByteBuffer.allocateDirect(bufferSize);
+		_writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "heap-trace-writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return the current buffer, handed off first if fewer than the given number of bytes are left in it
+	 * @throws UncheckedIOException if the writer thread failed or the recording thread was interrupted
+	 */
+	ByteBuffer reserve(int bytes) {
+		if (_buffer.remaining() < bytes) {
+			this.handOff();
+		}
+		return _buffer;
+	}
+
+	/**
+	 * Writes a long as an unsigned varint: seven bits per byte, low bits first
+	 */
+	static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * @return the number of times recording waited for a free buffer
+	 */
+	long getStalls() {
+		return _stalls;
+	}
+
+	/**
+	 * @return the number of bytes handed to the writer thread so far
+	 */
+	long getBytes() {
+		return _bytes;
+	}
+
+	/**
+	 * Hands off the last buffer, waits for every write to finish and closes the file
+	 */
+	void close() throws IOException {
+		try {
+			if (_buffer.position() > 0) {
+				this.handOff();
+			}
+			_writer.shutdown();
+			try {
+				_writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while closing the trace");
+			}
+			if (_failure != null) {
+				throw _failure;
+			}
+			_channel.force(false);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			_writer.shutdownNow();
+			_channel.close();
+		}
+	}
+
+	/**
+	 * Submits the current buffer to the writer thread and takes a free one, waiting if there is none
+	 */
+	private void handOff() {
+		if (_failure != null) {
+			throw new UncheckedIOException(_failure);
+		}
+		final ByteBuffer full = _buffer;
+		full.flip();
+		_bytes += full.remaining();
+		_writer.execute(new Runnable() {
+			public void run() {
+				try {
+					while (full.hasRemaining() && _failure == null) {
+						_channel.write(full);
+					}
+				} catch (IOException e) {
+					_failure = e;
+				}
+				full.clear();
+				_free.add(full);
+			}
+		});
+		ByteBuffer next = _free.poll();
+		if (next == null) {
+			_stalls++;
+			try {
+				next = _free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new UncheckedIOException(new InterruptedIOException("interrupted while recording"));
+			}
+		}
+		_buffer = next;
+	}
+}
@@ -18,7 +18,13 @@ import org.junit.runner.notification.Failure;
  */
 public class TestRunner {
    public static void main(String[] args) {
-      Result result = JUnitCore.runClasses(MyLinkedHeapTreeTest.class, MyHeapTest.class);
+      Result result = JUnitCore.runClasses(MyLinkedHeapTreeTest.class, MyHeapTest.class,
+            MyMinMaxHeapTest.class, MyMultiQueueTest.class, MyBlockingHeapTest.class,
+            MyHeapSnapshotTest.class, MyDurableHeapTest.class, MyExternalHeapTest.class,
+            MySegmentedArrayTest.class, MyAgingHeapTest.class, MyFairSchedulerTest.class,
+            MyPersistentHeapTest.class, MyPairingHeapTest.class, MyCalendarQueueTest.class,
+            MySimulatorTest.class, MyNodeQueueTest.class, MyShortestPathsTest.class,
+            MyTraceRecorderTest.class);
       for (Failure failure : result.getFailures()) {
          System.out.println(failure.toString());
       }